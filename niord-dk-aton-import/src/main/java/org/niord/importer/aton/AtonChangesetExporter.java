@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton;
+
+import org.niord.core.aton.AtonNode;
+import org.niord.importer.aton.batch.OsmXmlWriter;
+import org.slf4j.Logger;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Exports the AtoNs of an AFM import change set as an OSM XML document.
+ * <p>
+ * The AtoNs are read in pages ordered by id, where each page is fetched along with the AtoN tags,
+ * written to the output stream and evicted from the persistence context. Thus, the memory footprint
+ * is independent of the size of the change set.
+ */
+@Stateless
+public class AtonChangesetExporter {
+
+    /** The number of AtoNs read per page **/
+    static final int PAGE_SIZE = 500;
+
+    @Inject
+    Logger log;
+
+    @PersistenceContext
+    EntityManager em;
+
+
+    /**
+     * Streams the AtoNs of the given change set as an OSM XML document to the output stream
+     * @param changeSet the change set
+     * @param out the output stream
+     * @return the number of exported AtoNs
+     */
+    public int export(int changeSet, OutputStream out) throws IOException, JAXBException, XMLStreamException {
+        long t0 = System.currentTimeMillis();
+        int lastId = 0;
+
+        try (OsmXmlWriter osm = new OsmXmlWriter(out)) {
+            while (true) {
+                // Keyset pagination by AtoN id
+                List<Integer> ids = em
+                        .createQuery("select a.id from AtonNode a where a.changeset = :changeSet and a.id > :lastId "
+                                + "order by a.id", Integer.class)
+                        .setParameter("changeSet", changeSet)
+                        .setParameter("lastId", lastId)
+                        .setMaxResults(PAGE_SIZE)
+                        .getResultList();
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                List<AtonNode> atons = em
+                        .createQuery("select distinct a from AtonNode a left join fetch a.tags where a.id in :ids "
+                                + "order by a.id", AtonNode.class)
+                        .setParameter("ids", ids)
+                        .getResultList();
+                for (AtonNode aton : atons) {
+                    osm.write(aton.toVo());
+                }
+                osm.flush();
+
+                lastId = ids.get(ids.size() - 1);
+                em.clear();
+            }
+
+            log.info("Exported " + osm.getNodeNo() + " AtoNs of change set " + changeSet
+                    + " in " + (System.currentTimeMillis() - t0) + " ms");
+            return osm.getNodeNo();
+        }
+    }
+}
@@ -15,7 +15,7 @@
  */
 package org.niord.importer.aton;
 
-import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileUploadBase.FileSizeLimitExceededException;
 import org.jboss.ejb3.annotation.SecurityDomain;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.vo.AtonNodeVo;
@@ -25,9 +25,19 @@ import org.niord.core.repo.RepositoryService;
 import org.niord.core.sequence.DefaultSequence;
 import org.niord.core.sequence.Sequence;
 import org.niord.core.sequence.SequenceService;
+import org.niord.core.settings.Setting;
+import org.niord.core.settings.SettingsService;
 import org.niord.core.user.Roles;
 import org.niord.core.user.UserService;
+import org.niord.importer.aton.UploadSpooler.SpooledFile;
 import org.niord.importer.aton.batch.AbstractDkAtonImportProcessor;
+import org.niord.importer.aton.batch.AfmSheet;
+import org.niord.importer.aton.batch.AtonImportDiff;
+import org.niord.importer.aton.batch.AtonImportDryRunService;
+import org.niord.importer.aton.batch.AtonReconciliationReport;
+import org.niord.importer.aton.batch.AtonReconciliationService;
+import org.niord.importer.aton.batch.BatchDkChecksumListener;
+import org.niord.importer.aton.batch.OsmXmlWriter;
 import org.slf4j.Logger;
 
 import javax.annotation.security.PermitAll;
@@ -36,16 +46,27 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
-import javax.xml.bind.JAXBContext;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import java.io.InputStream;
+import javax.xml.stream.XMLStreamException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -61,6 +82,12 @@ public class AtonImportRestService {
 
     private final static Sequence AFM_SEQUENCE = new DefaultSequence("AFM_ATON_VERSION", 1);
 
+    private final static Setting MAX_UPLOAD_SIZE =
+            new Setting("dkAtonImportMaxUploadSize", 100L * 1024L * 1024L)
+                    .type(Setting.Type.Long)
+                    .description("Max size in bytes of uploaded AFM Excel sheets")
+                    .editable(true);
+
     @Inject
     Logger log;
 
@@ -76,10 +103,41 @@ public class AtonImportRestService {
     @Inject
     RepositoryService repositoryService;
 
+    @Inject
+    SettingsService settingsService;
+
+    @Inject
+    AtonReconciliationService reconciliationService;
+
+    @Inject
+    AtonImportDryRunService dryRunService;
+
+    @Inject
+    AtonChangesetExporter changesetExporter;
+
     /**
-     * Imports an uploaded AtoN Excel file
+     * Imports an uploaded AtoN Excel file.
+     * <p>
+     * The uploaded files are spooled directly to disk, and a file that is identical to the previously
+     * imported file of the same type of Excel sheet is skipped, unless the "force" parameter is true.
+     * The checksums of the files are registered by {@linkplain BatchDkChecksumListener} once the batch
+     * jobs have completed successfully.
+     * <p>
+     * If the "partitioned" parameter is true, the partitioned variant of the batch jobs are used,
+     * which process the rows of the Excel sheet concurrently, partitioned by AtoN.
+     * <p>
+     * If the "incremental" parameter is true, rows that are unchanged since the previous import
+     * of the same type of Excel sheet are skipped.
+     * <p>
+     * If the "combined" parameter is true, all uploaded AFM sheets are imported by a single dk-afm-import
+     * batch job, which parses the sheets concurrently and applies them in {@linkplain AfmSheet} order
+     * with a common change set.
      *
      * @param request the servlet request
+     * @param partitioned whether to use the partitioned batch jobs or not
+     * @param incremental whether to skip unchanged rows or not
+     * @param combined whether to import all sheets in a single batch job or not
+     * @param force whether to import files identical to the previously imported files or not
      * @return a status
      */
     @POST
@@ -87,33 +145,45 @@ public class AtonImportRestService {
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces("text/plain")
     @RolesAllowed(Roles.ADMIN)
-    public String importXls(@Context HttpServletRequest request) throws Exception {
-
-        List<FileItem> items = repositoryService.parseFileUploadRequest(request);
+    public String importXls(
+            @Context HttpServletRequest request,
+            @QueryParam("partitioned") @DefaultValue("false") boolean partitioned,
+            @QueryParam("incremental") @DefaultValue("false") boolean incremental,
+            @QueryParam("combined") @DefaultValue("false") boolean combined,
+            @QueryParam("force") @DefaultValue("false") boolean force) throws Exception {
+
+        List<SpooledFile> files;
+        try {
+            files = UploadSpooler.spool(
+                    request,
+                    repositoryService.getRepoRoot().resolve("aton-import").resolve("uploads"),
+                    settingsService.getLong(MAX_UPLOAD_SIZE));
+        } catch (FileSizeLimitExceededException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
 
         StringBuilder txt = new StringBuilder();
+        try {
+            // Determine the AFM sheets to import
+            Map<AfmSheet, SpooledFile> sheets = afmSheets(files);
+            for (Iterator<Map.Entry<AfmSheet, SpooledFile>> it = sheets.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<AfmSheet, SpooledFile> sheet = it.next();
+                if (!force && isDuplicate(sheet.getKey(), sheet.getValue())) {
+                    log.info("Skipping duplicate " + sheet.getKey() + " sheet " + sheet.getValue().getName());
+                    txt.append("Skipped duplicate file ").append(sheet.getValue().getName()).append("\n");
+                    it.remove();
+                }
+            }
 
-        for (FileItem item : items) {
-            if (!item.isFormField()) {
-                String name = item.getName().toLowerCase();
-
-                // AtoN Import
-                if (name.startsWith("afmmyndighed_table") && name.endsWith(".xls")) {
-                    importAtoN(item.getInputStream(), item.getName(), txt);
-
-                } else if (name.startsWith("fyr") && name.endsWith(".xls")) {
-                    importLights(item.getInputStream(), item.getName(), txt);
-
-                } else if (name.startsWith("ais") && name.endsWith(".xls")) {
-                    importAis(item.getInputStream(), item.getName(), txt);
-
-                } else if (name.startsWith("dgps") && name.endsWith(".xls")) {
-                    importDgps(item.getInputStream(), item.getName(), txt);
-
-                } else if (name.startsWith("racon") && name.endsWith(".xls")) {
-                    importRacons(item.getInputStream(), item.getName(), txt);
+            if (combined && !sheets.isEmpty()) {
+                importAfmSheets(sheets, incremental, txt);
+            } else {
+                for (Map.Entry<AfmSheet, SpooledFile> sheet : sheets.entrySet()) {
+                    importAfmSheet(sheet.getKey(), sheet.getValue(), partitioned, incremental, txt);
                 }
             }
+        } finally {
+            UploadSpooler.delete(files);
         }
 
         return txt.toString();
@@ -121,114 +191,211 @@ public class AtonImportRestService {
 
 
     /**
-     * Extracts the AtoNs from the Excel sheet
-     * @param inputStream the Excel sheet input stream
-     * @param fileName the name of the PDF file
-     * @param txt a log of the import
+     * Performs a dry-run import of the uploaded AFM Excel files.
+     * <p>
+     * The uploaded sheets are parsed and applied, in {@linkplain AfmSheet} order, to an in-memory
+     * snapshot of the existing AtoNs, and the AtoNs that would be added, changed or removed are returned.
+     * Nothing is written to the database.
+     *
+     * @param request the servlet request
+     * @return the diff of the dry-run import
      */
-    private void importAtoN(InputStream inputStream, String fileName, StringBuilder txt) throws Exception {
-        log.info("Extracting AtoNs from Excel sheet " + fileName);
+    @POST
+    @Path("/dry-run-xls")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces("application/json;charset=UTF-8")
+    @RolesAllowed(Roles.ADMIN)
+    public AtonImportDiff dryRunXls(@Context HttpServletRequest request) throws Exception {
 
-        // Start batch job to import AtoNs
-        batchService.startBatchJobWithDataFile(
-                "dk-aton-import",
-                inputStream,
-                fileName,
-                initBatchProperties());
+        List<SpooledFile> files;
+        try {
+            files = UploadSpooler.spool(
+                    request,
+                    repositoryService.getRepoRoot().resolve("aton-import").resolve("uploads"),
+                    settingsService.getLong(MAX_UPLOAD_SIZE));
+        } catch (FileSizeLimitExceededException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
 
-        log.info("Started 'dk-aton-import' batch job with file " + fileName);
-        txt.append("Started 'dk-aton-import' batch job with file ").append(fileName);
+        try {
+            Map<AfmSheet, java.nio.file.Path> sheets = new EnumMap<>(AfmSheet.class);
+            afmSheets(files).forEach((sheet, file) -> sheets.put(sheet, file.getPath()));
+            return dryRunService.dryRun(sheets);
+
+        } finally {
+            UploadSpooler.delete(files);
+        }
     }
 
 
     /**
-     * Extracts the lights from the Excel sheet
-     * @param inputStream the Excel sheet input stream
-     * @param fileName the name of the PDF file
-     * @param txt a log of the import
+     * Reconciles the persisted AtoNs with the last completed import of the AFM AtoN register.
+     * <p>
+     * Visible AtoNs that are not part of the last import are reported and, unless the "dryRun"
+     * parameter is true, marked as invisible in a new change set.
+     *
+     * @param dryRun whether to only report the missing AtoNs or not
+     * @return the reconciliation report
      */
-    private void importLights(InputStream inputStream, String fileName, StringBuilder txt) throws Exception {
-        log.info("Extracting Lights from Excel sheet " + fileName);
-
-        // Start batch job to import AtoNs
-        batchService.startBatchJobWithDataFile(
-                "dk-light-import",
-                inputStream,
-                fileName,
-                initBatchProperties());
+    @POST
+    @Path("/reconcile")
+    @Produces("application/json;charset=UTF-8")
+    @RolesAllowed(Roles.ADMIN)
+    public AtonReconciliationReport reconcile(
+            @QueryParam("dryRun") @DefaultValue("true") boolean dryRun) throws Exception {
 
-        log.info("Started 'dk-light-import' batch job with file " + fileName);
-        txt.append("Started 'dk-light-import' batch job with file ").append(fileName);
+        int changeset = dryRun ? -1 : (int)sequenceService.nextValue(AFM_SEQUENCE);
+        try {
+            return reconciliationService.reconcile(dryRun, changeset);
+        } catch (IllegalStateException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.CONFLICT);
+        }
     }
 
+
     /**
-     * Extracts the AIS from the Excel sheet
-     * @param inputStream the Excel sheet input stream
-     * @param fileName the name of the PDF file
-     * @param txt a log of the import
+     * Exports the AtoNs of the given AFM import change set as an OSM XML document.
+     * <p>
+     * The change set is the AFM_ATON_VERSION sequence value assigned to an import or a reconciliation,
+     * so downstream systems can pull the AtoNs changed by each import. The AtoNs are streamed
+     * directly from the database to the response.
+     *
+     * @param changeSet the change set
+     * @return the OSM XML document
      */
-    private void importAis(InputStream inputStream, String fileName, StringBuilder txt) throws Exception {
-        log.info("Extracting AIS from Excel sheet " + fileName);
+    @GET
+    @Path("/changeset/{changeSet}")
+    @Produces("application/xml;charset=UTF-8")
+    @RolesAllowed(Roles.ADMIN)
+    public Response exportChangeSet(@PathParam("changeSet") int changeSet) {
 
-        // Start batch job to import AtoNs
-        batchService.startBatchJobWithDataFile(
-                "dk-ais-import",
-                inputStream,
-                fileName,
-                initBatchProperties());
+        StreamingOutput stream = out -> {
+            try {
+                changesetExporter.export(changeSet, out);
+            } catch (JAXBException | XMLStreamException e) {
+                throw new WebApplicationException("Failed exporting change set " + changeSet, e);
+            }
+        };
 
-        log.info("Started 'dk-ais-import' batch job with file " + fileName);
-        txt.append("Started 'dk-ais-import' batch job with file ").append(fileName);
+        return Response.ok(stream)
+                .header("Content-Disposition", "attachment; filename=\"afm-changeset-" + changeSet + ".osm\"")
+                .build();
     }
 
 
     /**
-     * Extracts the DGPS transmitters from the Excel sheet
-     * @param inputStream the Excel sheet input stream
-     * @param fileName the name of the PDF file
+     * Returns the AFM sheets of the uploaded files.
+     * Uploading more than one file of the same AFM sheet is rejected.
+     * @param files the spooled files
+     * @return the spooled AFM sheets
+     */
+    private Map<AfmSheet, SpooledFile> afmSheets(List<SpooledFile> files) {
+        Map<AfmSheet, SpooledFile> sheets = new EnumMap<>(AfmSheet.class);
+        for (SpooledFile file : files) {
+            AfmSheet sheet = AfmSheet.of(file.getName());
+            if (sheet != null) {
+                SpooledFile other = sheets.putIfAbsent(sheet, file);
+                if (other != null) {
+                    throw new WebApplicationException(
+                            "Multiple " + sheet + " sheets uploaded: " + other.getName() + " and " + file.getName(),
+                            Response.Status.BAD_REQUEST);
+                }
+            }
+        }
+        return sheets;
+    }
+
+
+    /**
+     * Imports all the uploaded AFM sheets in a single batch job.
+     * <p>
+     * The spooled sheets are moved, rather than copied, to a data directory, and the path of each sheet is
+     * passed on as a batch data property. The sheets are deleted by {@linkplain BatchDkAfmSheetsListener}
+     * once the batch job has completed.
+     *
+     * @param sheets the spooled AFM sheets
+     * @param incremental whether to skip unchanged rows or not
      * @param txt a log of the import
      */
-    private void importDgps(InputStream inputStream, String fileName, StringBuilder txt) throws Exception {
-        log.info("Extracting DGPS from Excel sheet " + fileName);
+    private void importAfmSheets(Map<AfmSheet, SpooledFile> sheets, boolean incremental, StringBuilder txt) throws Exception {
+
+        java.nio.file.Path dataDir = Files.createTempDirectory(
+                Files.createDirectories(repositoryService.getRepoRoot().resolve("aton-import").resolve("afm-sheets")),
+                "afm-import-");
+        Map<String, Object> properties = initBatchProperties(incremental, sheets);
+        Map<String, String> fileNames = new LinkedHashMap<>();
+        for (Map.Entry<AfmSheet, SpooledFile> sheet : sheets.entrySet()) {
+            java.nio.file.Path path = Files.move(
+                    sheet.getValue().getPath(), dataDir.resolve(sheet.getKey().getFileName()));
+            properties.put(sheet.getKey().getPathProperty(), path.toString());
+            fileNames.put(sheet.getKey().name(), sheet.getValue().getName());
+            log.info("Added " + sheet.getKey() + " sheet " + sheet.getValue().getName());
+        }
 
-        // Start batch job to import AtoNs
-        batchService.startBatchJobWithDataFile(
-                "dk-dgps-import",
-                inputStream,
-                fileName,
-                initBatchProperties());
+        // Start batch job to import all AFM sheets
+        String jobName = "dk-afm-import";
+        try {
+            batchService.startBatchJobWithJsonData(
+                    jobName,
+                    fileNames,
+                    "afm-sheets.json",
+                    properties);
+        } catch (Exception e) {
+            for (AfmSheet sheet : sheets.keySet()) {
+                Files.deleteIfExists(dataDir.resolve(sheet.getFileName()));
+            }
+            Files.deleteIfExists(dataDir);
+            throw e;
+        }
 
-        log.info("Started 'dk-dgps-import' batch job with file " + fileName);
-        txt.append("Started 'dk-dgps-import' batch job with file ").append(fileName);
+        log.info("Started '" + jobName + "' batch job with sheets " + sheets.keySet());
+        txt.append("Started '").append(jobName).append("' batch job with sheets ").append(sheets.keySet());
     }
 
 
     /**
-     * Extracts the RACONs from the Excel sheet
-     * @param inputStream the Excel sheet input stream
-     * @param fileName the name of the PDF file
+     * Imports the AFM sheet in a batch job
+     * @param sheet the AFM sheet
+     * @param file the spooled Excel file
+     * @param partitioned whether to use the partitioned batch job or not
+     * @param incremental whether to skip unchanged rows or not
      * @param txt a log of the import
      */
-    private void importRacons(InputStream inputStream, String fileName, StringBuilder txt) throws Exception {
-        log.info("Extracting RACONS from Excel sheet " + fileName);
+    private void importAfmSheet(AfmSheet sheet, SpooledFile file, boolean partitioned, boolean incremental, StringBuilder txt) throws Exception {
+        log.info("Extracting " + sheet + " from Excel sheet " + file.getName() + " (" + file.getSize() + " bytes)");
 
-        // Start batch job to import AtoNs
+        // Start batch job to import the sheet
+        String jobName = batchJobName(sheet.getJobName(), partitioned);
         batchService.startBatchJobWithDataFile(
-                "dk-racon-import",
-                inputStream,
-                fileName,
-                initBatchProperties());
+                jobName,
+                file.getPath(),
+                initBatchProperties(incremental, Collections.singletonMap(sheet, file)));
+
+        log.info("Started '" + jobName + "' batch job with file " + file.getName());
+        txt.append("Started '").append(jobName).append("' batch job with file ").append(file.getName()).append("\n");
+    }
+
+
+    /** Returns if the file is identical to the previously imported file of the AFM sheet */
+    private boolean isDuplicate(AfmSheet sheet, SpooledFile file) {
+        return file.getChecksum().equals(settingsService.get(BatchDkChecksumListener.checksumSetting(sheet)));
+    }
+
 
-        log.info("Started 'dk-racon-import' batch job with file " + fileName);
-        txt.append("Started 'dk-racon-import' batch job with file ").append(fileName);
+    /** Returns the name of the batch job to use, i.e. the partitioned variant if requested */
+    private String batchJobName(String jobName, boolean partitioned) {
+        return partitioned ? jobName + "-partitioned" : jobName;
     }
 
 
-    /** Initializes the properties to use with the batch data */
-    private Map<String, Object> initBatchProperties() {
+    /** Initializes the properties to use with the batch data, including the checksums of the imported files */
+    private Map<String, Object> initBatchProperties(boolean incremental, Map<AfmSheet, SpooledFile> sheets) {
         int changeset = (int)sequenceService.nextValue(AFM_SEQUENCE);
         Map<String, Object> properties = new HashMap<>();
         properties.put(AbstractDkAtonImportProcessor.CHANGE_SET_PROPERTY, changeset);
+        properties.put(AbstractDkAtonImportProcessor.INCREMENTAL_PROPERTY, incremental);
+        sheets.forEach((sheet, file) ->
+                properties.put(BatchDkChecksumListener.checksumProperty(sheet), file.getChecksum()));
         return properties;
     }
 
@@ -249,8 +416,7 @@ public class AtonImportRestService {
         AtonOsmVo osm = toOsm(atons);
 
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(AtonOsmVo.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
+            Marshaller marshaller = OsmXmlWriter.getJaxbContext().createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             marshaller.marshal(osm, System.out);
         } catch (JAXBException e) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton;
+
+import org.apache.commons.fileupload.FileItem;
+import org.jboss.ejb3.annotation.SecurityDomain;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.user.Roles;
+import org.niord.importer.aton.batch.DkLightRegisterValidator;
+import org.niord.importer.aton.batch.LightRegisterReport;
+import org.slf4j.Logger;
+
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Validates light register Excel sheets against the light parsers, without starting a batch job.
+ */
+@Path("/import/lights")
+@Stateless
+@SecurityDomain("keycloak")
+@PermitAll
+@SuppressWarnings("unused")
+public class LightRegisterValidationRestService {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    /**
+     * Validates an uploaded light register ("Fyr") Excel file.
+     * <p>
+     * The light characteristics, light sector angles and fog signals of all active lights are parsed,
+     * and a report of the failures and statistics is returned.
+     *
+     * @param request the servlet request
+     * @return the validation report
+     */
+    @POST
+    @Path("/validate-xls")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces("application/json;charset=UTF-8")
+    @RolesAllowed(Roles.ADMIN)
+    public LightRegisterReport validateXls(@Context HttpServletRequest request) throws Exception {
+
+        List<FileItem> items = repositoryService.parseFileUploadRequest(request);
+
+        for (FileItem item : items) {
+            if (!item.isFormField() && item.getName().toLowerCase().endsWith(".xls")) {
+                return validateLights(item.getInputStream(), item.getName());
+            }
+        }
+
+        throw new WebApplicationException("No light register Excel file uploaded", Response.Status.BAD_REQUEST);
+    }
+
+
+    /**
+     * Validates the lights of the Excel sheet
+     * @param inputStream the Excel sheet input stream
+     * @param fileName the name of the Excel file
+     * @return the validation report
+     */
+    private LightRegisterReport validateLights(InputStream inputStream, String fileName) throws Exception {
+        java.nio.file.Path path = Files.createTempFile("light-register-", ".xls");
+        try {
+            Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+
+            LightRegisterReport report = DkLightRegisterValidator.validate(path);
+            report.setFileName(fileName);
+
+            log.info(String.format("Validated %d lights of %s in %d ms: %d failures",
+                    report.getActiveRowCount(), fileName, report.getDurationMs(), report.getFailures().size()));
+            return report;
+
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase.FileSizeLimitExceededException;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spools the files of a multipart upload request directly from the request body to disk.
+ * <p>
+ * Rather than having commons-fileupload buffer each file item, the multipart body is streamed
+ * and transferred to a spool file using {@linkplain FileChannel#transferFrom}, while the MD5 checksum
+ * of the file is computed on the fly, and the file size is checked against a max size.
+ */
+public class UploadSpooler {
+
+    /** The max number of bytes transferred per {@linkplain FileChannel#transferFrom} call **/
+    static final long TRANSFER_SIZE = 1024 * 1024;
+
+    /**
+     * Spools the uploaded files of the multipart request to the given directory.
+     * Form fields are ignored.
+     *
+     * @param request the multipart request
+     * @param dir the directory to spool the files to
+     * @param maxSize the max size in bytes of each file
+     * @return the spooled files
+     */
+    public static List<SpooledFile> spool(HttpServletRequest request, Path dir, long maxSize)
+            throws IOException, FileUploadException {
+        Files.createDirectories(dir);
+        List<SpooledFile> files = new ArrayList<>();
+        try {
+            FileItemIterator items = new ServletFileUpload().getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (!item.isFormField() && item.getName() != null && !item.getName().isEmpty()) {
+                    try (InputStream in = item.openStream()) {
+                        files.add(spool(item.getName(), in, dir, maxSize));
+                    }
+                }
+            }
+        } catch (IOException | FileUploadException e) {
+            delete(files);
+            throw e;
+        }
+        return files;
+    }
+
+
+    /**
+     * Spools the given input stream to a new file in the given directory
+     *
+     * @param name the name of the uploaded file
+     * @param in the input stream
+     * @param dir the directory to spool the file to
+     * @param maxSize the max size in bytes of the file
+     * @return the spooled file
+     */
+    static SpooledFile spool(String name, InputStream in, Path dir, long maxSize)
+            throws IOException, FileUploadException {
+        MessageDigest m;
+        try {
+            m = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported", e);
+        }
+
+        // Spool the file to a unique folder, using the name of the uploaded file
+        Path file = Files.createTempDirectory(dir, "upload-").resolve(fileName(name));
+        try (ReadableByteChannel src = Channels.newChannel(new DigestInputStream(in, m));
+             FileChannel dst = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+
+            // Transfer at most maxSize + 1 bytes, to detect files exceeding the max size
+            long size = 0;
+            long transferred;
+            while (size <= maxSize
+                    && (transferred = dst.transferFrom(src, size, Math.min(TRANSFER_SIZE, maxSize + 1 - size))) > 0) {
+                size += transferred;
+            }
+            if (size > maxSize) {
+                throw new FileSizeLimitExceededException(
+                        "File " + name + " exceeds the max upload size of " + maxSize + " bytes", size, maxSize);
+            }
+
+            return new SpooledFile(name, file, size, String.format("%032x", new BigInteger(1, m.digest())));
+
+        } catch (IOException | FileUploadException e) {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.getParent());
+            throw e;
+        }
+    }
+
+
+    /** Strips any client-side directory from the name of the uploaded file **/
+    static String fileName(String name) {
+        String fileName = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        return fileName.isEmpty() || fileName.equals(".") || fileName.equals("..") ? "upload" : fileName;
+    }
+
+
+    /**
+     * Deletes the given spooled files, if they still exist
+     * @param files the spooled files to delete
+     */
+    public static void delete(List<SpooledFile> files) throws IOException {
+        for (SpooledFile file : files) {
+            Files.deleteIfExists(file.getPath());
+            Files.deleteIfExists(file.getPath().getParent());
+        }
+    }
+
+
+    /**
+     * A file spooled from an upload request
+     */
+    public static class SpooledFile {
+
+        final String name;
+        final Path path;
+        final long size;
+        final String checksum;
+
+        /** Constructor **/
+        public SpooledFile(String name, Path path, long size, String checksum) {
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        /** Returns the name of the uploaded file **/
+        public String getName() {
+            return name;
+        }
+
+        /** Returns the path of the spooled file **/
+        public Path getPath() {
+            return path;
+        }
+
+        /** Returns the size of the spooled file in bytes **/
+        public long getSize() {
+            return size;
+        }
+
+        /** Returns the MD5 checksum of the spooled file **/
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+}
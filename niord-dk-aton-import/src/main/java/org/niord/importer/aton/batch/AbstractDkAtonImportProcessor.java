@@ -21,11 +21,15 @@ import org.apache.poi.ss.usermodel.Row;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonService;
 import org.niord.core.aton.batch.BatchAtonImportProcessor;
+import org.niord.core.user.User;
+import org.niord.importer.batch.BatchImportMetrics;
 
+import javax.batch.api.BatchProperty;
 import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * Base class for Excel-based AtoN import batch processor classes
@@ -33,12 +37,90 @@ import java.util.Map;
 public abstract class AbstractDkAtonImportProcessor extends BatchAtonImportProcessor {
 
     public static final String CHANGE_SET_PROPERTY = "changeSet";
+    public static final String INCREMENTAL_PROPERTY = "incremental";
+
+    /** Loads all AtoNs, including their tags **/
+    static final String ALL_ATONS_QUERY = "select distinct a from AtonNode a left join fetch a.tags";
 
     @Inject
     AtonService atonService;
 
+    @PersistenceContext
+    EntityManager em;
+
+    /** If set to "true", the existing AtoNs are looked up from an {@linkplain AtonImportIndex} **/
+    @Inject
+    @BatchProperty
+    String preload;
+
+    /** The import metrics. Defaults to the metrics of the job execution **/
+    BatchImportMetrics metrics;
+
+    BatchDkAtonItem item;
     Row row;
-    Map<String, Integer> colIndex = new HashMap<>();
+    ExcelRowSchema schema;
+
+
+    /**
+     * If the "preload" batch property is set, the existing AtoN is looked up from the
+     * {@linkplain AtonImportIndex} of the step rather than queried individually.
+     * Only changed AtoNs are loaded, by id, within the chunk transaction.
+     */
+    @Override
+    public Object processItem(Object item) throws Exception {
+        if (!Boolean.parseBoolean(preload)) {
+            return super.processItem(item);
+        }
+
+        AtonNode aton = toAtonNode(item);
+        if (aton == null) {
+            return null;
+        }
+
+        AtonImportIndex index = AtonImportIndex.forStep(stepContext, this::loadAtons);
+        String atonUid = aton.getAtonUid();
+        AtonNode original;
+        if (index.isWritten(atonUid)) {
+            original = atonService.findByAtonUid(atonUid);
+        } else {
+            AtonNode snapshot = index.find(atonUid);
+            if (snapshot != null && !snapshot.hasChanged(aton)) {
+                skipRow("unchanged", atonUid);
+                return null;
+            }
+            original = snapshot == null ? null : em.find(AtonNode.class, snapshot.getId());
+        }
+
+        if (original == null) {
+            // Persist new AtoN
+            index.written(atonUid);
+            return aton;
+        } else if (original.hasChanged(aton)) {
+            // Update the original
+            mergeAtonNodes(original, aton);
+            index.written(atonUid);
+            return original;
+        }
+
+        skipRow("unchanged", atonUid);
+        return null;
+    }
+
+
+    /**
+     * Loads all existing AtoNs, including their tags, in a single query.
+     * The loaded AtoNs are detached, since the index only keeps copies of them.
+     * @return all existing AtoNs
+     */
+    private List<AtonNode> loadAtons() {
+        long t0 = System.currentTimeMillis();
+        List<AtonNode> atons = em
+                .createQuery(ALL_ATONS_QUERY, AtonNode.class)
+                .getResultList();
+        atons.forEach(em::detach);
+        getLog().info("Pre-loaded " + atons.size() + " AtoNs in " + (System.currentTimeMillis() - t0) + " ms");
+        return atons;
+    }
 
 
     /**
@@ -48,8 +130,9 @@ public abstract class AbstractDkAtonImportProcessor extends BatchAtonImportProce
     @Override
     protected AtonNode toAtonNode(Object item) throws Exception {
         BatchDkAtonItem atonItem = (BatchDkAtonItem)item;
+        this.item = atonItem;
         this.row = atonItem.getRow();
-        this.colIndex = atonItem.getColIndex();
+        this.schema = atonItem.getSchema();
 
         return parseAtonExcelRow();
     }
@@ -62,6 +145,75 @@ public abstract class AbstractDkAtonImportProcessor extends BatchAtonImportProce
     protected abstract AtonNode parseAtonExcelRow() throws Exception;
 
 
+    /**
+     * Merges the AtoN into the original AtoN. Exposed for {@linkplain AtonImportDryRunService}.
+     * @param original the original AtoN
+     * @param aton the imported AtoN
+     */
+    void merge(AtonNode original, AtonNode aton) {
+        mergeAtonNodes(original, aton);
+    }
+
+
+    /**
+     * Returns the import metrics
+     * @return the import metrics
+     */
+    protected BatchImportMetrics metrics() {
+        if (metrics == null) {
+            metrics = BatchImportMetrics.forJob(jobContext);
+            registerGauges(metrics);
+        }
+        return metrics;
+    }
+
+
+    /**
+     * Called once, when the import metrics are first used, to register processor specific gauges
+     * @param metrics the import metrics
+     */
+    protected void registerGauges(BatchImportMetrics metrics) {
+    }
+
+
+    /**
+     * Registers that the current row is skipped in the import metrics. Unless the row is skipped because
+     * the AtoN is unchanged, the row is discarded, i.e. its hash is not recorded.
+     * @param reason the reason for skipping the row
+     * @param id the id of the AtoN of the row
+     */
+    protected void skipRow(String reason, String id) {
+        if (item != null && !"unchanged".equals(reason)) {
+            item.setDiscarded(true);
+        }
+        metrics().itemSkipped(reason);
+        getLog().debug("Skipping {} row {}", reason, id);
+    }
+
+
+    /**
+     * Registers that the current row could not be parsed in the import metrics, and discards the row
+     * @param id the id of the AtoN of the row
+     * @param details details about the invalid data
+     */
+    protected void parseFailure(String id, String details) {
+        if (item != null) {
+            item.setDiscarded(true);
+        }
+        metrics().parseFailure();
+        getLog().debug("Failed parsing row {}: {}", id, details);
+    }
+
+
+    /**
+     * Returns the user that started the batch job, or null if undefined
+     * @return the user that started the batch job
+     */
+    public User getUser() {
+        return job != null ? job.getUser() : null;
+    }
+
+
     /**
      * Returns the changeSet from the batch data properties
      * @return the changeSet from the batch data properties
@@ -80,37 +232,37 @@ public abstract class AbstractDkAtonImportProcessor extends BatchAtonImportProce
     /*************************/
 
 
-    /** Returns the numeric value of the cell with the given header column key */
-    Double numericValue(String colKey) {
-        Cell cell = row.getCell(colIndex.get(colKey));
+    /** Returns the numeric value of the cell with the given field handle */
+    Double numericValue(int field) {
+        Cell cell = schema.getCell(row, field);
         return cell == null ? null : cell.getNumericCellValue();
     }
 
 
-    /** Returns the numeric value of the cell with the given header column key. Returns null for 0.0 */
-    Double numericValueOrNull(String colKey) {
-        Double val = numericValue(colKey);
+    /** Returns the numeric value of the cell with the given field handle. Returns null for 0.0 */
+    Double numericValueOrNull(int field) {
+        Double val = numericValue(field);
         return val == null || Math.abs(val) < 0.000001 ? null : val;
     }
 
 
-    /** Returns the string value of the cell with the given header column key */
-    String stringValue(String colKey) {
-        Cell cell = row.getCell(colIndex.get(colKey));
+    /** Returns the string value of the cell with the given field handle */
+    String stringValue(int field) {
+        Cell cell = schema.getCell(row, field);
         return cell == null ? null : cell.getStringCellValue();
     }
 
 
-    /** Returns the date value of the cell with the given header column key */
-    Date dateValue(String colKey) {
-        Cell cell = row.getCell(colIndex.get(colKey));
+    /** Returns the date value of the cell with the given field handle */
+    Date dateValue(int field) {
+        Cell cell = schema.getCell(row, field);
         return cell == null ? null : cell.getDateCellValue();
     }
 
-    /** Returns the date value of the cell with the given header column key */
-    Date dateValueOrNull(String colKey) {
+    /** Returns the date value of the cell with the given field handle */
+    Date dateValueOrNull(int field) {
         try {
-            Cell cell = row.getCell(colIndex.get(colKey));
+            Cell cell = schema.getCell(row, field);
             return cell == null ? null : cell.getDateCellValue();
         } catch (Exception e) {
             return null;
@@ -15,28 +15,99 @@
  */
 package org.niord.importer.aton.batch;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.niord.core.batch.AbstractItemHandler;
+import org.niord.core.repo.RepositoryService;
+import org.niord.importer.batch.BatchImportMetrics;
 
+import javax.batch.api.BatchProperty;
+import javax.inject.Inject;
 import java.io.FileInputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Base class for Excel-based AtoN import batch reader classes
+ * <p>
+ * The first time the reader is opened for a batch job, the Excel sheet is parsed into a compact
+ * {@linkplain ExcelRowSidecar sidecar file} next to the batch job data file. Rows are subsequently
+ * read from the sidecar, so that a restarted job seeks directly to the checkpointed row.
+ * <p>
+ * If the "streaming" batch property of the reader is set to true in the batch job definition,
+ * the Excel sheet is streamed row by row rather than being loaded into memory as a whole.
+ * <p>
+ * When used in a partitioned step, the "partition" and "partitionCount" batch properties define the
+ * rows to read. Rows are assigned to partitions by the hash of the key of the AtoN they update, i.e. the
+ * {@linkplain #getParentKeyField() parent key} if defined and otherwise the {@linkplain #getKeyField() key},
+ * so that all rows of an AtoN are processed by the same partition. The assignment is computed once by
+ * {@linkplain BatchDkAtonPartitionMapper}, and each partition only reads its own rows from the sidecar file.
+ * <p>
+ * When used in the combined dk-afm-import batch job, the "sheet" batch property names the
+ * {@linkplain AfmSheet} to read, and the path of the sheet is given by the {@linkplain AfmSheet#getPathProperty()
+ * path property} of the batch data. The sidecar files are created up-front by {@linkplain BatchDkAfmSheetsBatchlet}.
+ * <p>
+ * The content hash of each row is passed on with the item, keyed by the {@linkplain #getKeyField() key field},
+ * and recorded in the {@linkplain ExcelRowHashes} of the job by {@linkplain BatchDkRowHashListener} once the
+ * item has been written. If the batch job data has the "incremental" property set, rows that are unchanged
+ * since the previous import are skipped by the reader, before being processed.
+ * <p>
+ * Sheets that overlay tags on the AtoNs of the AtoN sheet define a {@linkplain #getParentKeyField() parent key
+ * field}, and the hash of the parent AtoN row is included in the content hash of each row. Thus, when the
+ * parent AtoN row changes, and the AtoN is rewritten by the AtoN import, the overlay row is imported again.
  */
 public abstract class AbstractDkAtonImportReader extends AbstractItemHandler {
 
+    /** The default key field of the rows **/
+    public static final String NR_DK_FIELD = "NR_DK";
+
+    /** The field of overlay rows that refers to the AFM station number of the AtoN sheet **/
+    public static final String AFM_NR_FIELD = "AFM_NR";
+
+    /** Guards the creation of sidecar files, which may be attempted concurrently. Entries are removed once created */
+    private static final Map<Path, Object> SIDECAR_LOCKS = new ConcurrentHashMap<>();
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    @BatchProperty
+    String streaming;
+
+    @Inject
+    @BatchProperty
+    String partition;
+
+    @Inject
+    @BatchProperty
+    String partitionCount;
+
+    @Inject
+    @BatchProperty
+    String sheet;
+
     Map<String, Integer> colIndex = new HashMap<>();
+    ExcelRowSchema schema;
+    ExcelRowSidecar sidecar;
+    BatchImportMetrics metrics;
+    ExcelRowHashes hashes;
+    ExcelRowHashes parentHashes;
+    int keyField;
+    int parentKeyField = -1;
+    boolean incremental;
     Iterator<Row> rowIterator;
     int totalRowNo;
+    int endRow;
     int row = 0;
 
     /**
@@ -46,23 +117,89 @@ public abstract class AbstractDkAtonImportReader extends AbstractItemHandler {
     public abstract String[] getFields();
 
 
+    /**
+     * Returns the column field that uniquely identifies a row, used for tracking row changes between imports
+     * @return the key field of the rows
+     */
+    public String getKeyField() {
+        return NR_DK_FIELD;
+    }
+
+
+    /**
+     * Returns the column field that refers to the row of the AtoN sheet that a row overlays, or null if undefined
+     * @return the parent key field of the rows, or null if undefined
+     */
+    public String getParentKeyField() {
+        return null;
+    }
+
+
     /** {@inheritDoc} **/
     @Override
     public void open(Serializable prevCheckpointInfo) throws Exception {
 
-        // Get hold of the data file
-        Path path = batchService.getBatchJobDataFile(jobContext.getInstanceId());
+        // Get hold of the data file, or the sheet of a combined import
+        Path path;
+        String hashesJobName = jobContext.getJobName();
+        if (StringUtils.isNotBlank(sheet)) {
+            AfmSheet afmSheet = AfmSheet.valueOf(sheet);
+            path = afmSheet.path(job.getProperties());
+            hashesJobName = afmSheet.getJobName();
 
-        // Parse the header row of the Excel file and build a column index
-        rowIterator = parseHeaderRow(path, colIndex, getFields());
+            // The sheet is optional in a combined import
+            if (path == null || !Files.exists(path)) {
+                getLog().info("No " + afmSheet + " sheet to import");
+                rowIterator = Collections.emptyIterator();
+                return;
+            }
+        } else {
+            path = batchService.getBatchJobDataFile(jobContext.getInstanceId());
+        }
+
+        // The first time around, parse the Excel file into a pre-parsed sidecar file
+        Path sidecarPath = createSidecar(path, getFields(), Boolean.parseBoolean(streaming));
 
-        // Fast forward to the previous row index
+        sidecar = ExcelRowSidecar.open(sidecarPath);
+        colIndex = sidecar.getColIndex();
+        schema = new ExcelRowSchema(getFields(), colIndex);
+        totalRowNo = sidecar.getTotalRowNo();
+
+        // Determine the rows to read. In a partitioned step, "row" is the index into the rows of the partition
+        int partitionNo = StringUtils.isNotBlank(partitionCount) ? Integer.parseInt(partitionCount) : 1;
+        int partitionIndex = StringUtils.isNotBlank(partition) ? Integer.parseInt(partition) : 0;
+        int[] partitionRows = null;
+        if (partitionNo > 1) {
+            partitionRows = BatchDkAtonPartitionMapper.readPartition(
+                    BatchDkAtonPartitionMapper.partitionsPath(sidecarPath, partitionNo), partitionIndex);
+            endRow = partitionRows.length;
+        } else {
+            endRow = sidecar.getRowCount();
+        }
+
+        // Seek directly to the previous row index
         if (prevCheckpointInfo != null) {
             row = (Integer) prevCheckpointInfo;
         }
-        for (int r = 0; r < row && rowIterator.hasNext(); r++) {
-            rowIterator.next();
+        rowIterator = partitionRows != null
+                ? sidecar.rowIterator(partitionRows, row)
+                : sidecar.rowIterator(row, endRow);
+
+        metrics = BatchImportMetrics.forJob(jobContext);
+        metrics.addTotalItemNo(Math.max(0, endRow - row));
+
+        // Track the row changes since the previous import
+        hashes = ExcelRowHashes.forJob(jobContext,
+                ExcelRowHashes.hashesPath(repositoryService.getRepoRoot(), hashesJobName));
+        hashes.setRowCount(sidecar.getRowCount());
+        keyField = ExcelRowSchema.fieldHandle(getFields(), getKeyField());
+        if (getParentKeyField() != null) {
+            parentHashes = ExcelRowHashes.open(
+                    ExcelRowHashes.hashesPath(repositoryService.getRepoRoot(), AfmSheet.ATON.getJobName()));
+            parentKeyField = ExcelRowSchema.fieldHandle(getFields(), getParentKeyField());
         }
+        incremental = Boolean.TRUE.equals(job.getProperties().get(AbstractDkAtonImportProcessor.INCREMENTAL_PROPERTY));
+        metrics.gauge("rowChanges", hashes::toString);
 
         getLog().info("Start processing Excel from row " + row);
     }
@@ -71,21 +208,70 @@ public abstract class AbstractDkAtonImportReader extends AbstractItemHandler {
     /** {@inheritDoc} **/
     @Override
     public Object readItem() throws Exception {
-        if (rowIterator.hasNext()) {
+        while (rowIterator.hasNext()) {
 
             // Every now and then, update the progress
             if (row % 10 == 0) {
-                updateProgress((int)(100.0 * row / totalRowNo));
+                updateProgress((int)(100.0 * row / Math.max(1, endRow)));
             }
 
-            getLog().info("Reading row " + row);
             row++;
-            return new BatchDkAtonItem(colIndex, rowIterator.next());
+            Row excelRow = rowIterator.next();
+            String key = ExcelRowHashes.key(schema, excelRow, keyField);
+
+            // Every now and then, report the metrics
+            metrics.itemRead();
+            if (metrics.isReportDue()) {
+                getLog().info("Import progress: " + metrics);
+            }
+            hashes.rowRead();
+
+            BatchDkAtonItem item = new BatchDkAtonItem(schema, excelRow);
+            item.setRowKey(key);
+            if (item.getRowKey() != null) {
+                item.setRowHash(rowHash(excelRow));
+
+                // In incremental mode, skip rows that are unchanged since the previous import
+                if (incremental && hashes.isUnchanged(item.getRowKey(), item.getRowHash())) {
+                    hashes.record(item.getRowKey(), item.getRowHash());
+                    metrics.itemSkipped("unchanged");
+                    continue;
+                }
+            }
+            return item;
         }
         return null;
     }
 
 
+    /**
+     * Returns the partition of a row, based on the hash of the key of the AtoN that the row updates
+     * @param key the key of the row
+     * @param parentKey the parent key of the row, or null if undefined
+     * @param partitionNo the number of partitions
+     * @return the partition of the row
+     */
+    static int partitionOf(String key, String parentKey, int partitionNo) {
+        String atonKey = parentKey != null ? parentKey : key;
+        return atonKey == null ? 0 : Math.floorMod(atonKey.hashCode(), partitionNo);
+    }
+
+
+    /**
+     * Computes the content hash of the given row, including the hash of the parent AtoN row, if any
+     * @param excelRow the row
+     * @return the content hash of the row
+     */
+    private long rowHash(Row excelRow) {
+        long hash = ExcelRowHashes.hash(schema, excelRow);
+        if (parentHashes != null) {
+            String parentKey = ExcelRowHashes.key(schema, excelRow, parentKeyField);
+            hash = ExcelRowHashes.combine(hash, parentKey == null ? null : parentHashes.getPreviousHash(parentKey));
+        }
+        return hash;
+    }
+
+
     /** {@inheritDoc} **/
     @Override
     public Serializable checkpointInfo() throws Exception {
@@ -93,14 +279,52 @@ public abstract class AbstractDkAtonImportReader extends AbstractItemHandler {
     }
 
 
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws Exception {
+        if (sidecar != null) {
+            sidecar.close();
+        }
+    }
+
+
+    /**
+     * Parses the header row and data rows of the Excel file and writes them to the sidecar file,
+     * unless the sidecar file already exists
+     * @param path a path to the the Excel sheet
+     * @param fields the fields to determine column indexes for
+     * @param streaming whether to stream the Excel sheet row by row or not
+     * @return the path of the sidecar file
+     */
+    static Path createSidecar(Path path, String[] fields, boolean streaming) throws Exception {
+        Path sidecarPath = ExcelRowSidecar.sidecarPath(path);
+        Object lock = SIDECAR_LOCKS.computeIfAbsent(sidecarPath, p -> new Object());
+        try {
+            synchronized (lock) {
+                if (!Files.exists(sidecarPath)) {
+                    if (streaming) {
+                        writeStreamingSidecar(path, sidecarPath, fields);
+                    } else {
+                        writeSidecar(path, sidecarPath, fields);
+                    }
+                }
+            }
+        } finally {
+            // Threads arriving later find the sidecar file, so the lock is only needed while it is being created
+            SIDECAR_LOCKS.remove(sidecarPath, lock);
+        }
+        return sidecarPath;
+    }
+
+
     /**
      * Opens the Excel sheet, reads in the header row and build a map of the column indexes for the given header fields.
+     * The data rows are written to the sidecar file.
      * @param path a path to the the Excel sheet
-     * @param colIndex the column index map
+     * @param sidecarPath a path to the sidecar file
      * @param fields the fields to determine column indexes for
-     * @return the Excel row iterator pointing to the first data row
      */
-    private Iterator<Row> parseHeaderRow(Path path, Map<String, Integer> colIndex, String[] fields) throws Exception {
+    private static void writeSidecar(Path path, Path sidecarPath, String[] fields) throws Exception {
 
         try (FileInputStream inputStream = new FileInputStream(path.toFile())) {
             // Create Workbook instance holding reference to .xls file
@@ -108,22 +332,42 @@ public abstract class AbstractDkAtonImportReader extends AbstractItemHandler {
             // Get first/desired sheet from the workbook
             HSSFSheet sheet = workbook.getSheetAt(0);
 
-            totalRowNo = sheet.getLastRowNum();
-
             // Get row iterator
             Iterator<Row> rowIterator = sheet.iterator();
             Row headerRow = rowIterator.next();
 
             // Get the column indexes of the relevant columns
+            Map<String, Integer> colIndex = new HashMap<>();
+            Arrays.stream(fields).forEach(f -> updateColumnIndex(headerRow, colIndex, f));
+
+            ExcelRowSidecar.write(sidecarPath, colIndex, sheet.getLastRowNum(), rowIterator);
+        }
+    }
+
+
+    /**
+     * Opens the Excel sheet in streaming mode, reads in the header row and build a map of the column indexes
+     * for the given header fields. The data rows are written to the sidecar file.
+     * @param path a path to the the Excel sheet
+     * @param sidecarPath a path to the sidecar file
+     * @param fields the fields to determine column indexes for
+     */
+    private static void writeStreamingSidecar(Path path, Path sidecarPath, String[] fields) throws Exception {
+
+        try (StreamingExcelRowIterator rowIterator = new StreamingExcelRowIterator(path)) {
+            Row headerRow = rowIterator.next();
+
+            // Get the column indexes of the relevant columns
+            Map<String, Integer> colIndex = new HashMap<>();
             Arrays.stream(fields).forEach(f -> updateColumnIndex(headerRow, colIndex, f));
 
-            return rowIterator;
+            ExcelRowSidecar.write(sidecarPath, colIndex, rowIterator.getTotalRowNo(), rowIterator);
         }
     }
 
 
     /** Determines the column index of the given column name */
-    private boolean updateColumnIndex(Row headerRow, Map<String, Integer> colIndex, String colName) {
+    static boolean updateColumnIndex(Row headerRow, Map<String, Integer> colIndex, String colName) {
         int index = 0;
         for (Cell cell : headerRow) {
             if (cell.getCellType() == Cell.CELL_TYPE_STRING &&
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The AFM Excel sheets that can be imported, listed in the order they must be applied.
+ * <p>
+ * The AtoN sheet defines the AtoNs, and the remaining sheets overlay equipment on top of them.
+ */
+public enum AfmSheet {
+
+    ATON("afmmyndighed_table", "dk-aton-import", BatchDkAtonImportReader.FIELDS,
+            BatchDkAtonImportReader.KEY_FIELD, null),
+    LIGHT("fyr", "dk-light-import", BatchDkLightImportReader.FIELDS,
+            AbstractDkAtonImportReader.NR_DK_FIELD, AbstractDkAtonImportReader.AFM_NR_FIELD),
+    AIS("ais", "dk-ais-import", BatchDkAisImportReader.FIELDS,
+            AbstractDkAtonImportReader.NR_DK_FIELD, AbstractDkAtonImportReader.AFM_NR_FIELD),
+    DGPS("dgps", "dk-dgps-import", BatchDkDgpsImportReader.FIELDS,
+            AbstractDkAtonImportReader.NR_DK_FIELD, null),
+    RACON("racon", "dk-racon-import", BatchDkRaconImportReader.FIELDS,
+            AbstractDkAtonImportReader.NR_DK_FIELD, AbstractDkAtonImportReader.AFM_NR_FIELD);
+
+    public static final String PATH_PROPERTY = "path.";
+
+    final String prefix;
+    final String jobName;
+    final String[] fields;
+    final String keyField;
+    final String parentKeyField;
+
+    AfmSheet(String prefix, String jobName, String[] fields, String keyField, String parentKeyField) {
+        this.prefix = prefix;
+        this.jobName = jobName;
+        this.fields = fields;
+        this.keyField = keyField;
+        this.parentKeyField = parentKeyField;
+    }
+
+
+    /**
+     * Returns the AFM sheet of the given uploaded file name, or null if it is not an AFM sheet
+     * @param fileName the file name
+     * @return the AFM sheet of the file, or null if it is not an AFM sheet
+     */
+    public static AfmSheet of(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".xls")) {
+            for (AfmSheet sheet : values()) {
+                if (name.startsWith(sheet.prefix)) {
+                    return sheet;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the AFM sheet imported by the given batch job, or its partitioned variant
+     * @param jobName the name of the batch job
+     * @return the AFM sheet imported by the batch job
+     */
+    public static AfmSheet ofJobName(String jobName) {
+        for (AfmSheet sheet : values()) {
+            if (jobName.equals(sheet.jobName) || jobName.equals(sheet.jobName + "-partitioned")) {
+                return sheet;
+            }
+        }
+        throw new IllegalArgumentException("No AFM sheet is imported by batch job " + jobName);
+    }
+
+
+    /**
+     * Returns the file name of the sheet within the data directory of a combined import
+     * @return the file name of the sheet
+     */
+    public String getFileName() {
+        return name().toLowerCase() + ".xls";
+    }
+
+
+    /**
+     * Returns the name of the batch data property holding the path of the sheet in a combined import
+     * @return the path property of the sheet
+     */
+    public String getPathProperty() {
+        return PATH_PROPERTY + name();
+    }
+
+
+    /**
+     * Returns the path of the sheet in a combined import, or null if the sheet is not part of the import
+     * @param properties the batch data properties of the combined import batch job
+     * @return the path of the sheet, or null if the sheet is not part of the import
+     */
+    public Path path(Properties properties) {
+        Object path = properties != null ? properties.get(getPathProperty()) : null;
+        return path != null ? Paths.get(path.toString()) : null;
+    }
+
+
+    /**
+     * Returns the name of the batch job that imports the sheet on its own
+     * @return the name of the batch job that imports the sheet
+     */
+    public String getJobName() {
+        return jobName;
+    }
+
+
+    /**
+     * Returns the column fields read from the sheet
+     * @return the column fields read from the sheet
+     */
+    public String[] getFields() {
+        return fields;
+    }
+
+
+    /**
+     * Returns the column field that uniquely identifies a row of the sheet
+     * @return the key field of the rows
+     */
+    public String getKeyField() {
+        return keyField;
+    }
+
+
+    /**
+     * Returns the column field that refers to the row of the AtoN sheet that a row overlays, or null if undefined
+     * @return the parent key field of the rows, or null if undefined
+     */
+    public String getParentKeyField() {
+        return parentKeyField;
+    }
+}
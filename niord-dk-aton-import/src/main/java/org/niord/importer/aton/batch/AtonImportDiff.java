@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.model.IJsonSerializable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The result of a dry-run import of AFM sheets, i.e. the AtoNs that would be added, changed or removed.
+ * See {@linkplain AtonImportDryRunService}.
+ */
+@SuppressWarnings("unused")
+public class AtonImportDiff implements IJsonSerializable {
+
+    public enum ChangeType { ADDED, CHANGED, REMOVED }
+
+    int existingCount;
+    long durationMs;
+    List<SheetResult> sheets = new ArrayList<>();
+    List<AtonChange> changes = new ArrayList<>();
+
+
+    /**
+     * The result of the dry-run import of a single AFM sheet
+     */
+    public static class SheetResult implements IJsonSerializable {
+
+        AfmSheet sheet;
+        String fileName;
+        int rowCount;
+        int addedCount;
+        int changedCount;
+        int unchangedCount;
+        int removedCount;
+        long parseFailureCount;
+        Map<String, Long> skipped = new TreeMap<>();
+
+        /** Constructor **/
+        public SheetResult() {
+        }
+
+        /** Constructor **/
+        public SheetResult(AfmSheet sheet, String fileName) {
+            this.sheet = sheet;
+            this.fileName = fileName;
+        }
+
+        /*************************/
+        /** Getters and Setters **/
+        /*************************/
+
+        public AfmSheet getSheet() {
+            return sheet;
+        }
+
+        public void setSheet(AfmSheet sheet) {
+            this.sheet = sheet;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public void setFileName(String fileName) {
+            this.fileName = fileName;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public void setRowCount(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        public int getAddedCount() {
+            return addedCount;
+        }
+
+        public void setAddedCount(int addedCount) {
+            this.addedCount = addedCount;
+        }
+
+        public int getChangedCount() {
+            return changedCount;
+        }
+
+        public void setChangedCount(int changedCount) {
+            this.changedCount = changedCount;
+        }
+
+        public int getUnchangedCount() {
+            return unchangedCount;
+        }
+
+        public void setUnchangedCount(int unchangedCount) {
+            this.unchangedCount = unchangedCount;
+        }
+
+        public int getRemovedCount() {
+            return removedCount;
+        }
+
+        public void setRemovedCount(int removedCount) {
+            this.removedCount = removedCount;
+        }
+
+        public long getParseFailureCount() {
+            return parseFailureCount;
+        }
+
+        public void setParseFailureCount(long parseFailureCount) {
+            this.parseFailureCount = parseFailureCount;
+        }
+
+        public Map<String, Long> getSkipped() {
+            return skipped;
+        }
+
+        public void setSkipped(Map<String, Long> skipped) {
+            this.skipped = skipped;
+        }
+    }
+
+
+    /**
+     * An AtoN that would be added, changed or removed by the import.
+     * For changed AtoNs, only the differing tags and positions are included.
+     * Removed AtoNs are those that would be retired by a subsequent reconciliation.
+     */
+    public static class AtonChange implements IJsonSerializable {
+
+        String atonUid;
+        AfmSheet sheet;
+        ChangeType type;
+        Map<String, String> oldValues = new TreeMap<>();
+        Map<String, String> newValues = new TreeMap<>();
+
+        /** Constructor **/
+        public AtonChange() {
+        }
+
+        /** Constructor **/
+        public AtonChange(String atonUid, AfmSheet sheet, ChangeType type) {
+            this.atonUid = atonUid;
+            this.sheet = sheet;
+            this.type = type;
+        }
+
+        /*************************/
+        /** Getters and Setters **/
+        /*************************/
+
+        public String getAtonUid() {
+            return atonUid;
+        }
+
+        public void setAtonUid(String atonUid) {
+            this.atonUid = atonUid;
+        }
+
+        public AfmSheet getSheet() {
+            return sheet;
+        }
+
+        public void setSheet(AfmSheet sheet) {
+            this.sheet = sheet;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public void setType(ChangeType type) {
+            this.type = type;
+        }
+
+        public Map<String, String> getOldValues() {
+            return oldValues;
+        }
+
+        public void setOldValues(Map<String, String> oldValues) {
+            this.oldValues = oldValues;
+        }
+
+        public Map<String, String> getNewValues() {
+            return newValues;
+        }
+
+        public void setNewValues(Map<String, String> newValues) {
+            this.newValues = newValues;
+        }
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public int getExistingCount() {
+        return existingCount;
+    }
+
+    public void setExistingCount(int existingCount) {
+        this.existingCount = existingCount;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public List<SheetResult> getSheets() {
+        return sheets;
+    }
+
+    public void setSheets(List<SheetResult> sheets) {
+        this.sheets = sheets;
+    }
+
+    public List<AtonChange> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<AtonChange> changes) {
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonTag;
+import org.niord.importer.aton.batch.AtonImportDiff.AtonChange;
+import org.niord.importer.aton.batch.AtonImportDiff.ChangeType;
+import org.niord.importer.aton.batch.AtonImportDiff.SheetResult;
+import org.niord.importer.batch.BatchImportMetrics;
+import org.slf4j.Logger;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Performs a dry-run import of AFM sheets.
+ * <p>
+ * The rows of the sheets are parsed by the same sidecar files and processors as used by the AtoN import
+ * batch jobs, but rather than being persisted, the AtoNs are applied, in {@linkplain AfmSheet} order, to an
+ * in-memory snapshot of the existing AtoNs. The resulting diff is returned.
+ * <p>
+ * When the AtoN sheet is included, the visible AtoNs keyed by an AFM station number that are not part of
+ * the sheet are reported as removed, i.e. the AtoNs that a subsequent
+ * {@linkplain AtonReconciliationService reconciliation} would retire.
+ * <p>
+ * The service runs without a transaction, so the AtoNs of the snapshot are detached, and no changes can
+ * be written to the database.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class AtonImportDryRunService {
+
+    static final Map<AfmSheet, Class<? extends AbstractDkAtonImportProcessor>> PROCESSORS = new EnumMap<>(AfmSheet.class);
+    static {
+        PROCESSORS.put(AfmSheet.ATON, BatchDkAtonImportProcessor.class);
+        PROCESSORS.put(AfmSheet.LIGHT, BatchDkLightImportProcessor.class);
+        PROCESSORS.put(AfmSheet.AIS, BatchDkAisImportProcessor.class);
+        PROCESSORS.put(AfmSheet.DGPS, BatchDkDgpsImportProcessor.class);
+        PROCESSORS.put(AfmSheet.RACON, BatchDkRaconImportProcessor.class);
+    }
+
+    @Inject
+    Logger log;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Inject
+    @Any
+    Instance<AbstractDkAtonImportProcessor> processors;
+
+
+    /**
+     * Performs a dry-run import of the given AFM sheets
+     * @param sheets the AFM sheets, mapped to the path of the Excel file
+     * @return the diff of the dry-run import
+     */
+    public AtonImportDiff dryRun(Map<AfmSheet, Path> sheets) throws Exception {
+        long t0 = System.currentTimeMillis();
+        AtonImportDiff diff = new AtonImportDiff();
+
+        // Load the in-memory snapshot of the existing AtoNs
+        Map<String, AtonNode> snapshot = new HashMap<>();
+        for (AtonNode aton : em.createQuery(AbstractDkAtonImportProcessor.ALL_ATONS_QUERY, AtonNode.class).getResultList()) {
+            snapshot.put(aton.getAtonUid(), aton);
+        }
+        diff.setExistingCount(snapshot.size());
+
+        // Apply the sheets in dependency order
+        for (AfmSheet sheet : AfmSheet.values()) {
+            Path path = sheets.get(sheet);
+            if (path != null) {
+                diff.getSheets().add(dryRun(sheet, path, snapshot, diff));
+            }
+        }
+
+        diff.setDurationMs(System.currentTimeMillis() - t0);
+        log.info("Dry-run import of " + sheets.keySet() + " with " + diff.getChanges().size()
+                + " changes in " + diff.getDurationMs() + " ms");
+        return diff;
+    }
+
+
+    /**
+     * Performs a dry-run import of the given AFM sheet
+     * @param sheet the AFM sheet
+     * @param path the path of the Excel file
+     * @param snapshot the in-memory snapshot of the AtoNs, which is updated
+     * @param diff the diff to add the AtoN changes to
+     * @return the result of the dry-run import of the sheet
+     */
+    private SheetResult dryRun(AfmSheet sheet, Path path, Map<String, AtonNode> snapshot, AtonImportDiff diff) throws Exception {
+
+        SheetResult result = new SheetResult(sheet, path.getFileName().toString());
+        AbstractDkAtonImportProcessor processor = processors.select(PROCESSORS.get(sheet)).get();
+        processor.metrics = new BatchImportMetrics();
+
+        Path sidecarPath = AbstractDkAtonImportReader.createSidecar(path, sheet.getFields(), true);
+        try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(sidecarPath)) {
+            ExcelRowSchema schema = new ExcelRowSchema(sheet.getFields(), sidecar.getColIndex());
+            int keyField = sheet == AfmSheet.ATON
+                    ? ExcelRowSchema.fieldHandle(sheet.getFields(), BatchDkAtonImportReader.KEY_FIELD)
+                    : -1;
+            Set<String> importedUids = new HashSet<>();
+            Iterator<Row> rows = sidecar.rowIterator(0);
+            while (rows.hasNext()) {
+                Row row = rows.next();
+                result.rowCount++;
+                if (sheet == AfmSheet.ATON) {
+                    importedUids.add(ExcelRowHashes.key(schema, row, keyField));
+                }
+                AtonNode aton = processor.toAtonNode(new BatchDkAtonItem(schema, row));
+                if (aton != null) {
+                    apply(sheet, processor, aton, snapshot, result, diff);
+                }
+            }
+
+            if (sheet == AfmSheet.ATON) {
+                addRemovals(snapshot, importedUids, result, diff);
+            }
+        } finally {
+            processors.destroy(processor);
+            Files.deleteIfExists(sidecarPath);
+        }
+
+        result.setParseFailureCount(processor.metrics.getParseFailureNo());
+        result.getSkipped().putAll(processor.metrics.getSkippedNo());
+        return result;
+    }
+
+
+    /**
+     * Applies the imported AtoN to the snapshot and classifies it as added, changed or unchanged
+     * @param sheet the AFM sheet
+     * @param processor the processor used for merging changed AtoNs
+     * @param aton the imported AtoN
+     * @param snapshot the in-memory snapshot of the AtoNs, which is updated
+     * @param result the result of the dry-run import of the sheet
+     * @param diff the diff to add the AtoN change to
+     */
+    static void apply(AfmSheet sheet, AbstractDkAtonImportProcessor processor, AtonNode aton,
+                      Map<String, AtonNode> snapshot, SheetResult result, AtonImportDiff diff) {
+
+        AtonNode original = snapshot.get(aton.getAtonUid());
+        if (original == null) {
+            AtonChange change = new AtonChange(aton.getAtonUid(), sheet, ChangeType.ADDED);
+            change.getNewValues().putAll(values(aton));
+            diff.getChanges().add(change);
+            snapshot.put(aton.getAtonUid(), aton);
+            result.addedCount++;
+
+        } else if (original.hasChanged(aton)) {
+            Map<String, String> oldValues = values(original);
+            processor.merge(original, aton);
+            Map<String, String> newValues = values(original);
+
+            AtonChange change = new AtonChange(aton.getAtonUid(), sheet, ChangeType.CHANGED);
+            oldValues.forEach((k, v) -> {
+                if (!Objects.equals(v, newValues.get(k))) {
+                    change.getOldValues().put(k, v);
+                }
+            });
+            newValues.forEach((k, v) -> {
+                if (!Objects.equals(v, oldValues.get(k))) {
+                    change.getNewValues().put(k, v);
+                }
+            });
+            diff.getChanges().add(change);
+            result.changedCount++;
+
+        } else {
+            result.unchangedCount++;
+        }
+    }
+
+
+    /**
+     * Reports the visible AtoNs keyed by an AFM station number, which are not part of the AtoN sheet, as removed
+     * @param snapshot the in-memory snapshot of the AtoNs
+     * @param importedUids the AtoN UIDs of the rows of the AtoN sheet
+     * @param result the result of the dry-run import of the AtoN sheet
+     * @param diff the diff to add the AtoN changes to
+     */
+    static void addRemovals(Map<String, AtonNode> snapshot, Set<String> importedUids, SheetResult result, AtonImportDiff diff) {
+        for (AtonNode aton : snapshot.values()) {
+            String atonUid = aton.getAtonUid();
+            if (aton.isVisible() && AtonReconciliationService.isAfmStationUid(atonUid) && !importedUids.contains(atonUid)) {
+                AtonChange change = new AtonChange(atonUid, AfmSheet.ATON, ChangeType.REMOVED);
+                change.getOldValues().putAll(values(aton));
+                diff.getChanges().add(change);
+                result.removedCount++;
+            }
+        }
+    }
+
+
+    /** Returns the position and tags of the AtoN **/
+    private static Map<String, String> values(AtonNode aton) {
+        Map<String, String> values = new HashMap<>();
+        values.put("lat", aton.getLat() == null ? null : aton.getLat().toString());
+        values.put("lon", aton.getLon() == null ? null : aton.getLon().toString());
+        for (AtonTag tag : aton.getTags()) {
+            values.put(tag.getK(), tag.getV());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonTag;
+
+import javax.batch.runtime.context.StepContext;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of value snapshots of the existing AtoNs by AtoN UID, used by the processor
+ * of an AtoN import step, or of a single partition of a partitioned step.
+ * <p>
+ * The index is loaded once per step (partition) and stored as transient user data of the step context,
+ * which is not shared between partitions. The processor uses the snapshots to determine, without a database
+ * query per row, if an imported AtoN is new or unchanged. Only when an AtoN has changed, the managed AtoN
+ * is looked up by id within the chunk transaction and merged.
+ * <p>
+ * The snapshots are detached copies that are never modified, so a rolled back chunk cannot leave stale
+ * changes in the index. Once the processor has handed an AtoN to the writer, its AtoN UID is registered via
+ * {@linkplain #written(String)}, and subsequent look-ups of the AtoN UID are delegated to the database.
+ * The index is evicted upon write errors and when the step ends.
+ */
+public class AtonImportIndex {
+
+    final Map<String, AtonNode> snapshots = new HashMap<>();
+    final Set<String> writtenAtonUids = new HashSet<>();
+
+
+    /**
+     * Constructor
+     * @param atons the existing AtoNs to index
+     */
+    public AtonImportIndex(List<AtonNode> atons) {
+        for (AtonNode aton : atons) {
+            String atonUid = aton.getAtonUid();
+            if (atonUid != null) {
+                snapshots.put(atonUid, snapshot(aton));
+            }
+        }
+    }
+
+
+    /**
+     * Returns the index of the step (partition) of the given step context, loading it if undefined
+     * @param stepContext the step context
+     * @param loader loads the existing AtoNs
+     * @return the index of the step (partition)
+     */
+    public static AtonImportIndex forStep(StepContext stepContext, Supplier<List<AtonNode>> loader) {
+        Object index = stepContext.getTransientUserData();
+        if (!(index instanceof AtonImportIndex)) {
+            index = new AtonImportIndex(loader.get());
+            stepContext.setTransientUserData(index);
+        }
+        return (AtonImportIndex) index;
+    }
+
+
+    /**
+     * Evicts the index of the step (partition) of the given step context
+     * @param stepContext the step context
+     */
+    public static void evict(StepContext stepContext) {
+        if (stepContext.getTransientUserData() instanceof AtonImportIndex) {
+            stepContext.setTransientUserData(null);
+        }
+    }
+
+
+    /**
+     * Returns a detached copy of the given AtoN
+     * @param aton the AtoN to copy
+     * @return the copy of the AtoN
+     */
+    static AtonNode snapshot(AtonNode aton) {
+        AtonNode snapshot = new AtonNode();
+        snapshot.setId(aton.getId());
+        snapshot.setVisible(aton.isVisible());
+        snapshot.setLat(aton.getLat());
+        snapshot.setLon(aton.getLon());
+        snapshot.setTimestamp(aton.getTimestamp());
+        snapshot.setUser(aton.getUser());
+        snapshot.setUid(aton.getUid());
+        snapshot.setChangeset(aton.getChangeset());
+        snapshot.setVersion(aton.getVersion());
+        for (AtonTag tag : aton.getTags()) {
+            snapshot.updateTag(tag.getK(), tag.getV());
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Returns if the AtoN with the given AtoN UID has been handed to the writer,
+     * in which case it must be looked up from the database
+     * @param atonUid the AtoN UID
+     * @return if the AtoN with the given AtoN UID has been handed to the writer
+     */
+    public boolean isWritten(String atonUid) {
+        return writtenAtonUids.contains(atonUid);
+    }
+
+
+    /**
+     * Returns the snapshot of the existing AtoN with the given AtoN UID, or null if none exists.
+     * The snapshot must not be modified.
+     * @param atonUid the AtoN UID
+     * @return the snapshot of the existing AtoN with the given AtoN UID, or null if none exists
+     */
+    public AtonNode find(String atonUid) {
+        return atonUid == null || isWritten(atonUid) ? null : snapshots.get(atonUid);
+    }
+
+
+    /**
+     * Registers that the AtoN with the given AtoN UID has been handed to the writer
+     * @param atonUid the AtoN UID
+     */
+    public void written(String atonUid) {
+        if (atonUid != null) {
+            writtenAtonUids.add(atonUid);
+            snapshots.remove(atonUid);
+        }
+    }
+
+
+    /**
+     * Returns the number of indexed AtoNs
+     * @return the number of indexed AtoNs
+     */
+    public int size() {
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.model.IJsonSerializable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of reconciling the persisted AtoNs with the last AtoN import.
+ * See {@linkplain AtonReconciliationService}.
+ */
+@SuppressWarnings("unused")
+public class AtonReconciliationReport implements IJsonSerializable {
+
+    boolean dryRun;
+    int importedCount;
+    int persistedCount;
+    int changeSet = -1;
+    long durationMs;
+    List<String> missingUids = new ArrayList<>();
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return (dryRun ? "Dry-run: " : "")
+                + missingUids.size() + " of " + persistedCount + " visible AtoNs missing from the "
+                + importedCount + " imported AtoNs";
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public void setImportedCount(int importedCount) {
+        this.importedCount = importedCount;
+    }
+
+    public int getPersistedCount() {
+        return persistedCount;
+    }
+
+    public void setPersistedCount(int persistedCount) {
+        this.persistedCount = persistedCount;
+    }
+
+    public int getMissingCount() {
+        return missingUids.size();
+    }
+
+    public int getChangeSet() {
+        return changeSet;
+    }
+
+    public void setChangeSet(int changeSet) {
+        this.changeSet = changeSet;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public List<String> getMissingUids() {
+        return missingUids;
+    }
+
+    public void setMissingUids(List<String> missingUids) {
+        this.missingUids = missingUids;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.aton.AtonTag;
+import org.niord.core.repo.RepositoryService;
+import org.slf4j.Logger;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reconciles the persisted AtoNs with the last import of the AFM AtoN register ("afmmyndighed_table").
+ * <p>
+ * The AtoN import only adds and updates AtoNs. AtoNs that have been removed from the AFM register are
+ * detected by comparing the AtoN UIDs of the visible persisted AtoNs with the keys of the
+ * {@linkplain ExcelRowHashes row hash file} of the last completed dk-aton-import job, and may be
+ * marked as invisible.
+ * <p>
+ * Only AtoNs keyed by an AFM station number ("AFMSTATION") are reconciled. AtoNs created by the other
+ * AFM sheets under their own UIDs, i.e. DGPS stations and lights without an AFM_NR, are never retired.
+ * Lights, AIS and RACONs with an AFM_NR overlay the AtoN of the AFM station, and are retired along with it.
+ */
+@Stateless
+public class AtonReconciliationService {
+
+    public static final String ATON_IMPORT_JOB = "dk-aton-import";
+
+    /** The max number of AtoNs updated by a single bulk update statement **/
+    static final int UPDATE_BATCH_SIZE = 500;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @PersistenceContext
+    EntityManager em;
+
+
+    /**
+     * Computes the visible AtoNs that are missing from the last AtoN import and, unless it is a dry-run,
+     * marks them as invisible.
+     *
+     * @param dryRun if set, the missing AtoNs are only reported, not updated
+     * @param changeSet the change set to assign to the updated AtoNs
+     * @return the reconciliation report
+     */
+    public AtonReconciliationReport reconcile(boolean dryRun, int changeSet) throws IOException {
+        long t0 = System.currentTimeMillis();
+
+        ExcelRowHashes hashes = ExcelRowHashes.open(
+                ExcelRowHashes.hashesPath(repositoryService.getRepoRoot(), ATON_IMPORT_JOB));
+        Set<String> importedUids = hashes.getPreviousKeys();
+
+        // Never retire AtoNs based on an incomplete or missing import
+        if (!hashes.isPreviousComplete() || importedUids.isEmpty()) {
+            throw new IllegalStateException("No completed " + ATON_IMPORT_JOB + " import to reconcile with");
+        }
+
+        AtonReconciliationReport report = new AtonReconciliationReport();
+        report.setDryRun(dryRun);
+        report.setImportedCount(importedUids.size());
+
+        // Compute the set difference in a single pass over the UIDs of the visible AtoNs
+        List<Object[]> persisted = em
+                .createQuery("select a.id, t.v from AtonNode a join a.tags t where a.visible = true and t.k = :k",
+                        Object[].class)
+                .setParameter("k", AtonTag.TAG_ATON_UID)
+                .getResultList();
+        List<Integer> missingIds = findMissing(persisted, importedUids, report.getMissingUids());
+        Collections.sort(report.getMissingUids());
+        report.setPersistedCount(persisted.size());
+
+        if (!dryRun && !missingIds.isEmpty()) {
+            report.setChangeSet(changeSet);
+
+            // The bulk update bypasses the entity lifecycle, so bump the version and timestamp explicitly,
+            // to allow OSM consumers and the change set export to detect the change
+            Date now = new Date();
+            for (int x = 0; x < missingIds.size(); x += UPDATE_BATCH_SIZE) {
+                em.createQuery("update AtonNode a set a.visible = false, a.changeset = :changeSet, "
+                                + "a.version = a.version + 1, a.timestamp = :now where a.id in :ids")
+                        .setParameter("changeSet", changeSet)
+                        .setParameter("now", now)
+                        .setParameter("ids", missingIds.subList(x, Math.min(missingIds.size(), x + UPDATE_BATCH_SIZE)))
+                        .executeUpdate();
+            }
+
+            // Managed AtoNs of the persistence context are stale after the bulk update
+            em.clear();
+        }
+
+        report.setDurationMs(System.currentTimeMillis() - t0);
+        log.info("Reconciled AtoNs with the last " + ATON_IMPORT_JOB + " import: " + report);
+        return report;
+    }
+
+
+    /**
+     * Returns the ids of the persisted AtoNs keyed by an AFM station number that are not part of the imported UIDs
+     *
+     * @param persisted the id and AtoN UID of the persisted AtoNs
+     * @param importedUids the imported AtoN UIDs
+     * @param missingUids updated with the UIDs of the missing AtoNs
+     * @return the ids of the missing AtoNs
+     */
+    static List<Integer> findMissing(List<Object[]> persisted, Set<String> importedUids, List<String> missingUids) {
+        List<Integer> missingIds = new ArrayList<>();
+        for (Object[] aton : persisted) {
+            String atonUid = (String) aton[1];
+            if (isAfmStationUid(atonUid) && !importedUids.contains(atonUid)) {
+                missingIds.add((Integer) aton[0]);
+                missingUids.add(atonUid);
+            }
+        }
+        return missingIds;
+    }
+
+
+    /** Returns if the AtoN UID is an AFM station number, rather than a UID created by another AFM sheet **/
+    static boolean isAfmStationUid(String atonUid) {
+        return atonUid != null
+                && !atonUid.startsWith(BatchDkLightImportProcessor.ATON_UID_PREFIX)
+                && !atonUid.startsWith(BatchDkDgpsImportProcessor.ATON_UID_PREFIX);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.batch.BatchData;
+import org.niord.core.batch.BatchService;
+import org.slf4j.Logger;
+
+import javax.annotation.Resource;
+import javax.batch.api.AbstractBatchlet;
+import javax.batch.runtime.context.JobContext;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * First step of the combined dk-afm-import batch job.
+ * <p>
+ * The uploaded AFM sheets are moved to a data directory by the REST service, and the path of each sheet is
+ * passed on as the {@linkplain AfmSheet#getPathProperty() path property} of the batch data. The sheets are
+ * parsed concurrently, using the managed executor service of the container, into
+ * {@linkplain ExcelRowSidecar sidecar files}, which the subsequent import steps read in {@linkplain AfmSheet} order.
+ */
+@Named
+public class BatchDkAfmSheetsBatchlet extends AbstractBatchlet {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    BatchService batchService;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String process() throws Exception {
+        long t0 = System.currentTimeMillis();
+        BatchData job = batchService.findByInstanceId(jobContext.getInstanceId());
+
+        // Parse the sheets concurrently
+        Map<AfmSheet, Future<Path>> sidecars = new EnumMap<>(AfmSheet.class);
+        for (AfmSheet sheet : AfmSheet.values()) {
+            Path path = sheet.path(job.getProperties());
+            if (path != null) {
+                sidecars.put(sheet, executorService.submit(
+                        () -> AbstractDkAtonImportReader.createSidecar(path, sheet.getFields(), true)));
+            }
+        }
+
+        List<AfmSheet> sheets = new ArrayList<>();
+        for (Map.Entry<AfmSheet, Future<Path>> sidecar : sidecars.entrySet()) {
+            try {
+                sidecar.getValue().get();
+                sheets.add(sidecar.getKey());
+            } catch (ExecutionException e) {
+                sidecars.values().forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Failed parsing " + sidecar.getKey() + " sheet", e.getCause());
+            }
+        }
+
+        log.info("Parsed AFM sheets " + sheets + " in " + (System.currentTimeMillis() - t0) + " ms");
+        return sheets.toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.batch.BatchData;
+import org.niord.core.batch.BatchService;
+import org.slf4j.Logger;
+
+import javax.batch.api.listener.AbstractJobListener;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.context.JobContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Deletes the AFM sheets of a combined dk-afm-import batch job, along with their sidecar files,
+ * once the batch job has completed.
+ * <p>
+ * If the batch job fails, the sheets are kept, so that the batch job may be restarted.
+ */
+@Named
+public class BatchDkAfmSheetsListener extends AbstractJobListener {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    BatchService batchService;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterJob() throws Exception {
+        // The final batch status has not been set yet, so the status is still STARTED if all steps completed
+        BatchStatus status = jobContext.getBatchStatus();
+        if (status != BatchStatus.STARTED && status != BatchStatus.COMPLETED) {
+            return;
+        }
+
+        BatchData job = batchService.findByInstanceId(jobContext.getInstanceId());
+        if (job == null) {
+            return;
+        }
+
+        for (AfmSheet sheet : AfmSheet.values()) {
+            Path path = sheet.path(job.getProperties());
+            if (path != null) {
+                delete(path);
+            }
+        }
+    }
+
+
+    /** Deletes the sheet, its sidecar file and, once empty, the data directory **/
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(ExcelRowSidecar.sidecarPath(path));
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.getParent());
+        } catch (DirectoryNotEmptyException ignored) {
+            // Other sheets remain in the data directory
+        } catch (IOException e) {
+            log.warn("Failed deleting AFM sheet " + path + ": " + e);
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.slf4j.Logger;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import static org.niord.importer.aton.batch.ExcelRowSchema.fieldHandle;
+
 /**
  * AtoN batch processor used for converting the legacy "AFM" Light Excel row into OSM seamark format.
  * Before running this batch job, run the dk-aton-import job.
@@ -35,6 +37,22 @@ import javax.inject.Named;
 @Named
 public class BatchDkAisImportProcessor extends AbstractDkAtonImportProcessor {
 
+    // Handles of the Excel columns defined by BatchDkAisImportReader.FIELDS
+    static final int NR_DK           = fieldHandle(BatchDkAisImportReader.FIELDS, "NR_DK");
+    static final int AFM_NR          = fieldHandle(BatchDkAisImportReader.FIELDS, "AFM_NR");
+    static final int AFM_NAVN        = fieldHandle(BatchDkAisImportReader.FIELDS, "AFM_navn");
+    static final int MMSI_NR         = fieldHandle(BatchDkAisImportReader.FIELDS, "MMSI_NR");
+    static final int IDENTIFIKATION  = fieldHandle(BatchDkAisImportReader.FIELDS, "Identifikation");
+    static final int TYPE            = fieldHandle(BatchDkAisImportReader.FIELDS, "Type");
+    static final int STATUS          = fieldHandle(BatchDkAisImportReader.FIELDS, "STATUS");
+    static final int LATITUDE        = fieldHandle(BatchDkAisImportReader.FIELDS, "LATITUDE");
+    static final int LONGITUDE       = fieldHandle(BatchDkAisImportReader.FIELDS, "LONGITUDE");
+    static final int AJOURFOERT_DATO = fieldHandle(BatchDkAisImportReader.FIELDS, "Ajourfoert_dato");
+
+    // Tag families replaced as a whole when merging AtoNs
+    static final AtonTagFamilies TAG_FAMILIES = new AtonTagFamilies("seamark:radio_station");
+    static final int AIS_TAGS        = TAG_FAMILIES.mask("seamark:radio_station");
+
     @Inject
     Logger log;
 
@@ -42,29 +60,29 @@ public class BatchDkAisImportProcessor extends AbstractDkAtonImportProcessor {
     @Override
     protected AtonNode parseAtonExcelRow() throws Exception {
 
-        String aisNr = String.valueOf(numericValue("NR_DK").intValue());
+        String aisNr = String.valueOf(numericValue(NR_DK).intValue());
 
         // Only process active AIS
-        if (!"DRIFT".equalsIgnoreCase(stringValue("STATUS"))) {
-            getLog().info("Skipping inactive AIS " + aisNr);
+        if (!"DRIFT".equalsIgnoreCase(stringValue(STATUS))) {
+            skipRow("inactive", aisNr);
             return null;
         }
 
         // Only process AIS with known AFM-NR
-        String atonUid = stringValue("AFM_NR");
+        String atonUid = stringValue(AFM_NR);
         if (StringUtils.isBlank(atonUid)) {
-            getLog().info("Skipping AIS without AFM-NR " + aisNr);
+            skipRow("noAfmNr", aisNr);
             return null;
         }
 
-        User user = job.getUser();
+        User user = getUser();
 
         AtonNode aton = new AtonNode();
 
         aton.setVisible(true);
-        aton.setLat(numericValue("LATITUDE"));
-        aton.setLon(numericValue("LONGITUDE"));
-        aton.setTimestamp(dateValue("Ajourfoert_dato"));
+        aton.setLat(numericValue(LATITUDE));
+        aton.setLon(numericValue(LONGITUDE));
+        aton.setTimestamp(dateValue(AJOURFOERT_DATO));
         aton.setUser(user != null ? user.getUsername() : "");
         aton.setUid(user != null ? user.getId() : -1);
         aton.setChangeset(getChangeSet());
@@ -73,18 +91,18 @@ public class BatchDkAisImportProcessor extends AbstractDkAtonImportProcessor {
         // If no AtoN UID exists, construct it
         aton.updateTag(AtonTag.TAG_ATON_UID, atonUid);
         aton.updateTag(AtonTag.TAG_AIS_NUMBER, aisNr);
-        aton.updateTag("seamark:name", stringValue("AFM_navn"));
+        aton.updateTag("seamark:name", stringValue(AFM_NAVN));
 
         aton.updateTag("seamark:type", "radio_station");
 
         // Category - NB: spelling mistake intentional
-        aton.updateTag("seamark:radio_station:category", "Virituel".equals(stringValue("Type")) ? "v-ais" : "ais");
+        aton.updateTag("seamark:radio_station:category", "Virituel".equals(stringValue(TYPE)) ? "v-ais" : "ais");
 
         // Call-sign
-        aton.updateTag("seamark:radio_station:callsign", stringValue("Identifikation"));
+        aton.updateTag("seamark:radio_station:callsign", stringValue(IDENTIFIKATION));
 
         // MMSI
-        aton.updateTag("seamark:radio_station:mmsi", String.valueOf(numericValue("MMSI_NR").intValue()));
+        aton.updateTag("seamark:radio_station:mmsi", String.valueOf(numericValue(MMSI_NR).intValue()));
 
         // From http://wiki.openstreetmap.org/wiki/Key:radar_transponder
         aton.updateTag("radio_transponder:AIS", "yes");
@@ -100,11 +118,11 @@ public class BatchDkAisImportProcessor extends AbstractDkAtonImportProcessor {
         // Do not override the original AtoN type
         String origType = original.getTagValue("seamark:type");
         if (origType != null) {
-            aton.removeTags("seamark:type");
+            AtonTagFamilies.removeTag(aton, "seamark:type");
         }
 
         // Remove any AIS information from the original
-        original.removeTags("seamark:radio_station\\.*");
+        TAG_FAMILIES.removeFamilies(original, AIS_TAGS);
 
         // Override any remaining tags in the original
         original.updateNode(aton);
@@ -32,4 +32,10 @@ public class BatchDkAisImportReader extends AbstractDkAtonImportReader {
     public String[] getFields() {
         return FIELDS;
     }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String getParentKeyField() {
+        return AFM_NR_FIELD;
+    }
 }
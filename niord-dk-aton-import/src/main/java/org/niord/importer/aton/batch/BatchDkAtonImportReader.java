@@ -23,6 +23,9 @@ import javax.inject.Named;
 @Named
 public class BatchDkAtonImportReader extends AbstractDkAtonImportReader {
 
+    /** The AFM station number, which is also the AtoN UID **/
+    public static final String KEY_FIELD = "AFMSTATION";
+
     public static final String[] FIELDS = {
             "AFMSTATION", "FYRLBNR_DK", "AFM_NAVN", "PLADSNAVN", "AFUFORKORTELSE", "BESKRIVELSE",
             "LATTITUDE", "LONGITUDE", "KARAKNR", "EJER", "KARAKNR", "AJF_BRUGER", "AJF_DATO" };
@@ -32,4 +35,10 @@ public class BatchDkAtonImportReader extends AbstractDkAtonImportReader {
     public String[] getFields() {
         return FIELDS;
     }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String getKeyField() {
+        return KEY_FIELD;
+    }
 }
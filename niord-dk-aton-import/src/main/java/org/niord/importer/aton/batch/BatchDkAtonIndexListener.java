@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import javax.batch.api.chunk.listener.ItemWriteListener;
+import javax.batch.api.listener.StepListener;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.List;
+
+/**
+ * Evicts the {@linkplain AtonImportIndex} of an AtoN import step (partition) upon write errors,
+ * and when the step completes.
+ */
+@Named
+public class BatchDkAtonIndexListener implements ItemWriteListener, StepListener {
+
+    @Inject
+    StepContext stepContext;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void onWriteError(List<Object> items, Exception ex) throws Exception {
+        AtonImportIndex.evict(stepContext);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterStep() throws Exception {
+        AtonImportIndex.evict(stepContext);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void beforeWrite(List<Object> items) throws Exception {
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterWrite(List<Object> items) throws Exception {
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void beforeStep() throws Exception {
+    }
+}
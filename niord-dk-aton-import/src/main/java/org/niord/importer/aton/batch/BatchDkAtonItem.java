@@ -17,32 +17,36 @@ package org.niord.importer.aton.batch;
 
 import org.apache.poi.ss.usermodel.Row;
 
-import java.util.Map;
-
 /**
- * Encapsulates a row in an Excel sheet + an index of column indexes.
+ * Encapsulates a row in an Excel sheet + the pre-resolved column schema of the sheet.
+ * <p>
+ * The key and content hash of the row are recorded in the {@linkplain ExcelRowHashes} of the job once
+ * the item has been written, unless the item has been discarded by the processor.
  */
 @SuppressWarnings("unused")
 public class BatchDkAtonItem {
-    Map<String, Integer> colIndex;
+    ExcelRowSchema schema;
     Row row;
+    String rowKey;
+    long rowHash;
+    boolean discarded;
 
     /** Constructor */
     public BatchDkAtonItem() {
     }
 
     /** Constructor */
-    public BatchDkAtonItem(Map<String, Integer> colIndex, Row row) {
-        this.colIndex = colIndex;
+    public BatchDkAtonItem(ExcelRowSchema schema, Row row) {
+        this.schema = schema;
         this.row = row;
     }
 
-    public Map<String, Integer> getColIndex() {
-        return colIndex;
+    public ExcelRowSchema getSchema() {
+        return schema;
     }
 
-    public void setColIndex(Map<String, Integer> colIndex) {
-        this.colIndex = colIndex;
+    public void setSchema(ExcelRowSchema schema) {
+        this.schema = schema;
     }
 
     public Row getRow() {
@@ -52,4 +56,28 @@ public class BatchDkAtonItem {
     public void setRow(Row row) {
         this.row = row;
     }
+
+    public String getRowKey() {
+        return rowKey;
+    }
+
+    public void setRowKey(String rowKey) {
+        this.rowKey = rowKey;
+    }
+
+    public long getRowHash() {
+        return rowHash;
+    }
+
+    public void setRowHash(long rowHash) {
+        this.rowHash = rowHash;
+    }
+
+    public boolean isDiscarded() {
+        return discarded;
+    }
+
+    public void setDiscarded(boolean discarded) {
+        this.discarded = discarded;
+    }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.usermodel.Row;
+import org.niord.core.batch.BatchService;
+import org.slf4j.Logger;
+
+import javax.batch.api.BatchProperty;
+import javax.batch.api.partition.PartitionMapper;
+import javax.batch.api.partition.PartitionPlan;
+import javax.batch.api.partition.PartitionPlanImpl;
+import javax.batch.runtime.context.JobContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Properties;
+
+/**
+ * Splits the data rows of an AtoN Excel sheet into partitions by the hash of the key of the AtoN each row updates.
+ * <p>
+ * Several rows may update the same AtoN, e.g. multiple light rows with the same AFM_NR. Partitioning by row range
+ * would process such rows concurrently in separate partitions, causing lost updates or optimistic lock failures,
+ * whereas all rows of an AtoN are assigned to the same partition.
+ * <p>
+ * The mapper creates the {@linkplain ExcelRowSidecar sidecar file} of the sheet and assigns the rows to partitions
+ * in a single pass. The row indexes of each partition are written to a partitions file next to the sidecar file,
+ * from which each partition reader seeks directly to its own rows. The partition index and partition count are
+ * passed on to the partition readers as the "partition" and "partitionCount" partition plan properties.
+ * The number of partitions is defined by the "partitions" batch property, and defaults to the number of processors.
+ * <p>
+ * Note that each partition pre-loads its own {@linkplain AtonImportIndex} of all existing AtoNs, since the AtoN UIDs
+ * cannot reliably be mapped to the row keys of the partition. So, the pre-load cost grows with the partition count.
+ */
+@Named
+public class BatchDkAtonPartitionMapper implements PartitionMapper {
+
+    /** The minimum number of rows to process in a partition */
+    public static final int MIN_PARTITION_ROWS = 100;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    BatchService batchService;
+
+    @Inject
+    @BatchProperty
+    String partitions;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public PartitionPlan mapPartitions() throws Exception {
+
+        AfmSheet sheet = AfmSheet.ofJobName(jobContext.getJobName());
+        Path path = batchService.getBatchJobDataFile(jobContext.getInstanceId());
+        Path sidecarPath = AbstractDkAtonImportReader.createSidecar(path, sheet.getFields(), true);
+
+        int rowNo;
+        int partitionNo;
+        try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(sidecarPath)) {
+            rowNo = sidecar.getRowCount();
+
+            int maxPartitionNo = StringUtils.isNumeric(partitions) && StringUtils.isNotBlank(partitions)
+                    ? Integer.parseInt(partitions)
+                    : Runtime.getRuntime().availableProcessors();
+            partitionNo = Math.max(1, Math.min(maxPartitionNo, rowNo / MIN_PARTITION_ROWS));
+
+            // Upon restart, the partitions file has already been written
+            Path partitionsPath = partitionsPath(sidecarPath, partitionNo);
+            if (partitionNo > 1 && !Files.exists(partitionsPath)) {
+                writePartitions(partitionsPath, assignRows(sidecar, sheet, partitionNo));
+            }
+        }
+
+        Properties[] partitionProperties = new Properties[partitionNo];
+        for (int p = 0; p < partitionNo; p++) {
+            partitionProperties[p] = new Properties();
+            partitionProperties[p].setProperty("partition", String.valueOf(p));
+            partitionProperties[p].setProperty("partitionCount", String.valueOf(partitionNo));
+        }
+
+        log.info("Splitting " + rowNo + " Excel rows into " + partitionNo + " partitions");
+
+        PartitionPlanImpl plan = new PartitionPlanImpl();
+        plan.setPartitions(partitionNo);
+        plan.setThreads(partitionNo);
+        plan.setPartitionProperties(partitionProperties);
+        return plan;
+    }
+
+
+    /**
+     * Assigns the data rows of the sidecar to partitions by the key of the AtoN each row updates
+     * @param sidecar the sidecar
+     * @param sheet the AFM sheet of the sidecar
+     * @param partitionNo the number of partitions
+     * @return the ascending data row indexes of each partition
+     */
+    static int[][] assignRows(ExcelRowSidecar sidecar, AfmSheet sheet, int partitionNo) throws IOException {
+        ExcelRowSchema schema = new ExcelRowSchema(sheet.getFields(), sidecar.getColIndex());
+        int keyField = ExcelRowSchema.fieldHandle(sheet.getFields(), sheet.getKeyField());
+        int parentKeyField = sheet.getParentKeyField() != null
+                ? ExcelRowSchema.fieldHandle(sheet.getFields(), sheet.getParentKeyField())
+                : -1;
+
+        int[] rowPartitions = new int[sidecar.getRowCount()];
+        int[] rowCounts = new int[partitionNo];
+        Iterator<Row> rows = sidecar.rowIterator(0);
+        for (int r = 0; rows.hasNext(); r++) {
+            Row row = rows.next();
+            String key = ExcelRowHashes.key(schema, row, keyField);
+            String parentKey = parentKeyField >= 0 ? ExcelRowHashes.key(schema, row, parentKeyField) : null;
+            rowPartitions[r] = AbstractDkAtonImportReader.partitionOf(key, parentKey, partitionNo);
+            rowCounts[rowPartitions[r]]++;
+        }
+
+        int[][] partitionRows = new int[partitionNo][];
+        for (int p = 0; p < partitionNo; p++) {
+            partitionRows[p] = new int[rowCounts[p]];
+            rowCounts[p] = 0;
+        }
+        for (int r = 0; r < rowPartitions.length; r++) {
+            int p = rowPartitions[r];
+            partitionRows[p][rowCounts[p]++] = r;
+        }
+        return partitionRows;
+    }
+
+
+    /**
+     * Returns the path of the partitions file of the given sidecar file and partition count
+     * @param sidecarPath the path of the sidecar file
+     * @param partitionNo the number of partitions
+     * @return the path of the partitions file
+     */
+    static Path partitionsPath(Path sidecarPath, int partitionNo) {
+        return sidecarPath.resolveSibling(sidecarPath.getFileName() + ".p" + partitionNo);
+    }
+
+
+    /**
+     * Writes the data row indexes of each partition to the partitions file, via a temporary file
+     * @param path the path of the partitions file
+     * @param partitionRows the data row indexes of each partition
+     */
+    static void writePartitions(Path path, int[][] partitionRows) throws IOException {
+        Path tmpFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+            out.writeInt(partitionRows.length);
+            for (int[] rows : partitionRows) {
+                out.writeInt(rows.length);
+                for (int row : rows) {
+                    out.writeInt(row);
+                }
+            }
+        }
+        Files.move(tmpFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Reads the data row indexes of the given partition from the partitions file
+     * @param path the path of the partitions file
+     * @param partition the partition index
+     * @return the ascending data row indexes of the partition
+     */
+    static int[] readPartition(Path path, int partition) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IllegalStateException("No partitions file " + path + ", has the partition mapper been run?");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int partitionNo = in.readInt();
+            if (partition < 0 || partition >= partitionNo) {
+                throw new IllegalArgumentException("Invalid partition " + partition + " of " + partitionNo);
+            }
+            for (int p = 0; p < partition; p++) {
+                for (int n = in.readInt(); n > 0; n--) {
+                    in.readInt();
+                }
+            }
+            int[] rows = new int[in.readInt()];
+            for (int x = 0; x < rows.length; x++) {
+                rows[x] = in.readInt();
+            }
+            return rows;
+        }
+    }
+}
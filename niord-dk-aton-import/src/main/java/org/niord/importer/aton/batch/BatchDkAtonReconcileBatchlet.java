@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.batch.BatchData;
+import org.niord.core.batch.BatchService;
+import org.slf4j.Logger;
+
+import javax.batch.api.AbstractBatchlet;
+import javax.batch.api.BatchProperty;
+import javax.batch.runtime.context.JobContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Post-import step of the dk-aton-import and dk-afm-import batch jobs that reports the visible AtoNs that
+ * are missing from the imported AFM AtoN register, as a dry-run of {@linkplain AtonReconciliationService}.
+ * <p>
+ * In the combined dk-afm-import batch job, the "sheet" batch property is set to "ATON", and the step is
+ * skipped if the import does not include the AtoN sheet.
+ * <p>
+ * The missing AtoNs are not modified. They are marked as invisible by an explicit reconciliation
+ * via the "/import/atons/reconcile" REST endpoint.
+ */
+@Named
+public class BatchDkAtonReconcileBatchlet extends AbstractBatchlet {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    BatchService batchService;
+
+    @Inject
+    AtonReconciliationService reconciliationService;
+
+    @Inject
+    @BatchProperty
+    String sheet;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String process() throws Exception {
+        if (StringUtils.isNotBlank(sheet)) {
+            BatchData job = batchService.findByInstanceId(jobContext.getInstanceId());
+            if (job == null || AfmSheet.valueOf(sheet).path(job.getProperties()) == null) {
+                log.info("No " + sheet + " sheet imported, skipping AtoN reconciliation");
+                return "SKIPPED";
+            }
+        }
+
+        try {
+            return reconciliationService.reconcile(true, -1).toString();
+        } catch (IllegalStateException e) {
+            log.warn("Skipping AtoN reconciliation: " + e.getMessage());
+            return "SKIPPED";
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.batch.BatchData;
+import org.niord.core.batch.BatchService;
+import org.niord.core.settings.Setting;
+import org.niord.core.settings.SettingsService;
+import org.slf4j.Logger;
+
+import javax.batch.api.listener.AbstractJobListener;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.context.JobContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Registers the MD5 checksums of the imported AFM Excel sheets once a DK AtoN import batch job has completed,
+ * so that identical files are skipped by subsequent uploads.
+ * <p>
+ * The checksums are passed on as "checksum.[sheet]" batch data properties, and are stored in a separate
+ * setting for each {@linkplain AfmSheet}. If the batch job fails, the checksums are not registered,
+ * and the files may be uploaded again.
+ */
+@Named
+public class BatchDkChecksumListener extends AbstractJobListener {
+
+    public static final String CHECKSUM_PROPERTY = "checksum.";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    BatchService batchService;
+
+    @Inject
+    SettingsService settingsService;
+
+
+    /**
+     * Returns the setting holding the MD5 checksum of the last imported file of the AFM sheet
+     * @param sheet the AFM sheet
+     * @return the checksum setting of the AFM sheet
+     */
+    public static Setting checksumSetting(AfmSheet sheet) {
+        return new Setting("dkAtonImportChecksum" + sheet.name())
+                .description("MD5 checksum of the last imported AFM " + sheet + " Excel sheet")
+                .editable(false)
+                .cached(false);
+    }
+
+
+    /**
+     * Returns the name of the batch data property holding the MD5 checksum of the imported file of the AFM sheet
+     * @param sheet the AFM sheet
+     * @return the checksum property of the AFM sheet
+     */
+    public static String checksumProperty(AfmSheet sheet) {
+        return CHECKSUM_PROPERTY + sheet.name();
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterJob() throws Exception {
+        // The final batch status has not been set yet, so the status is still STARTED if all steps completed
+        BatchStatus status = jobContext.getBatchStatus();
+        if (status != BatchStatus.STARTED && status != BatchStatus.COMPLETED) {
+            return;
+        }
+
+        BatchData job = batchService.findByInstanceId(jobContext.getInstanceId());
+        if (job == null || job.getProperties() == null) {
+            return;
+        }
+
+        for (AfmSheet sheet : AfmSheet.values()) {
+            Object checksum = job.getProperties().get(checksumProperty(sheet));
+            if (checksum != null) {
+                Setting setting = checksumSetting(sheet);
+                if (!checksum.equals(settingsService.get(setting))) {
+                    settingsService.set(setting.getKey(), checksum);
+                }
+                log.info("Registered checksum of imported " + sheet + " sheet: " + checksum);
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.slf4j.Logger;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import static org.niord.importer.aton.batch.ExcelRowSchema.fieldHandle;
+
 /**
  * DGPS batch processor used for converting the legacy "AFM" DGPS Excel rows into OSM seamark format.
  *
@@ -33,6 +35,19 @@ import javax.inject.Named;
 @Named
 public class BatchDkDgpsImportProcessor extends AbstractDkAtonImportProcessor {
 
+    /** Prefix of the AtoN UIDs of DGPS stations **/
+    public static final String ATON_UID_PREFIX = "dgps-";
+
+    // Handles of the Excel columns defined by BatchDkDgpsImportReader.FIELDS
+    static final int NR_DK           = fieldHandle(BatchDkDgpsImportReader.FIELDS, "NR_DK");
+    static final int AFM_NAVN        = fieldHandle(BatchDkDgpsImportReader.FIELDS, "AFM_navn");
+    static final int FREKVENS_KHZ    = fieldHandle(BatchDkDgpsImportReader.FIELDS, "Frekvens_kHz");
+    static final int RAEKKEVIDE_SM   = fieldHandle(BatchDkDgpsImportReader.FIELDS, "Raekkevide_sm");
+    static final int STATUS          = fieldHandle(BatchDkDgpsImportReader.FIELDS, "STATUS");
+    static final int LATITUDE        = fieldHandle(BatchDkDgpsImportReader.FIELDS, "LATITUDE");
+    static final int LONGITUDE       = fieldHandle(BatchDkDgpsImportReader.FIELDS, "LONGITUDE");
+    static final int AJOURFOERT_DATO = fieldHandle(BatchDkDgpsImportReader.FIELDS, "Ajourfoert_dato");
+
     @Inject
     Logger log;
 
@@ -40,31 +55,31 @@ public class BatchDkDgpsImportProcessor extends AbstractDkAtonImportProcessor {
     @Override
     protected AtonNode parseAtonExcelRow() throws Exception {
 
-        String dgpsNr = String.valueOf(numericValue("NR_DK").intValue());
+        String dgpsNr = String.valueOf(numericValue(NR_DK).intValue());
 
         // Only process active AIS
-        if (!"DRIFT".equalsIgnoreCase(stringValue("STATUS"))) {
-            getLog().info("Skipping inactive DGPS " + dgpsNr);
+        if (!"DRIFT".equalsIgnoreCase(stringValue(STATUS))) {
+            skipRow("inactive", dgpsNr);
             return null;
         }
 
-        User user = job.getUser();
+        User user = getUser();
 
         AtonNode aton = new AtonNode();
 
         aton.setVisible(true);
-        aton.setLat(numericValue("LATITUDE"));
-        aton.setLon(numericValue("LONGITUDE"));
-        aton.setTimestamp(dateValue("Ajourfoert_dato"));
+        aton.setLat(numericValue(LATITUDE));
+        aton.setLon(numericValue(LONGITUDE));
+        aton.setTimestamp(dateValue(AJOURFOERT_DATO));
         aton.setUser(user != null ? user.getUsername() : "");
         aton.setUid(user != null ? user.getId() : -1);
         aton.setChangeset(getChangeSet());
         aton.setVersion(1);     // Unknown version
 
         // If no AtoN UID exists, construct it
-        String atonUid = "dgps-" + dgpsNr;
+        String atonUid = ATON_UID_PREFIX + dgpsNr;
         aton.updateTag(AtonTag.TAG_ATON_UID, atonUid);
-        aton.updateTag("seamark:name", stringValue("AFM_navn"));
+        aton.updateTag("seamark:name", stringValue(AFM_NAVN));
 
         aton.updateTag("seamark:type", "radio_station");
 
@@ -72,10 +87,10 @@ public class BatchDkDgpsImportProcessor extends AbstractDkAtonImportProcessor {
         aton.updateTag("seamark:radio_station:category", "dgps");
 
         // Frequency - in Hertz
-        aton.updateTag("seamark:radio_station:frequency", String.valueOf((int)(numericValue("Frekvens_kHz") * 1000)));
+        aton.updateTag("seamark:radio_station:frequency", String.valueOf((int)(numericValue(FREKVENS_KHZ) * 1000)));
 
         // Range
-        aton.updateTag("seamark:radio_station:range", String.valueOf(numericValue("Raekkevide_sm")));
+        aton.updateTag("seamark:radio_station:range", String.valueOf(numericValue(RAEKKEVIDE_SM)));
 
         // From http://wiki.openstreetmap.org/wiki/Key:radar_transponder
         aton.updateTag("man_made", "monitoring_station");
@@ -19,11 +19,14 @@ import org.apache.commons.lang.StringUtils;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonTag;
 import org.niord.core.user.User;
+import org.niord.importer.batch.BatchImportMetrics;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import static org.niord.importer.aton.batch.ExcelRowSchema.fieldHandle;
+
 /**
  * AtoN batch processor used for converting the legacy "AFM" Light Excel row into OSM seamark format.
  * Before running this batch job, run the dk-aton-import job.
@@ -35,74 +38,119 @@ import javax.inject.Named;
 @Named
 public class BatchDkLightImportProcessor extends AbstractDkAtonImportProcessor {
 
+    // Handles of the Excel columns defined by BatchDkLightImportReader.FIELDS
+    static final int NR_DK              = fieldHandle(BatchDkLightImportReader.FIELDS, "NR_DK");
+    static final int NR_INT             = fieldHandle(BatchDkLightImportReader.FIELDS, "NR_INT");
+    static final int AFM_NAVN           = fieldHandle(BatchDkLightImportReader.FIELDS, "AFM_navn");
+    static final int LOKALITET          = fieldHandle(BatchDkLightImportReader.FIELDS, "Lokalitet");
+    static final int FYRKARAKTER        = fieldHandle(BatchDkLightImportReader.FIELDS, "Fyrkarakter");
+    static final int TAAGESIGNAL        = fieldHandle(BatchDkLightImportReader.FIELDS, "Taagesignal");
+    static final int[] FLAMMEHOEJDE     = {
+            fieldHandle(BatchDkLightImportReader.FIELDS, "Flammehoejde_1"),
+            fieldHandle(BatchDkLightImportReader.FIELDS, "Flammehoejde_2"),
+            fieldHandle(BatchDkLightImportReader.FIELDS, "Flammehoejde_3"),
+            fieldHandle(BatchDkLightImportReader.FIELDS, "Flammehoejde_4") };
+    static final int LYSSTYRKE_1        = fieldHandle(BatchDkLightImportReader.FIELDS, "Lysstyrke_1");
+    static final int LYSSTYRKE_2        = fieldHandle(BatchDkLightImportReader.FIELDS, "Lysstyrke_2");
+    static final int LYSSTYRKE_3        = fieldHandle(BatchDkLightImportReader.FIELDS, "Lysstyrke_3");
+    static final int FYRUDSEENDE        = fieldHandle(BatchDkLightImportReader.FIELDS, "Fyrudseende");
+    static final int FYRBYGNINGS_HOEJDE = fieldHandle(BatchDkLightImportReader.FIELDS, "Fyrbygnings_hoejde");
+    static final int LYSVINKLER         = fieldHandle(BatchDkLightImportReader.FIELDS, "Lysvinkler");
+    static final int BRAENDETID         = fieldHandle(BatchDkLightImportReader.FIELDS, "Braendetid");
+    static final int AJOURFOERT_DATO    = fieldHandle(BatchDkLightImportReader.FIELDS, "Ajourfoert_dato");
+    static final int STATUS             = fieldHandle(BatchDkLightImportReader.FIELDS, "STATUS");
+    static final int AFM_NR             = fieldHandle(BatchDkLightImportReader.FIELDS, "AFM_NR");
+    static final int LATITUDE           = fieldHandle(BatchDkLightImportReader.FIELDS, "LATITUDE");
+    static final int LONGITUDE          = fieldHandle(BatchDkLightImportReader.FIELDS, "LONGITUDE");
+
+    /** Prefix of the AtoN UIDs of lights without an AFM_NR **/
+    public static final String ATON_UID_PREFIX = "light-";
+
+    // Tag families replaced as a whole when merging AtoNs
+    static final AtonTagFamilies TAG_FAMILIES = new AtonTagFamilies("seamark:light", "seamark:fog_signal");
+    static final int LIGHT_TAGS         = TAG_FAMILIES.mask("seamark:light");
+    static final int FOG_SIGNAL_TAGS    = TAG_FAMILIES.mask("seamark:fog_signal");
+
+    // Parsed light characteristics and sector angles, shared by all light imports
+    static final DkLightSpecCache SPEC_CACHE = new DkLightSpecCache(10000);
+
     @Inject
     Logger log;
 
+    /**
+     * Registers the statistics of the light spec cache. Since the cache is shared by all light imports,
+     * the statistics are global rather than specific to the job execution.
+     */
+    @Override
+    protected void registerGauges(BatchImportMetrics metrics) {
+        metrics.gauge("lightSpecCache.global", SPEC_CACHE::toString);
+    }
+
     /** {@inheritDoc} **/
     @Override
     protected AtonNode parseAtonExcelRow() throws Exception {
 
         // Only process active lights
-        if (!"DRIFT".equalsIgnoreCase(stringValue("STATUS"))) {
-            getLog().info("Skipping inactive light/fog-signal " + stringValue("NR_DK"));
+        if (!"DRIFT".equalsIgnoreCase(stringValue(STATUS))) {
+            skipRow("inactive", stringValue(NR_DK));
             return null;
         }
 
-        User user = job.getUser();
+        User user = getUser();
 
         AtonNode aton = new AtonNode();
 
         aton.setVisible(true);
-        aton.setLat(numericValue("LATITUDE"));
-        aton.setLon(numericValue("LONGITUDE"));
-        aton.setTimestamp(dateValue("Ajourfoert_dato"));
+        aton.setLat(numericValue(LATITUDE));
+        aton.setLon(numericValue(LONGITUDE));
+        aton.setTimestamp(dateValue(AJOURFOERT_DATO));
         aton.setUser(user != null ? user.getUsername() : "");
         aton.setUid(user != null ? user.getId() : -1);
         aton.setChangeset(getChangeSet());
         aton.setVersion(1);     // Unknown version
 
         // If no AtoN UID exists, construct it
-        String atonUid = stringValue("AFM_NR");
+        String atonUid = stringValue(AFM_NR);
         if (StringUtils.isBlank(atonUid)) {
-            atonUid = "light-" + stringValue("NR_DK");
+            atonUid = ATON_UID_PREFIX + stringValue(NR_DK);
         }
         aton.updateTag(AtonTag.TAG_ATON_UID, atonUid);
-        aton.updateTag(AtonTag.TAG_LIGHT_NUMBER, stringValue("NR_DK"));
-        aton.updateTag(AtonTag.TAG_INT_LIGHT_NUMBER, stringValue("NR_INT"));
-        aton.updateTag(AtonTag.TAG_LOCALITY, stringValue("Lokalitet"));
-        aton.updateTag("seamark:name", stringValue("AFM_navn"));
-        aton.updateTag("seamark:light:information", stringValue("Fyrudseende"));
+        aton.updateTag(AtonTag.TAG_LIGHT_NUMBER, stringValue(NR_DK));
+        aton.updateTag(AtonTag.TAG_INT_LIGHT_NUMBER, stringValue(NR_INT));
+        aton.updateTag(AtonTag.TAG_LOCALITY, stringValue(LOKALITET));
+        aton.updateTag("seamark:name", stringValue(AFM_NAVN));
+        aton.updateTag("seamark:light:information", stringValue(FYRUDSEENDE));
         aton.updateTag("seamark:light:elevation", parseElevation());
 
 
         /********* Light Character Parsing *******/
 
-        String lightChar = stringValue("Fyrkarakter");
+        String lightChar = stringValue(FYRKARAKTER);
 
         LightSeamark light = DkLightParser.newInstance();
 
         // Parse the light character, e.g. "Iso.WRG.2s"
-        DkLightParser.parseLightCharacteristics(light, lightChar);
+        SPEC_CACHE.parseLightCharacteristics(light, lightChar);
 
         // Parse the light elevations
-        DkLightParser.parseHeight(light, numericValueOrNull("Fyrbygnings_hoejde"));
+        DkLightParser.parseHeight(light, numericValueOrNull(FYRBYGNINGS_HOEJDE));
 
         // Parse the light sector angles, e.g. "G114,52°-116,52° W116,52°-117,52° R117,52°-119,52°."
-        DkLightParser.parseLightSectorAngles(light, stringValue("Lysvinkler"));
+        SPEC_CACHE.parseLightSectorAngles(light, stringValue(LYSVINKLER));
 
         // Parse the light ranges
         DkLightParser.parseRange(light,
-                stringValue("Lysstyrke_1"),
-                stringValue("Lysstyrke_2"),
-                stringValue("Lysstyrke_3"));
+                stringValue(LYSSTYRKE_1),
+                stringValue(LYSSTYRKE_2),
+                stringValue(LYSSTYRKE_3));
 
         // Parse the exhibition
-        DkLightParser.parseExhibition(light, stringValue("Braendetid"));
+        DkLightParser.parseExhibition(light, stringValue(BRAENDETID));
 
 
         /********* Fog Signal Parsing *******/
 
-        String fogSignalSpec = stringValue("Taagesignal");
+        String fogSignalSpec = stringValue(TAAGESIGNAL);
 
         FogSignalSeamark fogSignal = DkFogSignalParser.newInstance();
 
@@ -112,21 +160,19 @@ public class BatchDkLightImportProcessor extends AbstractDkAtonImportProcessor {
 
         // Either the light or the fog signal (or both) must be valid
         if (!light.isValid() && !fogSignal.isValid()) {
-            getLog().info("Skipping invalid light/fog-signal " + stringValue("NR_DK")
-                    + ": light=" + lightChar
-                    + ", fog-signal=" + fogSignalSpec);
+            parseFailure(stringValue(NR_DK), "light=" + lightChar + ", fog-signal=" + fogSignalSpec);
             return null;
         }
 
         // Copy the fog signal OSM tags to the AtoN.
         if (fogSignal.isValid()) {
-            fogSignal.toOsm().forEach(t -> aton.updateTag(t.getK(), t.getV()));
+            fogSignal.toOsm(aton);
         }
 
         // Copy the light OSM tags to the AtoN.
         // NB: Any "seamark:type" will override a fog-signal type. Lights should take precedence.
         if (light.isValid()) {
-            light.toOsm().forEach(t -> aton.updateTag(t.getK(), t.getV()));
+            light.toOsm(aton);
         }
 
         return aton;
@@ -140,18 +186,13 @@ public class BatchDkLightImportProcessor extends AbstractDkAtonImportProcessor {
         // Do not override the original AtoN type
         String origType = original.getTagValue("seamark:type");
         if (origType != null) {
-            aton.removeTags("seamark:type");
-        }
-
-        // If the new AtoN contains light information, remove any light information from the original
-        if (aton.matchingTags("seamark:\\w*light\\.*").size() > 0) {
-            original.removeTags("seamark:\\w*light\\.*");
+            AtonTagFamilies.removeTag(aton, "seamark:type");
         }
 
-        // If the new AtoN contains fog signal information, remove any fog signal information from the original
-        if (aton.matchingTags("seamark:fog_signal\\.*").size() > 0) {
-            original.removeTags("seamark:fog_signal\\.*");
-        }
+        // If the new AtoN contains light or fog signal information,
+        // remove any light or fog signal information from the original
+        int families = TAG_FAMILIES.familiesOf(aton) & (LIGHT_TAGS | FOG_SIGNAL_TAGS);
+        TAG_FAMILIES.removeFamilies(original, families);
 
         // Override any remaining tags in the original
         original.updateNode(aton);
@@ -161,8 +202,8 @@ public class BatchDkLightImportProcessor extends AbstractDkAtonImportProcessor {
     /** Parses the elevation fields */
     private String parseElevation() {
         String elevation = null;
-        for (int x = 1; x <= 4; x++) {
-            elevation = appendValue(elevation, numericValueOrNull("Flammehoejde_" + x));
+        for (int field : FLAMMEHOEJDE) {
+            elevation = appendValue(elevation, numericValueOrNull(field));
         }
         return elevation;
     }
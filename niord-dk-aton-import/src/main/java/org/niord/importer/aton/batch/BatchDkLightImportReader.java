@@ -34,4 +34,10 @@ public class BatchDkLightImportReader extends AbstractDkAtonImportReader {
     public String[] getFields() {
         return FIELDS;
     }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String getParentKeyField() {
+        return AFM_NR_FIELD;
+    }
 }
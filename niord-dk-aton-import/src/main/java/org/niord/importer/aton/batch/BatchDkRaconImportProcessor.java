@@ -26,6 +26,8 @@ import javax.inject.Named;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static org.niord.importer.aton.batch.ExcelRowSchema.fieldHandle;
+
 /**
  * AtoN batch processor used for converting the legacy "AFM" RACON Excel row into OSM seamark format.
  * Before running this batch job, run the dk-aton-import job.
@@ -40,6 +42,24 @@ import java.util.regex.Pattern;
 @Named
 public class BatchDkRaconImportProcessor extends AbstractDkAtonImportProcessor {
 
+    // Handles of the Excel columns defined by BatchDkRaconImportReader.FIELDS
+    static final int NR_DK             = fieldHandle(BatchDkRaconImportReader.FIELDS, "NR_DK");
+    static final int NR_INT            = fieldHandle(BatchDkRaconImportReader.FIELDS, "NR_INT");
+    static final int AFM_NR            = fieldHandle(BatchDkRaconImportReader.FIELDS, "AFM_NR");
+    static final int AFM_NAVN          = fieldHandle(BatchDkRaconImportReader.FIELDS, "AFM_navn");
+    static final int RADARBAAND        = fieldHandle(BatchDkRaconImportReader.FIELDS, "Radarbaand");
+    static final int IDENTIFIKATION    = fieldHandle(BatchDkRaconImportReader.FIELDS, "Identifikation");
+    static final int TIDSINTERVAL      = fieldHandle(BatchDkRaconImportReader.FIELDS, "Tidsinterval");
+    static final int STATUS            = fieldHandle(BatchDkRaconImportReader.FIELDS, "STATUS");
+    static final int LATITUDE          = fieldHandle(BatchDkRaconImportReader.FIELDS, "LATITUDE");
+    static final int LONGITUDE         = fieldHandle(BatchDkRaconImportReader.FIELDS, "LONGITUDE");
+    static final int AJOURFOERT_DATO   = fieldHandle(BatchDkRaconImportReader.FIELDS, "Ajourfoert_dato");
+    static final int RETNING_MOD_FYRET = fieldHandle(BatchDkRaconImportReader.FIELDS, "Retning_mod_fyret");
+
+    // Tag families replaced as a whole when merging AtoNs
+    static final AtonTagFamilies TAG_FAMILIES = new AtonTagFamilies("seamark:radar_transponder");
+    static final int RACON_TAGS = TAG_FAMILIES.mask("seamark:radar_transponder");
+
     public static final Pattern PERIOD_FORMAT = Pattern.compile("^(\\d+)[ ]*s?");
 
     public static final Pattern SECTOR_FORMAT = Pattern.compile("^(?<start>\\d+)°[-]?(?<end>\\d+)?°?");
@@ -51,29 +71,29 @@ public class BatchDkRaconImportProcessor extends AbstractDkAtonImportProcessor {
     @Override
     protected AtonNode parseAtonExcelRow() throws Exception {
 
-        String raconNr = String.valueOf(numericValue("NR_DK").intValue());
+        String raconNr = String.valueOf(numericValue(NR_DK).intValue());
 
         // Only process active RACONS
-        if (!"DRIFT".equalsIgnoreCase(stringValue("STATUS"))) {
-            getLog().info("Skipping inactive RACON " + raconNr);
+        if (!"DRIFT".equalsIgnoreCase(stringValue(STATUS))) {
+            skipRow("inactive", raconNr);
             return null;
         }
 
         // Only process RACON with known AFM-NR
-        String atonUid = stringValue("AFM_NR");
+        String atonUid = stringValue(AFM_NR);
         if (StringUtils.isBlank(atonUid)) {
-            getLog().info("Skipping RACON without AFM-NR " + raconNr);
+            skipRow("noAfmNr", raconNr);
             return null;
         }
 
-        User user = job.getUser();
+        User user = getUser();
 
         AtonNode aton = new AtonNode();
 
         aton.setVisible(true);
-        aton.setLat(numericValue("LATITUDE"));
-        aton.setLon(numericValue("LONGITUDE"));
-        aton.setTimestamp(dateValueOrNull("Ajourfoert_dato"));
+        aton.setLat(numericValue(LATITUDE));
+        aton.setLon(numericValue(LONGITUDE));
+        aton.setTimestamp(dateValueOrNull(AJOURFOERT_DATO));
         aton.setUser(user != null ? user.getUsername() : "");
         aton.setUid(user != null ? user.getId() : -1);
         aton.setChangeset(getChangeSet());
@@ -82,8 +102,8 @@ public class BatchDkRaconImportProcessor extends AbstractDkAtonImportProcessor {
         // If no AtoN UID exists, construct it
         aton.updateTag(AtonTag.TAG_ATON_UID, atonUid);
         aton.updateTag(AtonTag.TAG_RACON_NUMBER, raconNr);
-        aton.updateTag(AtonTag.TAG_INT_RACON_NUMBER, String.valueOf(numericValue("NR_INT").intValue()));
-        aton.updateTag("seamark:name", stringValue("AFM_navn"));
+        aton.updateTag(AtonTag.TAG_INT_RACON_NUMBER, String.valueOf(numericValue(NR_INT).intValue()));
+        aton.updateTag("seamark:name", stringValue(AFM_NAVN));
 
         aton.updateTag("seamark:type", "radar_transponder");
 
@@ -91,16 +111,16 @@ public class BatchDkRaconImportProcessor extends AbstractDkAtonImportProcessor {
         aton.updateTag("seamark:radar_transponder:category", "racon");
 
         // Wave length
-        aton.updateTag("seamark:radar_transponder:wavelength", stringValue("Radarbaand"));
+        aton.updateTag("seamark:radar_transponder:wavelength", stringValue(RADARBAAND));
 
         // Group
-        aton.updateTag("seamark:radar_transponder:group", stringValue("Identifikation"));
+        aton.updateTag("seamark:radar_transponder:group", stringValue(IDENTIFIKATION));
 
         // Period
-        aton.updateTag("seamark:radar_transponder:period", parsePeriod(stringValue("Tidsinterval")));
+        aton.updateTag("seamark:radar_transponder:period", parsePeriod(stringValue(TIDSINTERVAL)));
 
         // Sectors
-        String[] sectors = parseSectors(stringValue("Retning_mod_fyret"));
+        String[] sectors = parseSectors(stringValue(RETNING_MOD_FYRET));
         if (sectors.length == 2) {
             aton.updateTag("seamark:radar_transponder:sector_start", sectors[0]);
             aton.updateTag("seamark:radar_transponder:sector_end", sectors[1]);
@@ -113,7 +133,7 @@ public class BatchDkRaconImportProcessor extends AbstractDkAtonImportProcessor {
 
 
     /** Parses the period format, e.g. "60 s" */
-    private String parsePeriod(String period) {
+    String parsePeriod(String period) {
         if (StringUtils.isNotBlank(period)) {
             Matcher m = PERIOD_FORMAT.matcher(period);
             if (m.matches()) {
@@ -149,11 +169,11 @@ public class BatchDkRaconImportProcessor extends AbstractDkAtonImportProcessor {
         // Do not override the original AtoN type
         String origType = original.getTagValue("seamark:type");
         if (origType != null) {
-            aton.removeTags("seamark:type");
+            AtonTagFamilies.removeTag(aton, "seamark:type");
         }
 
         // Remove any RACON information from the original
-        original.removeTags("seamark:radar_transponder\\.*");
+        TAG_FAMILIES.removeFamilies(original, RACON_TAGS);
 
         // Override any remaining tags in the original
         original.updateNode(aton);
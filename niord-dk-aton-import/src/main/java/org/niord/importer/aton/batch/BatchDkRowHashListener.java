@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.slf4j.Logger;
+
+import javax.batch.api.chunk.listener.ChunkListener;
+import javax.batch.api.chunk.listener.ItemProcessListener;
+import javax.batch.api.listener.AbstractStepListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records and saves the {@linkplain ExcelRowHashes} of a DK AtoN import step, to be compared with by the next
+ * import, and logs the number of added, changed, unchanged and removed rows.
+ * <p>
+ * The hashes of the processed rows of a chunk are only recorded once the chunk transaction has been committed.
+ * Rows that were discarded by the processor, or belong to a chunk that was rolled back, are not recorded,
+ * and will be imported again by the next import.
+ * <p>
+ * The row hashes are only saved if the step completed without errors.
+ */
+@Named
+public class BatchDkRowHashListener extends AbstractStepListener implements ItemProcessListener, ChunkListener {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    StepContext stepContext;
+
+    /** The processed items of the current chunk **/
+    final List<BatchDkAtonItem> chunkItems = new ArrayList<>();
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void beforeProcess(Object item) throws Exception {
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterProcess(Object item, Object result) throws Exception {
+        BatchDkAtonItem atonItem = (BatchDkAtonItem) item;
+        if (atonItem.getRowKey() != null) {
+            chunkItems.add(atonItem);
+        }
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void onProcessError(Object item, Exception ex) throws Exception {
+        ExcelRowHashes hashes = ExcelRowHashes.get(jobContext);
+        if (hashes != null && ((BatchDkAtonItem) item).getRowKey() != null) {
+            hashes.discard();
+        }
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void beforeChunk() throws Exception {
+        chunkItems.clear();
+    }
+
+
+    /** The items of a rolled back chunk are either processed again, or the step fails **/
+    @Override
+    public void onError(Exception ex) throws Exception {
+        chunkItems.clear();
+    }
+
+
+    /** Records the hashes of the rows of the committed chunk **/
+    @Override
+    public void afterChunk() throws Exception {
+        ExcelRowHashes hashes = ExcelRowHashes.get(jobContext);
+        if (hashes != null) {
+            for (BatchDkAtonItem item : chunkItems) {
+                if (item.isDiscarded()) {
+                    hashes.discard();
+                } else {
+                    hashes.record(item.getRowKey(), item.getRowHash());
+                }
+            }
+        }
+        chunkItems.clear();
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterStep() throws Exception {
+        ExcelRowHashes hashes = ExcelRowHashes.release(jobContext);
+        if (hashes != null && stepContext.getException() == null) {
+            hashes.save();
+            log.info("Row changes of batch job " + jobContext.getJobName() + ": " + hashes
+                    + ", removed " + hashes.getRemovedKeys().size());
+        }
+    }
+}
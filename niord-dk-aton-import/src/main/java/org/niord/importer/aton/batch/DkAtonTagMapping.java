@@ -0,0 +1,370 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.aton.AtonTag;
+import org.niord.importer.aton.batch.BatchDkAtonImportProcessor.AtonType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the BESKRIVELSE (description) field of the legacy "AFM" Excel sheet to the OSM seamark tags of an AtoN.
+ * <p>
+ * The mapping is loaded from a JSON resource file, which maps each description to either a list of rules or,
+ * for aliases, the name of another description. Each rule has the fields:
+ * <ul>
+ *     <li>tags: The tags to set, in order. Any occurrence of "${type}" in a key is substituted with the
+ *         "seamark:type" value. A value may be an object mapping master type selectors to values,
+ *         with "default" as the fallback. Tags with blank values are ignored.</li>
+ *     <li>master: Optional list of master type selectors that the rule applies to.</li>
+ *     <li>exclude: Optional list of master type selectors that the rule does not apply to.</li>
+ *     <li>shortDesc: Optional AFUFORKORTELSE (short description) value that the rule applies to.</li>
+ *     <li>stop: Whether to skip the remaining rules when the rule applies.</li>
+ *     <li>comment: Ignored.</li>
+ * </ul>
+ * A master type selector is either the name of an {@linkplain AtonType} or one of the groups "light",
+ * "beacon" and "buoy".
+ * <p>
+ * Upon loading, the rules are validated and expanded into an immutable tag list for every combination of
+ * description, master type and short description, so that looking up the tags of an AtoN is a single lookup.
+ */
+public class DkAtonTagMapping {
+
+    public static final String MAPPING_RESOURCE = "/dk-aton-tag-mapping.json";
+
+    static final String TYPE_KEY = "seamark:type";
+    static final String TYPE_PLACEHOLDER = "${type}";
+    static final String DEFAULT_SELECTOR = "default";
+    static final int ALL_TYPES = (1 << AtonType.values().length) - 1;
+    static final Set<String> RULE_FIELDS = new LinkedHashSet<>(
+            Arrays.asList("comment", "master", "exclude", "shortDesc", "stop", "tags"));
+
+    private final Map<String, CompiledDescription> descriptions;
+
+
+    /** Constructor **/
+    private DkAtonTagMapping(Map<String, CompiledDescription> descriptions) {
+        this.descriptions = descriptions;
+    }
+
+
+    /**
+     * Loads and validates the AtoN tag mapping from the default class path resource
+     * @return the AtoN tag mapping
+     */
+    public static DkAtonTagMapping load() throws IOException {
+        try (InputStream in = DkAtonTagMapping.class.getResourceAsStream(MAPPING_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("AtoN tag mapping resource not found: " + MAPPING_RESOURCE);
+            }
+            return load(in);
+        }
+    }
+
+
+    /**
+     * Loads and validates the AtoN tag mapping from the given JSON input stream
+     * @param in the JSON input stream
+     * @return the AtoN tag mapping
+     */
+    public static DkAtonTagMapping load(InputStream in) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(in);
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("The AtoN tag mapping must be a JSON object");
+        }
+
+        Map<String, CompiledDescription> descriptions = new HashMap<>();
+
+        // Compile the rule lists
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            if (entry.getValue().isArray()) {
+                descriptions.put(entry.getKey(), compile(entry.getKey(), entry.getValue()));
+            } else if (!entry.getValue().isTextual()) {
+                throw new IllegalArgumentException("Invalid mapping for description " + entry.getKey());
+            }
+        }
+
+        // Resolve the aliases
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            if (entry.getValue().isTextual()) {
+                CompiledDescription target = descriptions.get(entry.getValue().asText());
+                if (target == null) {
+                    throw new IllegalArgumentException("Description " + entry.getKey()
+                            + " is an alias of undefined description " + entry.getValue().asText());
+                }
+                descriptions.put(entry.getKey(), target);
+            }
+        }
+
+        return new DkAtonTagMapping(descriptions);
+    }
+
+
+    /**
+     * Returns the tags to set for an AtoN with the given description, short description and master type
+     * @param description the BESKRIVELSE field
+     * @param shortDesc the AFUFORKORTELSE field
+     * @param masterType the master type of the AtoN
+     * @return the tags to set, or an empty list if the description is not mapped
+     */
+    public List<AtonTag> getTags(String description, String shortDesc, AtonType masterType) {
+        CompiledDescription compiled = description != null ? descriptions.get(description) : null;
+        if (compiled == null || masterType == null) {
+            return Collections.emptyList();
+        }
+        return compiled.tags[compiled.variant(shortDesc)][masterType.ordinal()];
+    }
+
+
+    /**
+     * Returns the mapped descriptions, including aliases
+     * @return the mapped descriptions
+     */
+    public Set<String> getDescriptions() {
+        return Collections.unmodifiableSet(descriptions.keySet());
+    }
+
+
+    /*************************/
+    /** Compilation         **/
+    /*************************/
+
+    /** Validates the rules of a description and expands them into tag lists **/
+    private static CompiledDescription compile(String description, JsonNode rulesNode) {
+        try {
+            List<Rule> rules = new ArrayList<>();
+            Set<String> shortDescs = new LinkedHashSet<>();
+            for (JsonNode ruleNode : rulesNode) {
+                Rule rule = new Rule(ruleNode);
+                rules.add(rule);
+                if (rule.shortDesc != null) {
+                    shortDescs.add(rule.shortDesc);
+                }
+            }
+
+            CompiledDescription compiled = new CompiledDescription(shortDescs.toArray(new String[shortDescs.size()]));
+            for (int variant = 0; variant <= compiled.shortDescs.length; variant++) {
+                String shortDesc = variant == 0 ? null : compiled.shortDescs[variant - 1];
+                for (AtonType masterType : AtonType.values()) {
+                    compiled.tags[variant][masterType.ordinal()] = expand(rules, masterType, shortDesc);
+                }
+            }
+            return compiled;
+
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid mapping for description " + description + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+
+    /** Expands the rules into an immutable tag list for the given master type and short description **/
+    private static List<AtonTag> expand(List<Rule> rules, AtonType masterType, String shortDesc) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (Rule rule : rules) {
+            if (!rule.appliesTo(masterType, shortDesc)) {
+                continue;
+            }
+
+            Map<String, String> ruleTags = new LinkedHashMap<>();
+            rule.tags.forEach((key, values) -> {
+                String value = values[masterType.ordinal()];
+                if (StringUtils.isNotBlank(value)) {
+                    ruleTags.put(key, value);
+                }
+            });
+
+            // The seamark:type must be defined either by the rule itself or by a previous rule
+            String type = StringUtils.isNotBlank(ruleTags.get(TYPE_KEY)) ? ruleTags.get(TYPE_KEY) : tags.get(TYPE_KEY);
+            if (StringUtils.isBlank(type)) {
+                throw new IllegalArgumentException("No " + TYPE_KEY + " defined for master type " + masterType);
+            }
+            ruleTags.forEach((key, value) -> tags.put(key.replace(TYPE_PLACEHOLDER, type), value));
+
+            if (rule.stop) {
+                break;
+            }
+        }
+
+        List<AtonTag> result = new ArrayList<>(tags.size());
+        tags.forEach((key, value) -> result.add(new AtonTag(key, value)));
+        return Collections.unmodifiableList(result);
+    }
+
+
+    /**
+     * Returns the bit mask of the master types matching the given selector
+     * @param selector the selector, i.e. an AtoN type name or a group name
+     * @return the bit mask of the matching master types
+     */
+    static int selectTypes(String selector) {
+        switch (selector) {
+            case "light":
+                return AtonType.LIGHT.mask | AtonType.LIGHT_MINOR.mask;
+            case "beacon":
+                return AtonType.BEACON.mask | AtonType.STAKE.mask;
+            case "buoy":
+                return AtonType.LIGHT_BUOY.mask | AtonType.BUOY.mask;
+        }
+        try {
+            return AtonType.valueOf(selector).mask;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown master type selector " + selector);
+        }
+    }
+
+
+    /*************************/
+    /** Helper classes      **/
+    /*************************/
+
+    /**
+     * A validated mapping rule
+     */
+    private static class Rule {
+
+        final int master;
+        final int exclude;
+        final String shortDesc;
+        final boolean stop;
+        // Tag values resolved for each master type, indexed by ordinal
+        final Map<String, String[]> tags = new LinkedHashMap<>();
+
+        Rule(JsonNode node) {
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("Rules must be JSON objects");
+            }
+            node.fieldNames().forEachRemaining(field -> {
+                if (!RULE_FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("Unknown rule field " + field);
+                }
+            });
+
+            master = node.has("master") ? parseSelectors(node.get("master")) : ALL_TYPES;
+            exclude = node.has("exclude") ? parseSelectors(node.get("exclude")) : 0;
+            shortDesc = node.has("shortDesc") ? node.get("shortDesc").asText() : null;
+            stop = node.path("stop").asBoolean(false);
+
+            JsonNode tagsNode = node.get("tags");
+            if (tagsNode == null || !tagsNode.isObject() || tagsNode.size() == 0) {
+                throw new IllegalArgumentException("Rules must define a non-empty tags object");
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> it = tagsNode.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> tag = it.next();
+                String key = tag.getKey();
+                if (StringUtils.isBlank(key) || key.replace(TYPE_PLACEHOLDER, "").contains("${")) {
+                    throw new IllegalArgumentException("Invalid tag key '" + key + "'");
+                }
+                tags.put(key, parseValue(key, tag.getValue()));
+            }
+        }
+
+        /** Parses a list of master type selectors **/
+        private static int parseSelectors(JsonNode node) {
+            if (!node.isArray()) {
+                throw new IllegalArgumentException("Master type selectors must be a JSON array");
+            }
+            int types = 0;
+            for (JsonNode selector : node) {
+                types |= selectTypes(selector.asText());
+            }
+            return types;
+        }
+
+        /** Resolves the tag value for each master type. Type names take precedence over groups **/
+        private static String[] parseValue(String key, JsonNode node) {
+            String[] values = new String[AtonType.values().length];
+            if (node.isTextual()) {
+                Arrays.fill(values, node.asText());
+            } else if (node.isObject()) {
+                if (node.has(DEFAULT_SELECTOR)) {
+                    Arrays.fill(values, node.get(DEFAULT_SELECTOR).asText());
+                }
+                List<Map.Entry<String, JsonNode>> typeValues = new ArrayList<>();
+                for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> value = it.next();
+                    if (!value.getValue().isTextual()) {
+                        throw new IllegalArgumentException("Invalid value of tag " + key);
+                    }
+                    int types = value.getKey().equals(DEFAULT_SELECTOR) ? 0 : selectTypes(value.getKey());
+                    if (Integer.bitCount(types) == 1) {
+                        typeValues.add(value);
+                    } else {
+                        for (AtonType type : AtonType.values()) {
+                            if (type.isIn(types)) {
+                                values[type.ordinal()] = value.getValue().asText();
+                            }
+                        }
+                    }
+                }
+                typeValues.forEach(value -> values[AtonType.valueOf(value.getKey()).ordinal()] = value.getValue().asText());
+            } else {
+                throw new IllegalArgumentException("Invalid value of tag " + key);
+            }
+            return values;
+        }
+
+        /** Returns if the rule applies to the given master type and short description **/
+        boolean appliesTo(AtonType masterType, String shortDesc) {
+            return masterType.isIn(master)
+                    && !masterType.isIn(exclude)
+                    && (this.shortDesc == null || this.shortDesc.equals(shortDesc));
+        }
+    }
+
+
+    /**
+     * The expanded tag lists of a description
+     */
+    private static class CompiledDescription {
+
+        final String[] shortDescs;
+        // Indexed by short description variant (0 for none) and master type ordinal
+        final List<AtonTag>[][] tags;
+
+        @SuppressWarnings("unchecked")
+        CompiledDescription(String[] shortDescs) {
+            this.shortDescs = shortDescs;
+            this.tags = new List[shortDescs.length + 1][AtonType.values().length];
+        }
+
+        /** Returns the variant index of the given short description **/
+        int variant(String shortDesc) {
+            for (int x = 0; x < shortDescs.length; x++) {
+                if (shortDescs[x].equals(shortDesc)) {
+                    return x + 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
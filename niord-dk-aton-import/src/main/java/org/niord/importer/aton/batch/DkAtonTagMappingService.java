@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+/**
+ * Loads and validates the {@linkplain DkAtonTagMapping} upon start-up,
+ * so that an invalid mapping file is detected upon deployment rather than by the first AtoN import.
+ */
+@Singleton
+@Startup
+@Lock(LockType.READ)
+public class DkAtonTagMappingService {
+
+    @Inject
+    Logger log;
+
+    DkAtonTagMapping mapping;
+
+
+    /** Loads and validates the AtoN tag mapping **/
+    @PostConstruct
+    void init() {
+        try {
+            mapping = DkAtonTagMapping.load();
+            log.info("Loaded AtoN tag mapping for " + mapping.getDescriptions().size() + " descriptions");
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid AtoN tag mapping " + DkAtonTagMapping.MAPPING_RESOURCE, e);
+        }
+    }
+
+
+    /**
+     * Returns the AtoN tag mapping
+     * @return the AtoN tag mapping
+     */
+    public DkAtonTagMapping getMapping() {
+        return mapping;
+    }
+}
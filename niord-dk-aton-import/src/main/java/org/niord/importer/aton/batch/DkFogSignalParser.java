@@ -15,11 +15,9 @@
  */
 package org.niord.importer.aton.batch;
 
-import org.apache.commons.lang.StringUtils;
 import org.niord.importer.aton.batch.FogSignalSeamark.Category;
 
 import java.util.Arrays;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -48,10 +46,12 @@ public class DkFogSignalParser {
     );
 
     public static Pattern GROUP_FORMAT = Pattern.compile(
-            "\\((?<group>\\d+)\\)" +
+            "\\((?<group>\\d+)\\)",
             Pattern.CASE_INSENSITIVE
     );
 
+    private static final Category[] CATEGORIES = Category.values();
+
     /**
      * No public initialization
      */
@@ -68,7 +68,11 @@ public class DkFogSignalParser {
     }
 
     /**
-     * Parses the fog signal fog signal
+     * Parses the fog signal fog signal.
+     * <p>
+     * The fog signal is parsed in a single pass by a hand-written tokenizer, which accepts the same input
+     * and produces the same result as matching the {@linkplain #FOG_SIGNAL_FORMAT} pattern,
+     * i.e. "category[. ][Mo(letters)][. ][(digits)][. ][period]...", ignoring the case of ASCII letters.
      *
      * @param fogSignal     the fogSignal to update
      * @param fogSignalSpec the fogSignal characteristics
@@ -76,39 +80,132 @@ public class DkFogSignalParser {
      */
     public static FogSignalSeamark parseFogSignal(FogSignalSeamark fogSignal, String fogSignalSpec) {
 
-        Matcher m = FOG_SIGNAL_FORMAT.matcher(fogSignalSpec);
-
-        if (m.find()) {
-            String categorySpec = m.group("category");
-            String morseSpec = m.group("morse");
-            String groupSpec = m.group("group");
-            String periodSpec = m.group("period");
+        int len = fogSignalSpec.length();
+        if (!DkLightParser.isSingleLine(fogSignalSpec)) {
+            return fogSignal;
+        }
 
-            // Category
-            if (StringUtils.isBlank(categorySpec)) {
-                return fogSignal;
+        // Category, e.g. "HORN"
+        Category category = null;
+        for (Category c : CATEGORIES) {
+            if (startsWithIgnoreCase(fogSignalSpec, 0, c.name())) {
+                category = c;
+                break;
             }
-            fogSignal.setCategory(Category.valueOf(categorySpec.toLowerCase()));
-
-            // Morse group
-            if (StringUtils.isNotBlank(morseSpec)) {
-                Matcher mm = MORSE_FORMAT.matcher(morseSpec);
-                if (mm.find()) {
-                    fogSignal.setGroup(mm.group("morse"));
-                }
+        }
+        if (category == null) {
+            return fogSignal;
+        }
+        int pos = skipSeparators(fogSignalSpec, category.name().length());
+
+        // Morse code, e.g. "Mo(U)"
+        int morseStart = -1, morseEnd = -1;
+        if (startsWithIgnoreCase(fogSignalSpec, pos, "mo(")) {
+            int end = pos + 3;
+            while (end < len && isAsciiLetter(fogSignalSpec.charAt(end))) {
+                end++;
             }
-
-            // Group
-            if (StringUtils.isNotBlank(groupSpec)) {
-                fogSignal.setGroup(groupSpec.substring(1, groupSpec.length() - 1).trim());
+            if (end > pos + 3 && end < len && fogSignalSpec.charAt(end) == ')') {
+                morseStart = pos + 3;
+                morseEnd = end;
+                pos = end + 1;
             }
-
-            // Period
-            if (StringUtils.isNotBlank(periodSpec)) {
-                fogSignal.setPeriod(Double.valueOf(periodSpec.substring(0, periodSpec.length() - 1).replace(',', '.')));
+        }
+        pos = skipSeparators(fogSignalSpec, pos);
+
+        // Group, e.g. "(3)"
+        int groupStart = -1, groupEnd = -1;
+        if (pos < len && fogSignalSpec.charAt(pos) == '(') {
+            int end = skipDigits(fogSignalSpec, pos + 1);
+            if (end > pos + 1 && end < len && fogSignalSpec.charAt(end) == ')') {
+                groupStart = pos + 1;
+                groupEnd = end;
+                pos = end + 1;
             }
         }
+        pos = skipSeparators(fogSignalSpec, pos);
+
+        // Period, e.g. "30s" or "2,5s"
+        int periodEnd = -1;
+        int digitsEnd = skipDigits(fogSignalSpec, pos);
+        if (digitsEnd > pos) {
+            if (digitsEnd + 2 < len && fogSignalSpec.charAt(digitsEnd) == ','
+                    && isDigit(fogSignalSpec.charAt(digitsEnd + 1)) && isPeriodUnit(fogSignalSpec.charAt(digitsEnd + 2))) {
+                periodEnd = digitsEnd + 2;
+            } else if (digitsEnd < len && isPeriodUnit(fogSignalSpec.charAt(digitsEnd))) {
+                periodEnd = digitsEnd;
+            }
+        }
+
+        fogSignal.setCategory(category);
+
+        // Morse group
+        if (morseStart >= 0) {
+            fogSignal.setGroup(fogSignalSpec.substring(morseStart, morseEnd));
+        }
+
+        // Group
+        if (groupStart >= 0) {
+            fogSignal.setGroup(fogSignalSpec.substring(groupStart, groupEnd));
+        }
+
+        // Period
+        if (periodEnd >= 0) {
+            fogSignal.setPeriod(Double.valueOf(fogSignalSpec.substring(pos, periodEnd).replace(',', '.')));
+        }
+
         return fogSignal;
     }
 
+
+    /** Checks if the string contains the given lower-case ASCII token at the given position, ignoring case **/
+    private static boolean startsWithIgnoreCase(String str, int pos, String token) {
+        if (pos + token.length() > str.length()) {
+            return false;
+        }
+        for (int x = 0; x < token.length(); x++) {
+            char c = str.charAt(pos + x);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != token.charAt(x)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /** Skips any "." or " " separators at the given position **/
+    private static int skipSeparators(String str, int pos) {
+        while (pos < str.length() && (str.charAt(pos) == '.' || str.charAt(pos) == ' ')) {
+            pos++;
+        }
+        return pos;
+    }
+
+
+    /** Skips ASCII digits, i.e. "\d*" **/
+    private static int skipDigits(String str, int pos) {
+        while (pos < str.length() && isDigit(str.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+
+    private static boolean isPeriodUnit(char c) {
+        return c == 's' || c == 'm' || c == 'S' || c == 'M';
+    }
+
 }
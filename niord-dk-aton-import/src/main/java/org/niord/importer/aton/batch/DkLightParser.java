@@ -20,13 +20,14 @@ import org.niord.importer.aton.batch.LightSeamark.Colour;
 import org.niord.importer.aton.batch.LightSeamark.LightSector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static org.niord.importer.aton.batch.LightSeamark.Character.*;
+import static org.niord.importer.aton.batch.LightSeamark.Character.Mo;
 
 /**
  * Parses the light specs of the DK AtoN light list
@@ -65,6 +66,18 @@ public class DkLightParser {
                     "(?<end>\\d+(,\\d+)?)°"
     );
 
+    /** The light phase tokens and characters, in the order of the {@linkplain #LIGHT_PHASES} alternation **/
+    private static final String[] PHASE_TOKENS = LIGHT_PHASES.split("\\|");
+    private static final LightSeamark.Character[] PHASE_CHARACTERS = Arrays.stream(PHASE_TOKENS)
+            .map(LightSeamark.Character::valueOfLc)
+            .toArray(LightSeamark.Character[]::new);
+
+    /** The light colour tokens and colours, in the order of the {@linkplain #LIGHT_COLORS} alternation **/
+    private static final String[] COLOUR_TOKENS = LIGHT_COLORS.split("\\|");
+    private static final Colour[] COLOURS = Arrays.stream(COLOUR_TOKENS)
+            .map(Colour::valueOfLc)
+            .toArray(Colour[]::new);
+
     /**
      * No public initialization
      */
@@ -84,7 +97,11 @@ public class DkLightParser {
     }
 
     /**
-     * Parses the light characteristics and updates the first sector of the LightSeamark
+     * Parses the light characteristics and updates the first sector of the LightSeamark.
+     * <p>
+     * The light characteristics are parsed in a single pass by a hand-written tokenizer, which accepts
+     * the same input and produces the same result as matching the {@linkplain #LIGHT_CHARACTER_FORMAT}
+     * pattern, i.e. "[multiple ]phases[.][(group)][.][colours][.][period]...".
      *
      * @param light     the light to update
      * @param lightChar the light characteristics
@@ -92,88 +109,231 @@ public class DkLightParser {
      */
     public static LightSeamark parseLightCharacteristics(LightSeamark light, String lightChar) {
 
-        Matcher m = LIGHT_CHARACTER_FORMAT.matcher(lightChar);
-
-        if (m.find()) {
-            String multipleSpec = m.group("multiple");
-            String phaseSpec = m.group("phase");
-            String groupSpec = m.group("group");
-            String colorsSpec = m.group("colors");
-            String periodSpec = m.group("period");
+        int len = lightChar.length();
+        if (!isSingleLine(lightChar)) {
+            return light;
+        }
 
-            if (StringUtils.isBlank(phaseSpec) || (!"Mo".equals(phaseSpec) && StringUtils.isBlank(colorsSpec))) {
+        // Multiple, i.e. digits followed by spaces
+        int pos = skipDigits(lightChar, 0);
+        int multipleEnd = pos;
+        if (multipleEnd > 0) {
+            while (pos < len && lightChar.charAt(pos) == ' ') {
+                pos++;
+            }
+            if (pos == multipleEnd) {
                 return light;
             }
+        }
 
-            LightSector sector = light.getSectors().get(0);
-
-            // Phases
-            Matcher pm = PHASE_FORMAT.matcher(phaseSpec);
-            List<LightSeamark.Character> phases = new ArrayList<>();
-            while (pm.find()) {
-                phases.add(valueOfLc(pm.group("phase")));
+        // Phases, e.g. "Al Fl" or "VQ+LFl"
+        int phase = tokenAt(lightChar, pos, PHASE_TOKENS);
+        if (phase < 0) {
+            return light;
+        }
+        pos += PHASE_TOKENS[phase].length();
+        LightSeamark.Character p1 = PHASE_CHARACTERS[phase];
+        LightSeamark.Character p2 = null;
+        int phaseNo = 1;
+        while (true) {
+            int next = (pos < len && isPhaseSeparator(lightChar.charAt(pos))) ? pos + 1 : pos;
+            phase = tokenAt(lightChar, next, PHASE_TOKENS);
+            if (phase < 0) {
+                break;
             }
-            if (phases.isEmpty() || phases.size() > 2) {
-                return light;
-            } else if (phases.size() == 1) {
-                sector.setCharacter(phases.get(0));
-            } else {
-                LightSeamark.Character p1 = phases.get(0);
-                LightSeamark.Character p2 = phases.get(1);
-
-                // Known OSM composite cases
-                if (p1 == Fl && p2 == LFl) {
-                    sector.setCharacter(FlLFl);
-                } else if (p1 == Oc && p2 == Fl) {
-                    sector.setCharacter(OcFl);
-                } else if (p1 == F && p2 == LFl) {
-                    sector.setCharacter(FLFl);
-                } else if (p1 == Al && p2 == Oc) {
-                    sector.setCharacter(Al_Oc);
-                } else if (p1 == Al && p2 == LFl) {
-                    sector.setCharacter(Al_LFl);
-                } else if (p1 == Al && p2 == Fl) {
-                    sector.setCharacter(Al_Fl);
-                } else if (p1 == Al && p2 == Gr) {
-                    sector.setCharacter(Al_Gr);
-                } else if (p1 == Q && p2 == LFl) {
-                    sector.setCharacter(Q_LFl);
-                } else if (p1 == VQ && p2 == LFl) {
-                    sector.setCharacter(VQ_LFl);
-                } else if (p1 == UQ && p2 == LFl) {
-                    sector.setCharacter(UQ_LFl);
-                } else if (p1 == Al && p2 == FFl) {
-                    sector.setCharacter(Al_FFl);
-                }
+            if (++phaseNo == 2) {
+                p2 = PHASE_CHARACTERS[phase];
             }
-
-            // Colors
-            if (StringUtils.isNotBlank(colorsSpec)) {
-                Matcher cm = LIGHT_FORMAT.matcher(colorsSpec);
-                while (cm.find()) {
-                    sector.getColours().add(Colour.valueOfLc(cm.group("color")));
+            pos = next + PHASE_TOKENS[phase].length();
+        }
+        pos = skipSeparator(lightChar, pos);
+
+        // Group, e.g. "(2+1)"
+        int groupStart = -1, groupEnd = -1;
+        if (pos < len && lightChar.charAt(pos) == '(') {
+            int end = skipWordChars(lightChar, pos + 1);
+            if (end > pos + 1) {
+                while (end < len && lightChar.charAt(end) == '+') {
+                    int next = skipWordChars(lightChar, end + 1);
+                    if (next == end + 1) {
+                        break;
+                    }
+                    end = next;
+                }
+                if (end < len && lightChar.charAt(end) == ')') {
+                    groupStart = pos + 1;
+                    groupEnd = end;
+                    pos = end + 1;
                 }
             }
-            // Multiple
-            if (StringUtils.isNotBlank(multipleSpec)) {
-                sector.setMultiple(Integer.valueOf(multipleSpec.trim()));
+        }
+        pos = skipSeparator(lightChar, pos);
+
+        // Colours, e.g. "WRG" or "W.R G"
+        int coloursStart = pos;
+        int colour = tokenAt(lightChar, pos, COLOUR_TOKENS);
+        while (colour >= 0) {
+            pos += COLOUR_TOKENS[colour].length();
+            int next = skipSeparator(lightChar, pos);
+            colour = tokenAt(lightChar, next, COLOUR_TOKENS);
+            if (colour >= 0) {
+                pos = next;
             }
-
-            // Group
-            if (StringUtils.isNotBlank(groupSpec)) {
-                sector.setGroup(groupSpec.substring(1, groupSpec.length() - 1).trim());
+        }
+        int coloursEnd = pos;
+        pos = skipSeparator(lightChar, pos);
+
+        // Period, e.g. "4s" or "1,5s"
+        int periodEnd = -1;
+        int digitsEnd = skipDigits(lightChar, pos);
+        if (digitsEnd > pos) {
+            if (digitsEnd + 2 < len && lightChar.charAt(digitsEnd) == ','
+                    && isDigit(lightChar.charAt(digitsEnd + 1)) && isPeriodUnit(lightChar.charAt(digitsEnd + 2))) {
+                periodEnd = digitsEnd + 2;
+            } else if (digitsEnd < len && isPeriodUnit(lightChar.charAt(digitsEnd))) {
+                periodEnd = digitsEnd;
             }
+        }
+
+        if (coloursEnd == coloursStart && (phaseNo > 1 || p1 != Mo)) {
+            return light;
+        }
 
-            // Period
-            if (StringUtils.isNotBlank(periodSpec)) {
-                sector.setPeriod(Double.valueOf(periodSpec.substring(0, periodSpec.length() - 1).replace(',', '.')));
+        LightSector sector = light.getSectors().get(0);
+
+        // Phases
+        if (phaseNo > 2) {
+            return light;
+        } else if (phaseNo == 1) {
+            sector.setCharacter(p1);
+        } else {
+            LightSeamark.Character composite = LightSeamark.Character.valueOfComposite(p1, p2);
+            if (composite != null) {
+                sector.setCharacter(composite);
             }
+        }
+
+        // Colors
+        for (int c = coloursStart; c < coloursEnd; ) {
+            c = skipSeparator(lightChar, c);
+            colour = tokenAt(lightChar, c, COLOUR_TOKENS);
+            sector.getColours().add(COLOURS[colour]);
+            c += COLOUR_TOKENS[colour].length();
+        }
+
+        // Multiple
+        if (multipleEnd > 0) {
+            sector.setMultiple(Integer.valueOf(lightChar.substring(0, multipleEnd)));
+        }
+
+        // Group
+        if (groupStart >= 0) {
+            sector.setGroup(lightChar.substring(groupStart, groupEnd));
+        }
 
+        // Period
+        if (periodEnd >= 0) {
+            sector.setPeriod(parsePeriod(lightChar, pos, periodEnd));
         }
+
         return light;
     }
 
 
+    /**
+     * Returns the index of the first of the tokens found at the given position, or -1 if none is found.
+     * The tokens are tested in order, just like a regular expression alternation.
+     */
+    private static int tokenAt(String str, int pos, String[] tokens) {
+        for (int x = 0; x < tokens.length; x++) {
+            if (str.startsWith(tokens[x], pos)) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+
+    /** Checks that the string has no line terminators, except for a final one, as required by ".*$" **/
+    static boolean isSingleLine(String str) {
+        int len = str.length();
+        for (int x = 0; x < len; x++) {
+            char c = str.charAt(x);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return x == len - 1 || (x == len - 2 && c == '\r' && str.charAt(x + 1) == '\n');
+            }
+        }
+        return true;
+    }
+
+
+    /** Skips an optional "." or " " separator at the given position **/
+    private static int skipSeparator(String str, int pos) {
+        if (pos < str.length() && (str.charAt(pos) == '.' || str.charAt(pos) == ' ')) {
+            return pos + 1;
+        }
+        return pos;
+    }
+
+
+    /** Skips ASCII digits, i.e. "\d*" **/
+    private static int skipDigits(String str, int pos) {
+        while (pos < str.length() && isDigit(str.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+
+    /** Skips ASCII word characters, i.e. "\w*" **/
+    private static int skipWordChars(String str, int pos) {
+        while (pos < str.length() && isWordChar(str.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+
+    /** Parses a period of the form "digits[,digit]" without creating intermediate strings **/
+    private static Double parsePeriod(String str, int start, int end) {
+        if (end - start > 15) {
+            return Double.valueOf(str.substring(start, end).replace(',', '.'));
+        }
+        // Dividing the exact number of tenths yields the same double as parsing the decimal string
+        long value = 0;
+        int scale = 1;
+        for (int x = start; x < end; x++) {
+            char c = str.charAt(x);
+            if (c == ',') {
+                scale = 10;
+            } else {
+                value = value * 10 + (c - '0');
+            }
+        }
+        return scale == 1 ? (double) value : value / 10.0;
+    }
+
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    private static boolean isWordChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+
+    private static boolean isPhaseSeparator(char c) {
+        return c == '.' || c == ' ' || c == '+';
+    }
+
+
+    private static boolean isPeriodUnit(char c) {
+        return c == 's' || c == 'm';
+    }
+
+
     /**
      * When the light character is read in, there may be multiple colours, e.g. "Iso.WRG.8s".
      * This covers the fact that the light may be a multi-sectored or -directional light.
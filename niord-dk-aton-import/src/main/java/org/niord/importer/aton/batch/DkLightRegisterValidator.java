@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.niord.importer.aton.batch.LightRegisterReport.Failure;
+import org.niord.importer.aton.batch.LightSeamark.LightSector;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.niord.importer.aton.batch.BatchDkLightImportProcessor.FYRKARAKTER;
+import static org.niord.importer.aton.batch.BatchDkLightImportProcessor.LYSVINKLER;
+import static org.niord.importer.aton.batch.BatchDkLightImportProcessor.NR_DK;
+import static org.niord.importer.aton.batch.BatchDkLightImportProcessor.STATUS;
+import static org.niord.importer.aton.batch.BatchDkLightImportProcessor.TAAGESIGNAL;
+
+/**
+ * Validates the light characteristics, light sector angles and fog signals of a light register Excel sheet
+ * without importing it.
+ * <p>
+ * The Excel sheet is read sequentially, whereas the fields are parsed in parallel using a parallel stream.
+ * As in the light import, only active lights are validated.
+ */
+public class DkLightRegisterValidator {
+
+    /** The light sector angles value of the light register used for lights without sectors */
+    public static final String NO_SECTOR_ANGLES = "Ingen";
+
+    /**
+     * No public initialization
+     */
+    private DkLightRegisterValidator() {
+    }
+
+
+    /**
+     * Validates the light register Excel sheet
+     * @param path the path to the light register Excel sheet
+     * @return the validation report
+     */
+    public static LightRegisterReport validate(Path path) throws Exception {
+        long t0 = System.currentTimeMillis();
+
+        List<LightRow> rows = readRows(path);
+        List<LightRow> results = rows.parallelStream()
+                .map(DkLightRegisterValidator::validateRow)
+                .collect(Collectors.toList());
+
+        LightRegisterReport report = new LightRegisterReport();
+        report.setFileName(path.getFileName().toString());
+        report.setRowCount(rows.size());
+        for (LightRow row : results) {
+            if (!row.active) {
+                continue;
+            }
+            report.activeRowCount++;
+            if (row.character != null) {
+                report.validLightCount++;
+                report.lightCharacters.merge(row.character, 1, Integer::sum);
+            }
+            if (row.sectored) {
+                report.sectoredLightCount++;
+            }
+            if (row.category != null) {
+                report.validFogSignalCount++;
+                report.fogSignalCategories.merge(row.category, 1, Integer::sum);
+            }
+            if (row.character == null && row.category == null) {
+                report.invalidRowCount++;
+            }
+            report.failures.addAll(row.failures);
+        }
+        report.setDurationMs(System.currentTimeMillis() - t0);
+        return report;
+    }
+
+
+    /** Reads the relevant fields of the data rows of the Excel sheet **/
+    private static List<LightRow> readRows(Path path) throws Exception {
+        List<LightRow> rows = new ArrayList<>();
+        try (StreamingExcelRowIterator rowIterator = new StreamingExcelRowIterator(path)) {
+            if (!rowIterator.hasNext()) {
+                return rows;
+            }
+
+            Row headerRow = rowIterator.next();
+            Map<String, Integer> colIndex = new HashMap<>();
+            for (String field : BatchDkLightImportReader.FIELDS) {
+                AbstractDkAtonImportReader.updateColumnIndex(headerRow, colIndex, field);
+            }
+            ExcelRowSchema schema = new ExcelRowSchema(BatchDkLightImportReader.FIELDS, colIndex);
+
+            while (rowIterator.hasNext()) {
+                Row row = rowIterator.next();
+                LightRow lightRow = new LightRow(row.getRowNum());
+                lightRow.lightNumber = stringValue(lightRow, schema, row, NR_DK);
+                lightRow.active = "DRIFT".equalsIgnoreCase(stringValue(lightRow, schema, row, STATUS));
+                lightRow.lightChar = stringValue(lightRow, schema, row, FYRKARAKTER);
+                lightRow.sectorAngles = stringValue(lightRow, schema, row, LYSVINKLER);
+                lightRow.fogSignal = stringValue(lightRow, schema, row, TAAGESIGNAL);
+                rows.add(lightRow);
+            }
+        }
+        return rows;
+    }
+
+
+    /** Returns the string value of the cell with the given field handle, registering a failure if not a string */
+    private static String stringValue(LightRow lightRow, ExcelRowSchema schema, Row row, int field) {
+        Cell cell = schema.getCell(row, field);
+        try {
+            return cell == null ? null : cell.getStringCellValue();
+        } catch (Exception e) {
+            lightRow.failures.add(lightRow.failure(schema.getFields()[field], String.valueOf(cell), e.getMessage()));
+            return null;
+        }
+    }
+
+
+    /** Parses the light and fog signal fields of the row, in the same way as the light import **/
+    private static LightRow validateRow(LightRow row) {
+        if (!row.active) {
+            return row;
+        }
+
+        // Light characteristics and sector angles
+        LightSeamark light = DkLightParser.newInstance();
+        try {
+            if (row.lightChar != null) {
+                DkLightParser.parseLightCharacteristics(light, row.lightChar);
+            }
+            if (StringUtils.isNotBlank(row.lightChar) && !light.isValid()) {
+                row.failures.add(row.failure("Fyrkarakter", row.lightChar, "Invalid light characteristics"));
+            }
+            DkLightParser.parseLightSectorAngles(light, row.sectorAngles);
+            if (StringUtils.isNotBlank(row.sectorAngles) && !NO_SECTOR_ANGLES.equalsIgnoreCase(row.sectorAngles.trim())
+                    && light.getSectors().get(0).getSectorStart() == null) {
+                row.failures.add(row.failure("Lysvinkler", row.sectorAngles, "No light sector angles found"));
+            }
+        } catch (Exception e) {
+            row.failures.add(row.failure("Fyrkarakter", row.lightChar, e.toString()));
+        }
+        if (light.isValid()) {
+            LightSector sector = light.getSectors().get(0);
+            row.character = String.valueOf(sector.getCharacter());
+            row.sectored = sector.getSectorStart() != null;
+        }
+
+        // Fog signal
+        FogSignalSeamark fogSignal = DkFogSignalParser.newInstance();
+        try {
+            if (row.fogSignal != null) {
+                DkFogSignalParser.parseFogSignal(fogSignal, row.fogSignal);
+            }
+            if (StringUtils.isNotBlank(row.fogSignal) && !fogSignal.isValid()) {
+                row.failures.add(row.failure("Taagesignal", row.fogSignal, "Invalid fog signal"));
+            }
+        } catch (Exception e) {
+            row.failures.add(row.failure("Taagesignal", row.fogSignal, e.toString()));
+        }
+        if (fogSignal.isValid()) {
+            row.category = String.valueOf(fogSignal.getCategory());
+        }
+
+        // Either the light or the fog signal (or both) must be valid
+        if (row.character == null && row.category == null) {
+            row.failures.add(row.failure(null, null, "Neither a valid light nor fog signal"));
+        }
+        return row;
+    }
+
+
+    /**
+     * The relevant fields and validation result of a light register row
+     */
+    private static class LightRow {
+        final int rowNum;
+        String lightNumber;
+        boolean active;
+        String lightChar;
+        String sectorAngles;
+        String fogSignal;
+
+        String character;
+        boolean sectored;
+        String category;
+        List<Failure> failures = new ArrayList<>(0);
+
+        LightRow(int rowNum) {
+            this.rowNum = rowNum;
+        }
+
+        Failure failure(String field, String value, String message) {
+            return new Failure(rowNum, lightNumber, field, value, message);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.importer.aton.batch.LightSeamark.LightSector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Thread-safe memo cache of parsed light specs, keyed by the raw spec string.
+ * <p>
+ * Light characteristics such as "Iso.WRG.2s" and light sector angles are heavily repeated across the
+ * light register. The cache keeps the parsed light sectors as templates, which are never handed out,
+ * but copied into the light being parsed via {@linkplain LightSector#copy()}.
+ * <p>
+ * The cache is bounded: once it holds the maximum number of specs, new specs are parsed but not cached.
+ */
+public class DkLightSpecCache {
+
+    final int maxSize;
+    final Map<String, LightSector> characteristics = new ConcurrentHashMap<>();
+    final Map<String, List<LightSector>> sectorAngles = new ConcurrentHashMap<>();
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+
+
+    /**
+     * Constructor
+     * @param maxSize the maximum number of cached specs of each kind
+     */
+    public DkLightSpecCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * Parses the light characteristics and updates the first sector of the newly created LightSeamark.
+     * Same as {@linkplain DkLightParser#parseLightCharacteristics(LightSeamark, String)}.
+     *
+     * @param light     the light to update, as created by {@linkplain DkLightParser#newInstance()}
+     * @param lightChar the light characteristics
+     * @return the updated light
+     */
+    public LightSeamark parseLightCharacteristics(LightSeamark light, String lightChar) {
+        LightSector template = lookup(characteristics, lightChar, spec ->
+                DkLightParser.parseLightCharacteristics(DkLightParser.newInstance(), spec).getSectors().get(0));
+        light.getSectors().set(0, template.copy());
+        return light;
+    }
+
+
+    /**
+     * Parses the light sector angles.
+     * Same as {@linkplain DkLightParser#parseLightSectorAngles(LightSeamark, String)}.
+     *
+     * @param light the light to update
+     * @param sectors the light sector angles
+     * @return the updated light
+     */
+    public LightSeamark parseLightSectorAngles(LightSeamark light, String sectors) {
+        if (StringUtils.isBlank(sectors) || light.getSectors().size() != 1) {
+            return light;
+        }
+
+        List<LightSector> templates = lookup(sectorAngles, sectors, spec -> {
+            LightSeamark parsed = DkLightParser.parseLightSectorAngles(DkLightParser.newInstance(), spec);
+            return parsed.getSectors().get(0).getSectorStart() == null
+                    ? Collections.emptyList()
+                    : Collections.unmodifiableList(parsed.getSectors());
+        });
+
+        if (!templates.isEmpty()) {
+            LightSector sector = light.getSectors().get(0);
+            List<LightSector> newSectors = new ArrayList<>(templates.size());
+            for (LightSector template : templates) {
+                LightSector newSector = sector.copy();
+                newSector.getColours().clear();
+                newSector.getColours().addAll(template.getColours());
+                newSector.setSectorStart(template.getSectorStart());
+                newSector.setSectorEnd(template.getSectorEnd());
+                newSectors.add(newSector);
+            }
+            light.setSectors(newSectors);
+        }
+        return light;
+    }
+
+
+    /** Returns the cached value of the given spec, parsing and caching it if undefined **/
+    private <T> T lookup(Map<String, T> cache, String spec, Function<String, T> parser) {
+        T value = cache.get(spec);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = parser.apply(spec);
+        if (cache.size() < maxSize) {
+            cache.putIfAbsent(spec, value);
+        }
+        return value;
+    }
+
+
+    /** Returns the number of cache hits **/
+    public long getHits() {
+        return hits.sum();
+    }
+
+
+    /** Returns the number of cache misses **/
+    public long getMisses() {
+        return misses.sum();
+    }
+
+
+    /** Returns the ratio of cache hits to look-ups **/
+    public double getHitRate() {
+        long hitNo = hits.sum();
+        long lookupNo = hitNo + misses.sum();
+        return lookupNo == 0 ? 0.0 : (double) hitNo / lookupNo;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%%), %d characteristics, %d sector angles",
+                getHits(), getMisses(), 100.0 * getHitRate(), characteristics.size(), sectorAngles.size());
+    }
+}
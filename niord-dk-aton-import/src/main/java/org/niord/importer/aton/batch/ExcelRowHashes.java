@@ -0,0 +1,381 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+import javax.batch.runtime.context.JobContext;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Content hashes of the rows of an imported Excel sheet, keyed by the key field of each row.
+ * <p>
+ * The hashes of the previous import of a sheet are loaded from a hash file, and the readers use them to
+ * skip rows that are unchanged since the previous import. The hashes of the current import are shared by
+ * all partitions of a job execution. A hash is only recorded once its row has been written, or if the row
+ * is skipped as unchanged, and the hashes are saved by {@linkplain BatchDkRowHashListener} when the step
+ * has completed, along with a report of the number of added, changed, unchanged and removed rows.
+ * <p>
+ * The hash file also records whether all rows of the sheet were read, i.e. whether the keys of the hash file
+ * are the complete set of keys of the imported sheet. See {@linkplain AtonReconciliationService}.
+ */
+public class ExcelRowHashes {
+
+    private static final Map<Long, ExcelRowHashes> HASHES = new ConcurrentHashMap<>();
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    final Path file;
+    final Map<String, Long> previous;
+    boolean previousComplete;
+    final Map<String, Long> current = new ConcurrentHashMap<>();
+    final LongAdder addedNo = new LongAdder();
+    final LongAdder changedNo = new LongAdder();
+    final LongAdder unchangedNo = new LongAdder();
+    final LongAdder discardedNo = new LongAdder();
+    final LongAdder rowNo = new LongAdder();
+    volatile int rowCount = -1;
+
+
+    /**
+     * Constructor
+     * @param file the hash file
+     * @param previous the hashes of the previous import
+     */
+    public ExcelRowHashes(Path file, Map<String, Long> previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+
+    /**
+     * Opens the row hashes, loading the previous hashes from the given hash file
+     * @param file the hash file
+     * @return the row hashes
+     */
+    public static ExcelRowHashes open(Path file) throws IOException {
+        ExcelRowHashes hashes = new ExcelRowHashes(file, new HashMap<>());
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                hashes.previousComplete = in.readBoolean();
+                int count = in.readInt();
+                for (int x = 0; x < count; x++) {
+                    hashes.previous.put(in.readUTF(), in.readLong());
+                }
+            }
+        }
+        return hashes;
+    }
+
+
+    /**
+     * Returns the path of the row hash file of the given batch job. The partitioned
+     * variant of a batch job shares the row hash file of the plain batch job.
+     * @param repoRoot the repository root
+     * @param jobName the name of the batch job
+     * @return the path of the row hash file of the batch job
+     */
+    public static Path hashesPath(Path repoRoot, String jobName) {
+        return repoRoot.resolve("aton-import").resolve(jobName.replaceFirst("-partitioned$", "") + ".hashes");
+    }
+
+
+    /**
+     * Returns the row hashes of the job execution of the given job context, loading the previous
+     * hashes from the given hash file if undefined
+     * @param jobContext the job context
+     * @param file the hash file
+     * @return the row hashes of the job execution
+     */
+    public static ExcelRowHashes forJob(JobContext jobContext, Path file) {
+        return HASHES.computeIfAbsent(jobContext.getExecutionId(), id -> {
+            try {
+                return open(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed loading row hashes " + file, e);
+            }
+        });
+    }
+
+
+    /**
+     * Returns the row hashes of the job execution of the given job context, or null if undefined
+     * @param jobContext the job context
+     * @return the row hashes of the job execution, or null if undefined
+     */
+    public static ExcelRowHashes get(JobContext jobContext) {
+        return HASHES.get(jobContext.getExecutionId());
+    }
+
+
+    /**
+     * Releases and returns the row hashes of the job execution of the given job context
+     * @param jobContext the job context
+     * @return the released row hashes of the job execution, or null if undefined
+     */
+    public static ExcelRowHashes release(JobContext jobContext) {
+        return HASHES.remove(jobContext.getExecutionId());
+    }
+
+
+    /**
+     * Returns the key of the row, i.e. the value of the key field, or null if undefined
+     * @param schema the row schema
+     * @param row the row
+     * @param keyField the handle of the key field
+     * @return the key of the row, or null if undefined
+     */
+    public static String key(ExcelRowSchema schema, Row row, int keyField) {
+        Cell cell = schema.getCell(row, keyField);
+        if (cell == null) {
+            return null;
+        }
+        String key;
+        switch (cell.getCellType()) {
+            case Cell.CELL_TYPE_STRING:
+                key = cell.getStringCellValue();
+                break;
+            case Cell.CELL_TYPE_NUMERIC:
+                double value = cell.getNumericCellValue();
+                key = value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+                break;
+            default:
+                key = null;
+        }
+        return key == null || key.trim().isEmpty() ? null : key.trim();
+    }
+
+
+    /**
+     * Computes a stable 64-bit FNV-1a hash over the cells of all the fields of the schema
+     * @param schema the row schema
+     * @param row the row
+     * @return the content hash of the row
+     */
+    public static long hash(ExcelRowSchema schema, Row row) {
+        long hash = FNV_OFFSET;
+        for (int field = 0; field < schema.getFields().length; field++) {
+            Cell cell = schema.getCell(row, field);
+            int type = cell == null ? Cell.CELL_TYPE_BLANK : cell.getCellType();
+            hash = (hash ^ type) * FNV_PRIME;
+            switch (type) {
+                case Cell.CELL_TYPE_STRING:
+                    String str = cell.getStringCellValue();
+                    for (int x = 0; x < str.length(); x++) {
+                        hash = (hash ^ str.charAt(x)) * FNV_PRIME;
+                    }
+                    break;
+                case Cell.CELL_TYPE_NUMERIC:
+                    hash = hash(hash, Double.doubleToLongBits(cell.getNumericCellValue()));
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    hash = (hash ^ (cell.getBooleanCellValue() ? 1 : 0)) * FNV_PRIME;
+                    break;
+                case Cell.CELL_TYPE_BLANK:
+                    break;
+                default:
+                    String val = cell.toString();
+                    for (int x = 0; x < val.length(); x++) {
+                        hash = (hash ^ val.charAt(x)) * FNV_PRIME;
+                    }
+            }
+            // Field separator
+            hash = (hash ^ 0xff) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Combines the content hash of a row with the content hash of the parent row it overlays, if any
+     * @param hash the content hash of the row
+     * @param parentHash the content hash of the parent row, or null if undefined
+     * @return the combined content hash
+     */
+    public static long combine(long hash, Long parentHash) {
+        return hash(hash, parentHash == null ? 0L : parentHash);
+    }
+
+
+    /** Adds the 8 bytes of the value to the FNV-1a hash **/
+    private static long hash(long hash, long value) {
+        for (int x = 0; x < 8; x++) {
+            hash = (hash ^ ((value >>> (8 * x)) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Sets the total number of rows of the sheet
+     * @param rowCount the total number of rows of the sheet
+     */
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+
+    /**
+     * Registers that a row has been read, including rows without a key
+     */
+    public void rowRead() {
+        rowNo.increment();
+    }
+
+
+    /**
+     * Returns if all rows of the sheet have been read and recorded. This is not the case for a restarted job
+     * execution, since the rows before the checkpoint are not read again, nor if the hashes of some rows
+     * were discarded.
+     * @return if all rows of the sheet have been read and recorded
+     */
+    public boolean isComplete() {
+        return rowCount >= 0 && rowNo.sum() == rowCount && discardedNo.sum() == 0;
+    }
+
+
+    /**
+     * Returns if the row with the given key is unchanged since the previous import
+     * @param key the key of the row
+     * @param hash the content hash of the row
+     * @return if the row is unchanged since the previous import
+     */
+    public boolean isUnchanged(String key, long hash) {
+        Long previousHash = previous.get(key);
+        return previousHash != null && previousHash == hash;
+    }
+
+
+    /**
+     * Returns the hash of the row with the given key in the previous import, or null if undefined
+     * @param key the key of the row
+     * @return the hash of the row in the previous import, or null if undefined
+     */
+    public Long getPreviousHash(String key) {
+        return previous.get(key);
+    }
+
+
+    /**
+     * Records the hash of the row with the given key in the current import. Should only be called
+     * once the row has been imported, or if it is skipped because it is unchanged.
+     * @param key the key of the row
+     * @param hash the content hash of the row
+     */
+    public void record(String key, long hash) {
+        current.put(key, hash);
+        Long previousHash = previous.get(key);
+        if (previousHash == null) {
+            addedNo.increment();
+        } else if (previousHash != hash) {
+            changedNo.increment();
+        } else {
+            unchangedNo.increment();
+        }
+    }
+
+
+    /**
+     * Registers that the hash of a row is not recorded, because the row was skipped, failed to parse
+     * or failed to be written. The row will be imported again by the next import.
+     */
+    public void discard() {
+        discardedNo.increment();
+    }
+
+
+    /**
+     * Returns the keys of the previous import that are not present in the current import
+     * @return the keys of the removed rows
+     */
+    public List<String> getRemovedKeys() {
+        return previous.keySet().stream()
+                .filter(key -> !current.containsKey(key))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+
+    public Set<String> getPreviousKeys() {
+        return previous.keySet();
+    }
+
+
+    public boolean isPreviousComplete() {
+        return previousComplete;
+    }
+
+
+    public long getAddedNo() {
+        return addedNo.sum();
+    }
+
+
+    public long getChangedNo() {
+        return changedNo.sum();
+    }
+
+
+    public long getUnchangedNo() {
+        return unchangedNo.sum();
+    }
+
+
+    public long getDiscardedNo() {
+        return discardedNo.sum();
+    }
+
+
+    /** Saves the hashes of the current import to the hash file, replacing the hashes of the previous import **/
+    public void save() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeBoolean(isComplete());
+            out.writeInt(current.size());
+            for (Map.Entry<String, Long> hash : current.entrySet()) {
+                out.writeUTF(hash.getKey());
+                out.writeLong(hash.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return String.format("added %d, changed %d, unchanged %d, discarded %d",
+                getAddedNo(), getChangedNo(), getUnchangedNo(), getDiscardedNo());
+    }
+}
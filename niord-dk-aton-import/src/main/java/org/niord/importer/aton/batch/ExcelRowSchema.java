@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.util.Map;
+
+/**
+ * Pre-resolved column layout of an Excel sheet.
+ * <p>
+ * The schema is built once per batch job from the header row. The fields of a reader are addressed by
+ * int handles, i.e. their index in the reader's {@code getFields()} array, which processors resolve
+ * once using {@linkplain #fieldHandle(String[], String)}. Looking up a cell is thus a plain array access.
+ */
+public class ExcelRowSchema {
+
+    final String[] fields;
+    final int[] columns;
+
+    /**
+     * Constructor
+     * @param fields the fields of the reader
+     * @param colIndex the column indexes of the fields, as resolved from the header row
+     */
+    public ExcelRowSchema(String[] fields, Map<String, Integer> colIndex) {
+        this.fields = fields;
+        this.columns = new int[fields.length];
+        for (int x = 0; x < fields.length; x++) {
+            Integer col = colIndex.get(fields[x]);
+            columns[x] = col != null ? col : -1;
+        }
+    }
+
+
+    /**
+     * Returns the handle of the given field, i.e. the index of the field in the fields array
+     * @param fields the fields of the reader
+     * @param field the field to resolve the handle for
+     * @return the handle of the field
+     */
+    public static int fieldHandle(String[] fields, String field) {
+        for (int x = 0; x < fields.length; x++) {
+            if (fields[x].equals(field)) {
+                return x;
+            }
+        }
+        throw new IllegalArgumentException("Undefined field " + field);
+    }
+
+
+    /**
+     * Returns the cell of the row for the field with the given handle
+     * @param row the row
+     * @param field the field handle
+     * @return the cell or null if undefined
+     */
+    public Cell getCell(Row row, int field) {
+        int col = columns[field];
+        return col < 0 ? null : row.getCell(col);
+    }
+
+
+    /**
+     * Returns the sheet column index of the field with the given handle, or -1 if the column is not present
+     * @param field the field handle
+     * @return the sheet column index of the field
+     */
+    public int getColumn(int field) {
+        return columns[field];
+    }
+
+
+    public String[] getFields() {
+        return fields;
+    }
+}
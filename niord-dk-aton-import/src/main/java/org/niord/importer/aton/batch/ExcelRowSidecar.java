@@ -0,0 +1,493 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, pre-parsed copy of the data rows of an Excel sheet, stored next to the batch job data file.
+ * <p>
+ * Only the cells of the columns in the column index are stored. The file ends with a row offset table,
+ * which allows a reader to seek directly to any row without re-parsing the Excel sheet, e.g. when a
+ * batch job is restarted from a checkpoint.
+ * <p>
+ * File layout:
+ * <pre>
+ *   header:  magic, version, totalRowNo, column index entries (name, column)
+ *   rows:    rowNum, cell count, cells (column, type, value)
+ *   strings: byte length, UTF-8 bytes
+ *   index:   one offset per row
+ *   trailer: offset of the index, row count, magic
+ * </pre>
+ */
+public class ExcelRowSidecar implements Closeable {
+
+    public static final String SIDECAR_SUFFIX = ".rows";
+
+    private static final int MAGIC = 0x4e445258; // "NDRX"
+    private static final int VERSION = 3;
+    private static final int TRAILER_SIZE = 8 + 4 + 4;
+
+    private static final byte TYPE_BLANK = 0;
+    private static final byte TYPE_NUMERIC = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_DATE = 4;
+
+    private final RandomAccessFile file;
+    private final Map<String, Integer> colIndex = new HashMap<>();
+    private final int totalRowNo;
+    private final int rowCount;
+    private final long indexOffset;
+
+    /**
+     * Opens an existing sidecar file
+     * @param path the path of the sidecar file
+     */
+    private ExcelRowSidecar(Path path) throws IOException {
+        file = new RandomAccessFile(path.toFile(), "r");
+        try {
+            // Read and validate the trailer
+            file.seek(file.length() - TRAILER_SIZE);
+            indexOffset = file.readLong();
+            rowCount = file.readInt();
+            if (file.readInt() != MAGIC) {
+                throw new IOException("Invalid sidecar file " + path);
+            }
+
+            // Read the header
+            file.seek(0);
+            if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+                throw new IOException("Invalid sidecar file " + path);
+            }
+            totalRowNo = file.readInt();
+            int colNo = file.readInt();
+            for (int x = 0; x < colNo; x++) {
+                byte[] name = new byte[file.readInt()];
+                file.readFully(name);
+                colIndex.put(new String(name, StandardCharsets.UTF_8), file.readInt());
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns the path of the sidecar file for the given Excel data file
+     * @param dataFile the Excel data file
+     * @return the path of the sidecar file
+     */
+    public static Path sidecarPath(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + SIDECAR_SUFFIX);
+    }
+
+
+    /**
+     * Opens an existing sidecar file
+     * @param path the path of the sidecar file
+     * @return the opened sidecar
+     */
+    public static ExcelRowSidecar open(Path path) throws IOException {
+        return new ExcelRowSidecar(path);
+    }
+
+
+    /**
+     * Writes the remaining rows of the row iterator to a new sidecar file.
+     * <p>
+     * The file is first written to a temporary file, which is then moved into place,
+     * so a sidecar file is never observed in a partially written state.
+     *
+     * @param path the path of the sidecar file
+     * @param colIndex the column index
+     * @param totalRowNo the index of the last row of the Excel sheet
+     * @param rows the Excel rows to write
+     */
+    public static void write(Path path, Map<String, Integer> colIndex, int totalRowNo, Iterator<Row> rows) throws IOException {
+
+        Path tmpFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            List<Long> offsets = new ArrayList<>();
+            // The counter sits on top of the buffer, so that the row offsets are known without flushing
+            try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)));
+                 DataOutputStream out = new DataOutputStream(counter)) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(totalRowNo);
+                out.writeInt(colIndex.size());
+                for (Map.Entry<String, Integer> col : colIndex.entrySet()) {
+                    writeString(out, col.getKey());
+                    out.writeInt(col.getValue());
+                }
+
+                int[] columns = colIndex.values().stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+                while (rows.hasNext()) {
+                    offsets.add(counter.count);
+                    writeRow(out, rows.next(), columns);
+                }
+
+                long indexOffset = counter.count;
+                for (Long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                out.writeLong(indexOffset);
+                out.writeInt(offsets.size());
+                out.writeInt(MAGIC);
+            }
+
+            try {
+                Files.move(tmpFile, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tmpFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+
+    /** Writes the cells of the given columns of the row */
+    private static void writeRow(DataOutputStream out, Row row, int[] columns) throws IOException {
+        int cellNo = 0;
+        for (int col : columns) {
+            if (row.getCell(col) != null) {
+                cellNo++;
+            }
+        }
+
+        out.writeInt(row.getRowNum());
+        out.writeShort(cellNo);
+        for (int col : columns) {
+            Cell cell = row.getCell(col);
+            if (cell == null) {
+                continue;
+            }
+            out.writeShort(col);
+            int cellType = cell.getCellType() == Cell.CELL_TYPE_FORMULA
+                    ? cell.getCachedFormulaResultType()
+                    : cell.getCellType();
+            switch (cellType) {
+                case Cell.CELL_TYPE_NUMERIC:
+                    out.writeByte(DateUtil.isCellDateFormatted(cell) ? TYPE_DATE : TYPE_NUMERIC);
+                    out.writeDouble(cell.getNumericCellValue());
+                    break;
+                case Cell.CELL_TYPE_STRING:
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, cell.getStringCellValue());
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    out.writeByte(TYPE_BOOLEAN);
+                    out.writeBoolean(cell.getBooleanCellValue());
+                    break;
+                default:
+                    out.writeByte(TYPE_BLANK);
+            }
+        }
+    }
+
+
+    /**
+     * Writes the string as a length-prefixed UTF-8 byte array. Unlike {@code writeUTF()},
+     * this is not limited to strings of 64 KB.
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+
+    /**
+     * Returns the column index stored in the sidecar
+     * @return the column index stored in the sidecar
+     */
+    public Map<String, Integer> getColIndex() {
+        return colIndex;
+    }
+
+
+    /**
+     * Returns the index of the last row of the original Excel sheet
+     * @return the index of the last row of the original Excel sheet
+     */
+    public int getTotalRowNo() {
+        return totalRowNo;
+    }
+
+
+    /**
+     * Returns the number of data rows in the sidecar
+     * @return the number of data rows in the sidecar
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+
+    /**
+     * Returns an iterator over the data rows starting at the given data row index.
+     * <p>
+     * A returned row is only valid until the next call to {@code next()}.
+     *
+     * @param fromRow the data row index to start from
+     * @return the row iterator
+     */
+    public Iterator<Row> rowIterator(int fromRow) throws IOException {
+        return rowIterator(fromRow, rowCount);
+    }
+
+
+    /**
+     * Returns an iterator over the data rows in the range [fromRow, toRow).
+     * <p>
+     * A returned row is only valid until the next call to {@code next()}.
+     *
+     * @param fromRow the data row index to start from
+     * @param toRow the data row index to stop before
+     * @return the row iterator
+     */
+    public Iterator<Row> rowIterator(int fromRow, int toRow) throws IOException {
+        int from = Math.max(0, Math.min(fromRow, rowCount));
+        int to = Math.max(from, Math.min(toRow, rowCount));
+        long offset = indexOffset;
+        if (from < rowCount) {
+            file.seek(indexOffset + 8L * from);
+            offset = file.readLong();
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(file.getChannel().position(offset))));
+        return new SidecarRowIterator(in, from, to);
+    }
+
+
+    /**
+     * Returns an iterator over the given data rows, starting at the given index into the rows.
+     * Each row is read directly from its offset, so the rows need not be consecutive.
+     * <p>
+     * A returned row is only valid until the next call to {@code next()}.
+     *
+     * @param rows the data row indexes to read
+     * @param fromIndex the index into the rows to start from
+     * @return the row iterator
+     */
+    public Iterator<Row> rowIterator(int[] rows, int fromIndex) throws IOException {
+        long[] offsets = readOffsets();
+        RowBuffer rowBuffer = new RowBuffer();
+        return new SidecarRowIterator(new DataInputStream(rowBuffer), Math.max(0, fromIndex), rows.length) {
+            @Override
+            void beforeRow(int index) throws IOException {
+                int r = rows[index];
+                rowBuffer.fill(file, offsets[r], (int) (offsets[r + 1] - offsets[r]));
+            }
+        };
+    }
+
+
+    /** Reads the offsets of the data rows, followed by the offset of the row index **/
+    private long[] readOffsets() throws IOException {
+        byte[] index = new byte[8 * rowCount];
+        file.seek(indexOffset);
+        file.readFully(index);
+        long[] offsets = new long[rowCount + 1];
+        ByteBuffer.wrap(index).asLongBuffer().get(offsets, 0, rowCount);
+        offsets[rowCount] = indexOffset;
+        return offsets;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+
+    /*************************/
+    /** Helper classes      **/
+    /*************************/
+
+    /**
+     * Iterates the rows of the sidecar, materializing each row in a single-row scratch sheet.
+     * Date cells are given a date style, so that {@code DateUtil.isCellDateFormatted()} holds.
+     */
+    private class SidecarRowIterator implements Iterator<Row> {
+
+        final HSSFSheet scratchSheet = new HSSFWorkbook().createSheet();
+        final HSSFCellStyle dateStyle = scratchSheet.getWorkbook().createCellStyle();
+        final DataInputStream in;
+        byte[] buffer = new byte[256];
+        Row currentRow;
+        int row;
+        final int toRow;
+
+        SidecarRowIterator(DataInputStream in, int fromRow, int toRow) {
+            this.in = in;
+            this.row = fromRow;
+            this.toRow = toRow;
+            dateStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy"));
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public boolean hasNext() {
+            return row < toRow;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            // Release the previously returned row from the scratch sheet
+            if (currentRow != null) {
+                scratchSheet.removeRow(currentRow);
+            }
+
+            try {
+                beforeRow(row);
+                currentRow = scratchSheet.createRow(in.readInt());
+                int cellNo = in.readShort();
+                for (int x = 0; x < cellNo; x++) {
+                    Cell cell = currentRow.createCell(in.readShort());
+                    switch (in.readByte()) {
+                        case TYPE_NUMERIC:
+                            cell.setCellValue(in.readDouble());
+                            break;
+                        case TYPE_DATE:
+                            cell.setCellValue(in.readDouble());
+                            cell.setCellStyle(dateStyle);
+                            break;
+                        case TYPE_STRING:
+                            cell.setCellValue(readString());
+                            break;
+                        case TYPE_BOOLEAN:
+                            cell.setCellValue(in.readBoolean());
+                            break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading sidecar row " + row, e);
+            }
+
+            row++;
+            return currentRow;
+        }
+
+        /** Called before reading the given row, e.g. to position the input stream **/
+        void beforeRow(int row) throws IOException {
+        }
+
+        /** Reads a length-prefixed UTF-8 string, re-using the byte buffer **/
+        private String readString() throws IOException {
+            int length = in.readInt();
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, 2 * buffer.length)];
+            }
+            in.readFully(buffer, 0, length);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /**
+     * A re-usable input buffer holding the bytes of a single row
+     */
+    private static class RowBuffer extends ByteArrayInputStream {
+
+        RowBuffer() {
+            super(new byte[256]);
+        }
+
+        /** Reads the row at the given offset into the buffer **/
+        void fill(RandomAccessFile file, long offset, int length) throws IOException {
+            if (length > buf.length) {
+                buf = new byte[Math.max(length, 2 * buf.length)];
+            }
+            file.seek(offset);
+            file.readFully(buf, 0, length);
+            pos = 0;
+            mark = 0;
+            count = length;
+        }
+    }
+
+
+    /**
+     * Keeps track of the number of bytes written
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
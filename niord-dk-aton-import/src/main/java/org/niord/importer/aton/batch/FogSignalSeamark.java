@@ -16,10 +16,14 @@
 package org.niord.importer.aton.batch;
 
 import org.apache.commons.lang.StringUtils;
+import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonTag;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Used for representing an OSM fog signal model
@@ -49,7 +53,23 @@ public class FogSignalSeamark {
         bell,
         whistle,
         gong,
-        horn
+        horn;
+
+        private static final Map<String, Category> BY_SPEC = new HashMap<>();
+        static {
+            for (Category category : values()) {
+                String name = category.name();
+                BY_SPEC.put(name, category);
+                BY_SPEC.put(name.toUpperCase(Locale.ENGLISH), category);
+                BY_SPEC.put(StringUtils.capitalize(name), category);
+            }
+        }
+
+        /** Returns the category with the given case-insensitive name, or null if not found **/
+        public static Category valueOfIgnoreCase(String spec) {
+            Category category = BY_SPEC.get(spec);
+            return (category != null || spec == null) ? category : BY_SPEC.get(spec.toLowerCase(Locale.ENGLISH));
+        }
     }
 
     /*************************/
@@ -93,6 +113,20 @@ public class FogSignalSeamark {
         return tags;
     }
 
+    /**
+     * Updates the AtoN with the OSM tags of this entity directly, in the same order as {@linkplain #toOsm()}
+     * @param aton the AtoN to update
+     */
+    public void toOsm(AtonNode aton) {
+        LightSeamark.updateAtonTag(aton, "seamark:type", type);
+        LightSeamark.updateAtonTag(aton, "seamark:fog_signal:category", category);
+        LightSeamark.updateAtonTag(aton, "seamark:fog_signal:range", range);
+        LightSeamark.updateAtonTag(aton, "seamark:fog_signal:frequency", frequency);
+        LightSeamark.updateAtonTag(aton, "seamark:fog_signal:group", group);
+        LightSeamark.updateAtonTag(aton, "seamark:fog_signal:period", period);
+        LightSeamark.updateAtonTag(aton, "seamark:fog_signal:sequence", sequence);
+    }
+
     /** Adds the tag if the value is well-defined */
     public static void addAtonTag(List<AtonTag> tags, String key, Object val) {
         String str = val != null ? val.toString() : null;
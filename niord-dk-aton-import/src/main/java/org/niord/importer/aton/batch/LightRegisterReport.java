@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.model.IJsonSerializable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The result of validating a light register with {@linkplain DkLightRegisterValidator}
+ */
+@SuppressWarnings("unused")
+public class LightRegisterReport implements IJsonSerializable {
+
+    String fileName;
+    int rowCount;
+    int activeRowCount;
+    int validLightCount;
+    int sectoredLightCount;
+    int validFogSignalCount;
+    int invalidRowCount;
+    long durationMs;
+    Map<String, Integer> lightCharacters = new TreeMap<>();
+    Map<String, Integer> fogSignalCategories = new TreeMap<>();
+    List<Failure> failures = new ArrayList<>();
+
+
+    /**
+     * A light register field that could not be parsed
+     */
+    public static class Failure implements IJsonSerializable {
+
+        int row;
+        String lightNumber;
+        String field;
+        String value;
+        String message;
+
+        /** Constructor **/
+        public Failure() {
+        }
+
+        /** Constructor **/
+        public Failure(int row, String lightNumber, String field, String value, String message) {
+            this.row = row;
+            this.lightNumber = lightNumber;
+            this.field = field;
+            this.value = value;
+            this.message = message;
+        }
+
+        /*************************/
+        /** Getters and Setters **/
+        /*************************/
+
+        public int getRow() {
+            return row;
+        }
+
+        public void setRow(int row) {
+            this.row = row;
+        }
+
+        public String getLightNumber() {
+            return lightNumber;
+        }
+
+        public void setLightNumber(String lightNumber) {
+            this.lightNumber = lightNumber;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public void setField(String field) {
+            this.field = field;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public int getActiveRowCount() {
+        return activeRowCount;
+    }
+
+    public void setActiveRowCount(int activeRowCount) {
+        this.activeRowCount = activeRowCount;
+    }
+
+    public int getValidLightCount() {
+        return validLightCount;
+    }
+
+    public void setValidLightCount(int validLightCount) {
+        this.validLightCount = validLightCount;
+    }
+
+    public int getSectoredLightCount() {
+        return sectoredLightCount;
+    }
+
+    public void setSectoredLightCount(int sectoredLightCount) {
+        this.sectoredLightCount = sectoredLightCount;
+    }
+
+    public int getValidFogSignalCount() {
+        return validFogSignalCount;
+    }
+
+    public void setValidFogSignalCount(int validFogSignalCount) {
+        this.validFogSignalCount = validFogSignalCount;
+    }
+
+    public int getInvalidRowCount() {
+        return invalidRowCount;
+    }
+
+    public void setInvalidRowCount(int invalidRowCount) {
+        this.invalidRowCount = invalidRowCount;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public Map<String, Integer> getLightCharacters() {
+        return lightCharacters;
+    }
+
+    public void setLightCharacters(Map<String, Integer> lightCharacters) {
+        this.lightCharacters = lightCharacters;
+    }
+
+    public Map<String, Integer> getFogSignalCategories() {
+        return fogSignalCategories;
+    }
+
+    public void setFogSignalCategories(Map<String, Integer> fogSignalCategories) {
+        this.fogSignalCategories = fogSignalCategories;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(List<Failure> failures) {
+        this.failures = failures;
+    }
+}
@@ -16,11 +16,13 @@
 package org.niord.importer.aton.batch;
 
 import org.apache.commons.lang.StringUtils;
+import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonTag;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -65,11 +67,15 @@ public class LightSeamark {
             return lc;
         }
 
+        private static final Map<String, Colour> BY_LC = new HashMap<>();
+        static {
+            for (Colour colour : values()) {
+                BY_LC.put(colour.lc, colour);
+            }
+        }
+
         public static Colour valueOfLc(String lc) {
-            return Arrays.stream(values())
-                    .filter(v -> v.toLc().equals(lc))
-                    .findFirst()
-                    .orElse(null);
+            return BY_LC.get(lc);
         }
     }
 
@@ -118,11 +124,34 @@ public class LightSeamark {
             return lc;
         }
 
+        private static final Map<String, Character> BY_LC = new HashMap<>();
+        private static final Character[][] COMPOSITES = new Character[values().length][values().length];
+        static {
+            for (Character character : values()) {
+                BY_LC.put(character.lc, character);
+            }
+
+            // Known OSM composite cases
+            COMPOSITES[Fl.ordinal()][LFl.ordinal()] = FlLFl;
+            COMPOSITES[Oc.ordinal()][Fl.ordinal()] = OcFl;
+            COMPOSITES[F.ordinal()][LFl.ordinal()] = FLFl;
+            COMPOSITES[Al.ordinal()][Oc.ordinal()] = Al_Oc;
+            COMPOSITES[Al.ordinal()][LFl.ordinal()] = Al_LFl;
+            COMPOSITES[Al.ordinal()][Fl.ordinal()] = Al_Fl;
+            COMPOSITES[Al.ordinal()][Gr.ordinal()] = Al_Gr;
+            COMPOSITES[Q.ordinal()][LFl.ordinal()] = Q_LFl;
+            COMPOSITES[VQ.ordinal()][LFl.ordinal()] = VQ_LFl;
+            COMPOSITES[UQ.ordinal()][LFl.ordinal()] = UQ_LFl;
+            COMPOSITES[Al.ordinal()][FFl.ordinal()] = Al_FFl;
+        }
+
         public static Character valueOfLc(String lc) {
-            return Arrays.stream(values())
-                    .filter(v -> v.toLc().equals(lc))
-                    .findFirst()
-                    .orElse(null);
+            return BY_LC.get(lc);
+        }
+
+        /** Returns the OSM composite character of the two phases, or null if not a known composite **/
+        public static Character valueOfComposite(Character p1, Character p2) {
+            return COMPOSITES[p1.ordinal()][p2.ordinal()];
         }
 
     }
@@ -199,16 +228,27 @@ public class LightSeamark {
         addAtonTag(tags, "seamark:light:exhibition", exhibition);
 
         for (int x = 0; x < sectors.size(); x++) {
-            String prefix = "seamark:light:";
-            if (sectors.size() > 1) {
-                prefix += String.valueOf(x + 1) + ":";
-            }
-            sectors.get(x).toOsm(tags, prefix);
+            sectors.get(x).toOsm(tags, LightSector.sectorKeys(sectors.size() > 1 ? x + 1 : 0));
         }
 
         return tags;
     }
 
+    /**
+     * Updates the AtoN with the OSM tags of this entity directly, in the same order as {@linkplain #toOsm()}
+     * @param aton the AtoN to update
+     */
+    public void toOsm(AtonNode aton) {
+
+        updateAtonTag(aton, "seamark:type", type);
+        updateAtonTag(aton, "seamark:light:category", category);
+        updateAtonTag(aton, "seamark:light:exhibition", exhibition);
+
+        for (int x = 0; x < sectors.size(); x++) {
+            sectors.get(x).toOsm(aton, LightSector.sectorKeys(sectors.size() > 1 ? x + 1 : 0));
+        }
+    }
+
     /** Adds the tag if the value is well-defined */
     public static void addAtonTag(List<AtonTag> tags, String key, Object val) {
         String str = val != null ? val.toString() : null;
@@ -217,6 +257,14 @@ public class LightSeamark {
         }
     }
 
+    /** Updates the AtoN tag if the value is well-defined */
+    public static void updateAtonTag(AtonNode aton, String key, Object val) {
+        String str = val != null ? val.toString() : null;
+        if (StringUtils.isNotBlank(str)) {
+            aton.updateTag(key, str);
+        }
+    }
+
     @Override
     public String toString() {
         return toOsm().toString();
@@ -267,6 +315,22 @@ public class LightSeamark {
      */
     public static class LightSector {
 
+        // The OSM light sector attributes, i.e. "seamark:light[:index]:<attribute>"
+        static final String[] ATTRIBUTES = {
+                "colour", "character", "height", "multiple", "range", "group",
+                "period", "sequence", "sector_start", "sector_end" };
+        static final int COLOUR = 0, CHARACTER = 1, HEIGHT = 2, MULTIPLE = 3, RANGE = 4, GROUP = 5,
+                PERIOD = 6, SEQUENCE = 7, SECTOR_START = 8, SECTOR_END = 9;
+
+        // Pre-built OSM keys for single-sector lights (index 0) and sector indexes up to 32
+        private static final String[][] SECTOR_KEYS = new String[33][];
+        static {
+            SECTOR_KEYS[0] = buildSectorKeys("seamark:light:");
+            for (int x = 1; x < SECTOR_KEYS.length; x++) {
+                SECTOR_KEYS[x] = buildSectorKeys("seamark:light:" + x + ":");
+            }
+        }
+
         // seamark:light:colour
         List<Colour> colours = new ArrayList<>();
 
@@ -306,22 +370,73 @@ public class LightSeamark {
             return s;
         }
 
-        /** Converts this entity to a list of AtoN tags **/
-        public void toOsm(List<AtonTag> tags, String prefix) {
+        /**
+         * Returns the OSM keys of the light sector attributes, in the order of {@linkplain #ATTRIBUTES}
+         * @param index the 1-based index of the sector, or 0 for a single-sector light
+         * @return the OSM keys of the light sector attributes
+         */
+        public static String[] sectorKeys(int index) {
+            return index < SECTOR_KEYS.length ? SECTOR_KEYS[index] : buildSectorKeys("seamark:light:" + index + ":");
+        }
 
-            String colour = colours.stream()
+        /** Builds the interned OSM keys of the light sector attributes for the given key prefix **/
+        private static String[] buildSectorKeys(String prefix) {
+            String[] keys = new String[ATTRIBUTES.length];
+            for (int x = 0; x < ATTRIBUTES.length; x++) {
+                keys[x] = (prefix + ATTRIBUTES[x]).intern();
+            }
+            return keys;
+        }
+
+        /** Returns the OSM value of the colours **/
+        private String colourValue() {
+            if (colours.size() == 1) {
+                return colours.get(0).toString();
+            }
+            return colours.stream()
                     .map(Colour::toString)
                     .collect(Collectors.joining(";"));
-            addAtonTag(tags, prefix + "colour", colour);
-            addAtonTag(tags, prefix + "character", character);
-            addAtonTag(tags, prefix + "height", height);
-            addAtonTag(tags, prefix + "multiple", multiple);
-            addAtonTag(tags, prefix + "range", range);
-            addAtonTag(tags, prefix + "group", group);
-            addAtonTag(tags, prefix + "period", period);
-            addAtonTag(tags, prefix + "sequence", sequence);
-            addAtonTag(tags, prefix + "sector_start", sectorStart);
-            addAtonTag(tags, prefix + "sector_end", sectorEnd);
+        }
+
+        /** Converts this entity to a list of AtoN tags **/
+        public void toOsm(List<AtonTag> tags, String prefix) {
+            toOsm(tags, buildSectorKeys(prefix));
+        }
+
+        /**
+         * Converts this entity to a list of AtoN tags
+         * @param tags the list of tags to add to
+         * @param keys the OSM keys of the sector attributes, as returned by {@linkplain #sectorKeys(int)}
+         */
+        public void toOsm(List<AtonTag> tags, String[] keys) {
+            addAtonTag(tags, keys[COLOUR], colourValue());
+            addAtonTag(tags, keys[CHARACTER], character);
+            addAtonTag(tags, keys[HEIGHT], height);
+            addAtonTag(tags, keys[MULTIPLE], multiple);
+            addAtonTag(tags, keys[RANGE], range);
+            addAtonTag(tags, keys[GROUP], group);
+            addAtonTag(tags, keys[PERIOD], period);
+            addAtonTag(tags, keys[SEQUENCE], sequence);
+            addAtonTag(tags, keys[SECTOR_START], sectorStart);
+            addAtonTag(tags, keys[SECTOR_END], sectorEnd);
+        }
+
+        /**
+         * Updates the AtoN with the OSM tags of this entity directly
+         * @param aton the AtoN to update
+         * @param keys the OSM keys of the sector attributes, as returned by {@linkplain #sectorKeys(int)}
+         */
+        public void toOsm(AtonNode aton, String[] keys) {
+            updateAtonTag(aton, keys[COLOUR], colourValue());
+            updateAtonTag(aton, keys[CHARACTER], character);
+            updateAtonTag(aton, keys[HEIGHT], height);
+            updateAtonTag(aton, keys[MULTIPLE], multiple);
+            updateAtonTag(aton, keys[RANGE], range);
+            updateAtonTag(aton, keys[GROUP], group);
+            updateAtonTag(aton, keys[PERIOD], period);
+            updateAtonTag(aton, keys[SEQUENCE], sequence);
+            updateAtonTag(aton, keys[SECTOR_START], sectorStart);
+            updateAtonTag(aton, keys[SECTOR_END], sectorEnd);
         }
 
         /*************************/
@@ -16,20 +16,32 @@
 package org.niord.importer.aton.batch;
 
 import org.niord.core.aton.AtonNode;
-import org.niord.core.aton.vo.AtonNodeVo;
+import org.niord.core.batch.BatchService;
+import org.niord.importer.batch.BatchImportMetrics;
 import org.slf4j.Logger;
 
 import javax.batch.api.chunk.AbstractItemWriter;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import java.io.StringWriter;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
- * Dummy no-op item writer that does not persist  the item.
+ * Dry-run item writer that does not persist the items.
+ * <p>
+ * Instead, the items are streamed to an OSM XML file in the batch job folder, and the location
+ * of the file is reported in the {@linkplain BatchImportMetrics} of the job.
+ * When used in a partitioned step, each partition writes its own OSM XML file.
+ * <p>
+ * The writer cannot be restarted. The items written before a failure are not checkpointed, so a
+ * restarted job would produce an incomplete OSM XML file. Instead, the path of the OSM XML file is
+ * used as the checkpoint, and opening the writer from a checkpoint fails. Start a new dry-run instead.
  *
  * Useful for development purposes.
  */
@@ -39,28 +51,64 @@ public class NoopAtonImportItemWriter extends AbstractItemWriter {
     @Inject
     Logger log;
 
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    StepContext stepContext;
+
+    @Inject
+    BatchService batchService;
+
+    Path file;
+    OutputStream out;
+    OsmXmlWriter osm;
+
+
     /** {@inheritDoc} */
     @Override
-    public void writeItems(List<Object> items) throws Exception {
+    public void open(Serializable checkpoint) throws Exception {
+        if (checkpoint != null) {
+            throw new IllegalStateException("A dry-run cannot be restarted, since the AtoNs written to "
+                    + checkpoint + " would be lost. Start a new dry-run instead.");
+        }
+
+        Path folder = batchService.getBatchJobDataFile(jobContext.getInstanceId()).getParent();
+        file = Files.createTempFile(folder, stepContext.getStepName() + "-", ".osm");
+        out = new BufferedOutputStream(Files.newOutputStream(file));
+        osm = new OsmXmlWriter(out);
+
+        String location = file.toString();
+        BatchImportMetrics.forJob(jobContext).gauge("osmFile." + file.getFileName(), () -> location);
+        log.info("Writing dry-run AtoNs to " + file);
+    }
+
 
+    /** {@inheritDoc} */
+    @Override
+    public void writeItems(List<Object> items) throws Exception {
         for (Object i : items) {
-            AtonNode aton = (AtonNode) i;
-            log.info("\n== Ignoring AtonItem ==\n" + printResult(aton.toVo()));
+            osm.write(((AtonNode) i).toVo());
         }
+        osm.flush();
     }
 
-    /** Formats the aton as XML */
-    private String printResult(AtonNodeVo aton) {
 
-        StringWriter w = new StringWriter();
-        try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(AtonNodeVo.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            marshaller.marshal(aton, w);
-        } catch (JAXBException ignored) {
-        }
-        return w.toString();
+    /** Returns the path of the OSM XML file, which prevents the writer from being restarted */
+    @Override
+    public Serializable checkpointInfo() throws Exception {
+        return file != null ? file.toString() : null;
     }
 
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws Exception {
+        if (osm != null) {
+            osm.close();
+            out.close();
+            log.info("Wrote " + osm.getNodeNo() + " dry-run AtoNs to " + file);
+            osm = null;
+        }
+    }
 }
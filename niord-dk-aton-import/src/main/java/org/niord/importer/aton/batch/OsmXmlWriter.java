@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.aton.vo.AtonNodeVo;
+import org.niord.core.aton.vo.AtonOsmVo;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams AtoN nodes to an OSM XML document.
+ * <p>
+ * The "osm" root element is written using StAX, and each node is marshalled as a fragment
+ * using a single, shared {@linkplain JAXBContext}, so that arbitrarily many nodes can be written
+ * without holding them in memory.
+ */
+public class OsmXmlWriter implements Closeable {
+
+    public static final String OSM_VERSION = "1.0";
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
+    /** Lazily initialized, thread-safe JAXB context for the OSM value objects **/
+    private static class JaxbContextHolder {
+        static final JAXBContext CONTEXT;
+        static {
+            try {
+                CONTEXT = JAXBContext.newInstance(AtonOsmVo.class, AtonNodeVo.class);
+            } catch (JAXBException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    final XMLStreamWriter xml;
+    final Marshaller marshaller;
+    int nodeNo;
+
+
+    /**
+     * Constructor. Writes the start of the OSM XML document to the output stream.
+     * The output stream is not closed by {@linkplain #close()}.
+     * @param out the output stream
+     */
+    public OsmXmlWriter(OutputStream out) throws JAXBException, XMLStreamException {
+        marshaller = getJaxbContext().createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+
+        xml = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeStartElement("osm");
+        xml.writeAttribute("version", OSM_VERSION);
+    }
+
+
+    /**
+     * Returns the shared JAXB context for the OSM value objects
+     * @return the shared JAXB context for the OSM value objects
+     */
+    public static JAXBContext getJaxbContext() {
+        return JaxbContextHolder.CONTEXT;
+    }
+
+
+    /**
+     * Writes the AtoN node to the OSM XML document
+     * @param node the AtoN node to write
+     */
+    public void write(AtonNodeVo node) throws JAXBException {
+        marshaller.marshal(node, xml);
+        nodeNo++;
+    }
+
+
+    /**
+     * Flushes the written nodes to the output stream
+     */
+    public void flush() throws XMLStreamException {
+        xml.flush();
+    }
+
+
+    /**
+     * Returns the number of nodes written
+     * @return the number of nodes written
+     */
+    public int getNodeNo() {
+        return nodeNo;
+    }
+
+
+    /**
+     * Writes the end of the OSM XML document
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed closing OSM XML document", e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DimensionsRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactory;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the rows of the first sheet of an Excel (.xls) file using the low-level POI HSSF record API.
+ * <p>
+ * As opposed to loading the entire workbook into a {@code HSSFWorkbook}, only the shared string table
+ * and the current row are kept in memory. Each row is materialized in a private single-row scratch sheet,
+ * so that the returned {@code Row} instances can be handled exactly like rows of a fully loaded workbook.
+ * <p>
+ * A returned row is only valid until the next call to {@code next()}.
+ * <p>
+ * The cells of the scratch sheet do not retain the original cell styles. However, numeric cells whose
+ * original data format is a date format are given a date style, so that
+ * {@code DateUtil.isCellDateFormatted()} yields the same result as for a fully loaded workbook.
+ * <p>
+ * Note: Date cells are resolved using the 1900 date windowing of the scratch workbook.
+ */
+public class StreamingExcelRowIterator implements Iterator<Row>, Closeable {
+
+    private final NPOIFSFileSystem fs;
+    private final InputStream workbookStream;
+    private final RecordFactoryInputStream recordStream;
+    private final HSSFSheet scratchSheet;
+    private final HSSFCellStyle dateStyle;
+    private final Map<Integer, String> formats = new HashMap<>();
+    private final List<Boolean> dateXfs = new ArrayList<>();
+
+    private SSTRecord sst;
+    private int totalRowNo;
+    private boolean sheetEnded;
+    private Record pendingRecord;
+    private Row currentRow;
+    private Row nextRow;
+    private Cell lastFormulaCell;
+
+    /**
+     * Opens the Excel file and positions the record stream at the start of the first sheet
+     * @param path the path to the Excel file
+     */
+    public StreamingExcelRowIterator(Path path) throws IOException {
+        fs = new NPOIFSFileSystem(path.toFile(), true);
+        try {
+            workbookStream = fs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot()));
+            recordStream = new RecordFactoryInputStream(workbookStream, false);
+            HSSFWorkbook scratchWorkbook = new HSSFWorkbook();
+            scratchSheet = scratchWorkbook.createSheet();
+            dateStyle = scratchWorkbook.createCellStyle();
+            dateStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy"));
+            seekFirstSheet();
+        } catch (IOException | RuntimeException e) {
+            fs.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns the index of the last row of the sheet, as defined by the sheet dimensions.
+     * Corresponds to {@code HSSFSheet.getLastRowNum()}.
+     * @return the index of the last row of the sheet
+     */
+    public int getTotalRowNo() {
+        return totalRowNo;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null) {
+            nextRow = readRow();
+        }
+        return nextRow != null;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        currentRow = nextRow;
+        nextRow = null;
+        return currentRow;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws IOException {
+        try {
+            workbookStream.close();
+        } finally {
+            fs.close();
+        }
+    }
+
+
+    /**
+     * Reads the workbook globals, i.e. the shared string table and the cell formats,
+     * and stops at the beginning of the first sheet
+     */
+    private void seekFirstSheet() {
+        Record r;
+        while ((r = recordStream.nextRecord()) != null) {
+            if (r instanceof SSTRecord) {
+                sst = (SSTRecord) r;
+            } else if (r instanceof FormatRecord) {
+                FormatRecord fr = (FormatRecord) r;
+                formats.put(fr.getIndexCode(), fr.getFormatString());
+            } else if (r instanceof ExtendedFormatRecord) {
+                // Format records precede the extended format records
+                int formatIndex = ((ExtendedFormatRecord) r).getFormatIndex();
+                String format = formats.containsKey(formatIndex)
+                        ? formats.get(formatIndex)
+                        : BuiltinFormats.getBuiltinFormat(formatIndex);
+                dateXfs.add(format != null && DateUtil.isADateFormat(formatIndex, format));
+            } else if (r instanceof BOFRecord && ((BOFRecord) r).getType() == BOFRecord.TYPE_WORKSHEET) {
+                return;
+            }
+        }
+        sheetEnded = true;
+    }
+
+
+    /**
+     * Reads all cell records of the next row into the scratch sheet
+     * @return the next row, or null if the end of the first sheet has been reached
+     */
+    private Row readRow() {
+        if (sheetEnded) {
+            return null;
+        }
+
+        // Release the previously returned row from the scratch sheet
+        if (currentRow != null) {
+            scratchSheet.removeRow(currentRow);
+            currentRow = null;
+        }
+
+        Row row = null;
+        Record r;
+        while ((r = nextRecord()) != null) {
+
+            if (r instanceof EOFRecord) {
+                sheetEnded = true;
+                break;
+
+            } else if (r instanceof DimensionsRecord) {
+                totalRowNo = Math.max(0, ((DimensionsRecord) r).getLastRow() - 1);
+
+            } else if (r instanceof MulBlankRecord) {
+                // Expand to individual blank cell records
+                BlankRecord[] blanks = RecordFactory.convertBlankRecords((MulBlankRecord) r);
+                if (row != null && blanks[0].getRow() != row.getRowNum()) {
+                    pendingRecord = r;
+                    break;
+                }
+                for (BlankRecord blank : blanks) {
+                    row = addCell(row, blank);
+                }
+
+            } else if (r instanceof CellValueRecordInterface) {
+                if (row != null && ((CellValueRecordInterface) r).getRow() != row.getRowNum()) {
+                    pendingRecord = r;
+                    break;
+                }
+                row = addCell(row, r);
+
+            } else if (r instanceof StringRecord && lastFormulaCell != null) {
+                // The cached string result of the preceding formula record
+                lastFormulaCell.setCellValue(((StringRecord) r).getString());
+                lastFormulaCell = null;
+            }
+        }
+
+        return row;
+    }
+
+
+    /** Returns the next record, starting with any record pushed back by the previous row */
+    private Record nextRecord() {
+        if (pendingRecord != null) {
+            Record r = pendingRecord;
+            pendingRecord = null;
+            return r;
+        }
+        return recordStream.nextRecord();
+    }
+
+
+    /**
+     * Adds the cell value record to the given row, creating the row if undefined
+     * @param row the row to add the cell to
+     * @param r the cell value record
+     * @return the row
+     */
+    private Row addCell(Row row, Record r) {
+        CellValueRecordInterface cv = (CellValueRecordInterface) r;
+        if (row == null) {
+            row = scratchSheet.createRow(cv.getRow());
+        }
+        Cell cell = row.createCell(cv.getColumn());
+        lastFormulaCell = null;
+
+        if (r instanceof NumberRecord) {
+            cell.setCellValue(((NumberRecord) r).getValue());
+            applyDateStyle(cell, cv);
+
+        } else if (r instanceof LabelSSTRecord) {
+            cell.setCellValue(sst.getString(((LabelSSTRecord) r).getSSTIndex()).getString());
+
+        } else if (r instanceof LabelRecord) {
+            cell.setCellValue(((LabelRecord) r).getValue());
+
+        } else if (r instanceof BoolErrRecord && ((BoolErrRecord) r).isBoolean()) {
+            cell.setCellValue(((BoolErrRecord) r).getBooleanValue());
+
+        } else if (r instanceof FormulaRecord) {
+            FormulaRecord fr = (FormulaRecord) r;
+            if (fr.hasCachedResultString()) {
+                // The value is defined by a subsequent StringRecord
+                lastFormulaCell = cell;
+            } else if (fr.getCachedResultType() == Cell.CELL_TYPE_NUMERIC) {
+                cell.setCellValue(fr.getValue());
+                applyDateStyle(cell, cv);
+            } else if (fr.getCachedResultType() == Cell.CELL_TYPE_BOOLEAN) {
+                cell.setCellValue(fr.getCachedBooleanValue());
+            }
+        }
+        // Blank and error cells are left as blank cells
+
+        return row;
+    }
+
+
+    /**
+     * Applies the date style to the numeric cell if the extended format of the cell value record is a date format
+     * @param cell the numeric cell
+     * @param cv the cell value record
+     */
+    private void applyDateStyle(Cell cell, CellValueRecordInterface cv) {
+        int xfIndex = cv.getXFIndex();
+        if (xfIndex < dateXfs.size() && dateXfs.get(xfIndex)) {
+            cell.setCellStyle(dateStyle);
+        }
+    }
+}
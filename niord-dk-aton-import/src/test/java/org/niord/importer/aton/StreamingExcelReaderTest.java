@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton;
+
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.niord.importer.aton.batch.ExcelRowSidecar;
+import org.niord.importer.aton.batch.StreamingExcelRowIterator;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Compares the streaming Excel row reader and the row sidecar with the HSSFWorkbook-based reader
+ */
+public class StreamingExcelReaderTest {
+
+    static final String[] HEADER = { "AFMSTATION", "AFM_NAVN", "KARAKNR", "LATTITUDE", "LONGITUDE", "AJF_DATO", "Note" };
+    static final int ROW_NO = 20000;
+
+    static Path xlsFile;
+
+    @BeforeClass
+    public static void createExcelFile() throws Exception {
+        xlsFile = Files.createTempFile("aton-import-test", ".xls");
+
+        HSSFWorkbook workbook = new HSSFWorkbook();
+        HSSFSheet sheet = workbook.createSheet("AtoN");
+
+        Row header = sheet.createRow(0);
+        for (int c = 0; c < HEADER.length; c++) {
+            header.createCell(c).setCellValue(HEADER[c]);
+        }
+
+        HSSFCellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.createDataFormat().getFormat("dd-mm-yyyy"));
+
+        Date date = new Date(1451606400000L);
+        for (int r = 1; r <= ROW_NO; r++) {
+            Row row = sheet.createRow(r);
+            row.createCell(0).setCellValue("AFM-" + r);
+            row.createCell(1).setCellValue("Anduvningsfyr " + (r % 100));
+            row.createCell(2).setCellValue(13 + r % 5);
+            row.createCell(3).setCellValue(55.0 + r / 100000.0);
+            row.createCell(4).setCellValue(11.0 + r / 100000.0);
+            row.createCell(5).setCellValue(date);
+            row.getCell(5).setCellStyle(dateStyle);
+            if (r % 3 == 0) {
+                row.createCell(6);
+            }
+        }
+
+        try (OutputStream out = new FileOutputStream(xlsFile.toFile())) {
+            workbook.write(out);
+        }
+    }
+
+    @AfterClass
+    public static void deleteExcelFile() throws Exception {
+        Files.deleteIfExists(xlsFile);
+    }
+
+    @Test
+    public void testStreamingRowValues() throws Exception {
+
+        try (InputStream in = new FileInputStream(xlsFile.toFile());
+             StreamingExcelRowIterator streamingRows = new StreamingExcelRowIterator(xlsFile)) {
+
+            HSSFSheet sheet = new HSSFWorkbook(in).getSheetAt(0);
+            Iterator<Row> rows = sheet.iterator();
+
+            int rowNo = 0;
+            while (rows.hasNext()) {
+                Assert.assertTrue(streamingRows.hasNext());
+                Row row = rows.next();
+                Row streamingRow = streamingRows.next();
+
+                Assert.assertEquals(row.getRowNum(), streamingRow.getRowNum());
+                for (int c = 0; c < HEADER.length; c++) {
+                    assertCellEquals(row.getCell(c), streamingRow.getCell(c));
+                }
+                rowNo++;
+            }
+            Assert.assertFalse(streamingRows.hasNext());
+            Assert.assertEquals(ROW_NO + 1, rowNo);
+            Assert.assertEquals(sheet.getLastRowNum(), streamingRows.getTotalRowNo());
+        }
+    }
+
+    @Test
+    public void testSidecarSeek() throws Exception {
+
+        Path sidecarFile = ExcelRowSidecar.sidecarPath(xlsFile);
+        Map<String, Integer> colIndex = new HashMap<>();
+        for (int c = 0; c < HEADER.length; c++) {
+            colIndex.put(HEADER[c], c);
+        }
+
+        try (InputStream in = new FileInputStream(xlsFile.toFile());
+             StreamingExcelRowIterator streamingRows = new StreamingExcelRowIterator(xlsFile)) {
+
+            // Write the data rows to the sidecar
+            streamingRows.next();
+            ExcelRowSidecar.write(sidecarFile, colIndex, streamingRows.getTotalRowNo(), streamingRows);
+
+            HSSFSheet sheet = new HSSFWorkbook(in).getSheetAt(0);
+            try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(sidecarFile)) {
+                Assert.assertEquals(ROW_NO, sidecar.getRowCount());
+                Assert.assertEquals(sheet.getLastRowNum(), sidecar.getTotalRowNo());
+                Assert.assertEquals(colIndex, sidecar.getColIndex());
+
+                // Seek directly to various data rows
+                for (int r : new int[] { 0, 1, ROW_NO / 2, ROW_NO - 1 }) {
+                    Iterator<Row> rows = sidecar.rowIterator(r);
+                    Row row = rows.next();
+                    Assert.assertEquals(r + 1, row.getRowNum());
+                    for (int c = 0; c < HEADER.length; c++) {
+                        assertCellEquals(sheet.getRow(r + 1).getCell(c), row.getCell(c));
+                    }
+                }
+                Assert.assertFalse(sidecar.rowIterator(ROW_NO).hasNext());
+            }
+        } finally {
+            Files.deleteIfExists(sidecarFile);
+        }
+    }
+
+    @Test
+    public void testSidecarRowSubset() throws Exception {
+
+        Path sidecarFile = ExcelRowSidecar.sidecarPath(xlsFile);
+        Map<String, Integer> colIndex = new HashMap<>();
+        for (int c = 0; c < HEADER.length; c++) {
+            colIndex.put(HEADER[c], c);
+        }
+
+        try (StreamingExcelRowIterator streamingRows = new StreamingExcelRowIterator(xlsFile)) {
+            streamingRows.next();
+            ExcelRowSidecar.write(sidecarFile, colIndex, streamingRows.getTotalRowNo(), streamingRows);
+
+            // Read scattered rows directly, starting at the second row of the subset
+            int[] rows = { 5, 6, 100, ROW_NO - 1 };
+            try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(sidecarFile)) {
+                Iterator<Row> it = sidecar.rowIterator(rows, 1);
+                for (int x = 1; x < rows.length; x++) {
+                    Row row = it.next();
+                    Assert.assertEquals(rows[x] + 1, row.getRowNum());
+                    Assert.assertEquals("AFM-" + (rows[x] + 1), row.getCell(0).getStringCellValue());
+                }
+                Assert.assertFalse(it.hasNext());
+            }
+        } finally {
+            Files.deleteIfExists(sidecarFile);
+        }
+    }
+
+    @Test
+    public void testSidecarLongString() throws Exception {
+
+        // Excel caps cells at 32767 characters, but as UTF-8 this exceeds the 64 KB limit of writeUTF()
+        char[] chars = new char[32767];
+        Arrays.fill(chars, '\u20ac');
+        String note = new String(chars);
+
+        HSSFSheet sheet = new HSSFWorkbook().createSheet("AtoN");
+        for (int r = 1; r <= 3; r++) {
+            Row row = sheet.createRow(r);
+            row.createCell(0).setCellValue("AFM-" + r);
+            row.createCell(6).setCellValue(note);
+        }
+
+        Map<String, Integer> colIndex = new HashMap<>();
+        colIndex.put("AFMSTATION", 0);
+        colIndex.put("Note", 6);
+
+        Path sidecarFile = Files.createTempFile("aton-import-test", ExcelRowSidecar.SIDECAR_SUFFIX);
+        try {
+            ExcelRowSidecar.write(sidecarFile, colIndex, 3, sheet.iterator());
+            try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(sidecarFile)) {
+                Iterator<Row> rows = sidecar.rowIterator(1);
+                Row row = rows.next();
+                Assert.assertEquals("AFM-2", row.getCell(0).getStringCellValue());
+                Assert.assertEquals(note, row.getCell(6).getStringCellValue());
+                Assert.assertEquals(note, rows.next().getCell(6).getStringCellValue());
+                Assert.assertFalse(rows.hasNext());
+            }
+        } finally {
+            Files.deleteIfExists(sidecarFile);
+        }
+    }
+
+    /** Asserts that the two cells have the same value **/
+    private void assertCellEquals(Cell c1, Cell c2) {
+        if (c1 == null) {
+            Assert.assertNull(c2);
+            return;
+        }
+        Assert.assertNotNull(c2);
+        Assert.assertEquals(c1.getCellType(), c2.getCellType());
+        if (c1.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+            Assert.assertEquals(c1.getNumericCellValue(), c2.getNumericCellValue(), 0.0);
+            Assert.assertEquals(c1.getDateCellValue(), c2.getDateCellValue());
+            Assert.assertEquals(DateUtil.isCellDateFormatted(c1), DateUtil.isCellDateFormatted(c2));
+        } else {
+            Assert.assertEquals(c1.getStringCellValue(), c2.getStringCellValue());
+        }
+    }
+}
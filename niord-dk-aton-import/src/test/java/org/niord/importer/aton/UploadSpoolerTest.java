@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton;
+
+import org.apache.commons.fileupload.FileUploadBase.FileSizeLimitExceededException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.importer.aton.UploadSpooler.SpooledFile;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Test spooling uploaded files to disk
+ */
+public class UploadSpoolerTest {
+
+    @Test
+    public void testSpool() throws Exception {
+        Path dir = Files.createTempDirectory("upload-spooler-test");
+        try {
+            byte[] data = new byte[3 * (int) UploadSpooler.TRANSFER_SIZE + 17];
+            new Random(42).nextBytes(data);
+            String checksum = String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(data)));
+
+            // Exactly the max size
+            SpooledFile file = UploadSpooler.spool("C:\\afm\\Fyr.xls", new ByteArrayInputStream(data), dir, data.length);
+            Assert.assertEquals("Fyr.xls", file.getPath().getFileName().toString());
+            Assert.assertEquals(data.length, file.getSize());
+            Assert.assertEquals(checksum, file.getChecksum());
+            Assert.assertArrayEquals(data, Files.readAllBytes(file.getPath()));
+            UploadSpooler.delete(Collections.singletonList(file));
+
+            // Exceeding the max size
+            try {
+                UploadSpooler.spool("Fyr.xls", new ByteArrayInputStream(data), dir, data.length - 1);
+                Assert.fail("Max size not enforced");
+            } catch (FileSizeLimitExceededException expected) {
+            }
+
+            // Leading zeros of the checksum are kept
+            file = UploadSpooler.spool("Fyr.xls",
+                    new ByteArrayInputStream("afm-166".getBytes(StandardCharsets.UTF_8)), dir, data.length);
+            Assert.assertEquals("00a11ca7faa805d708ae3945a2ddb279", file.getChecksum());
+            UploadSpooler.delete(Collections.singletonList(file));
+
+            // All spooled files are deleted
+            Assert.assertEquals(0, Files.list(dir).count());
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+}
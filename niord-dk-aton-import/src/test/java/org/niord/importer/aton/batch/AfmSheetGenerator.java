@@ -0,0 +1,464 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates synthetic AFM Excel (.xls) sheets for benchmarks and import soak tests.
+ * <p>
+ * The generator is part of the test sources, and shared with the niord-dk-benchmarks module via the test-jar.
+ * <p>
+ * The header row of each sheet contains exactly the fields of the corresponding
+ * {@linkplain AfmSheet#getFields()}, and the values follow the distributions of the AFM registers,
+ * e.g. of the light characteristics, light sectors and "KARAKNR" codes. The light, AIS and RACON rows
+ * refer to the AtoNs of the AtoN sheet. The generated sheets only depend on the seed and row counts.
+ * <p>
+ * Usage: {@code AfmSheetGenerator <dir> [atonRows] [seed]}, which generates all AFM sheets in the
+ * given directory, with the row counts of the other sheets proportional to the AtoN row count.
+ */
+public class AfmSheetGenerator {
+
+    /** The maximum number of data rows of an .xls sheet **/
+    public static final int MAX_ROWS = SpreadsheetVersion.EXCEL97.getLastRowIndex();
+
+    public static final int DEFAULT_ATON_ROWS = 7000;
+    public static final long DEFAULT_SEED = 20161017L;
+
+    private static final long FIRST_DATE = 883612800000L; // 1998-01-01
+    private static final int DATE_RANGE_DAYS = 19 * 365;
+
+    /** The light colours of the light characteristics, e.g. "WRG" of "Iso.WRG.4s" **/
+    private static final Pattern LIGHT_COLOURS = Pattern.compile("[.)\\s](?<colours>[WRGY]+)(?=[.\\s]|$)");
+
+    static final String[] NAMES = {
+            "Hals Barre", "Skagen", "Hirtshals", "Anholt", "Gedser", "Drogden", "Hesselø", "Røsnæs", "Fornæs",
+            "Hanstholm", "Thyborøn", "Esbjerg", "Rønne", "Svaneke", "Kalundborg", "Korsør", "Nyborg", "Spodsbjerg",
+            "Stevns", "Møns Klint", "Helsingør", "Frederikshavn", "Grenaa", "Aarhus", "Vejle", "Fredericia" };
+
+    static final Distribution<String> WATERS = new Distribution<String>()
+            .add("Kattegat", 6).add("Skagerrak", 2).add("Nordsøen", 3).add("Storebælt", 4).add("Lillebælt", 3)
+            .add("Øresund", 4).add("Østersøen", 5).add("Limfjorden", 3);
+
+    /** "KARAKNR" codes, where each digit denotes an AtoN type **/
+    static final Distribution<Integer> KARAKNR = new Distribution<Integer>()
+            .add(1, 10).add(2, 12).add(3, 14).add(5, 8).add(6, 20).add(7, 16).add(12, 3).add(13, 3)
+            .add(15, 2).add(16, 2).add(17, 4).add(21, 2).add(23, 2).add(25, 2).add(27, 3).add(31, 2)
+            .add(35, 1).add(41, 1).add(51, 2).add(53, 1).add(54, 1).add(71, 2).add(72, 1).add(91, 1)
+            .add(104, 1).add(512, 1).add(714, 1).add(1245, 1);
+
+    static final Distribution<String> SHORT_DESCS = new Distribution<String>()
+            .add(null, 30).add("PORT m/top", 3).add("STAR m/top", 3).add("SPEC m/top", 1);
+
+    static final Distribution<String> LIGHT_CHARACTERS = new Distribution<String>()
+            .add("Fl.W.3s", 8).add("Fl.G.3s", 10).add("Fl.R.3s", 10).add("Fl(2)W.10s", 3).add("Fl(2)G.5s", 5)
+            .add("Fl(3)R.10s", 5).add("Iso.WRG.4s", 6).add("Iso.W.2s", 3).add("Oc.WRG.5s", 5)
+            .add("Oc(2)WRG.12s", 3).add("Oc.W.5s", 3).add("F.R", 8).add("F.G", 8).add("F.W", 4).add("F.WRG", 2)
+            .add("Q.W", 2).add("Q(3)W.10s", 2).add("Q(6)+LFl.W.15s", 1).add("Q(9)W.15s", 1).add("VQ(3)W.5s", 1)
+            .add("VQ(9)W.10s", 1).add("LFl.W.10s", 2).add("Al.WG.4s", 1).add("Al Fl.WR.4s", 1)
+            .add("Mo(A)W.6s", 1).add("Fl.Y.3s", 3).add("Fl(4)Y.12s", 1).add("Iso.R.2s", 2).add("2 F.R", 1)
+            .add("Fl(2+1)W.10s", 1).add("FFl.W.", 1).add("Gr.W", 1).add("IQ.G.", 1).add("Oc(3)W.15s. Dir.", 1);
+
+    static final Distribution<String> FOG_SIGNALS = new Distribution<String>()
+            .add(null, 92).add("HORN(3)30s   (2+2+2+2+2+20)", 2).add("HORN(2)60s (5+5+5+45)", 2)
+            .add("SIREN(1)30s   (5+25)", 1).add("Horn Mo(N)30s", 1).add("HORN   MO(U)30s   (0,75+1+0,75+1+2,5+24)", 1)
+            .add("TYFON(2)60s", 1).add("BELL.15s   (2,5+12,5)", 1).add("HORN", 1);
+
+    static final Distribution<String> STATUS = new Distribution<String>()
+            .add("DRIFT", 93).add("NEDLAGT", 5).add("PLANLAGT", 2);
+
+    static final Distribution<String> AIS_TYPES = new Distribution<String>()
+            .add("Reel", 5).add("Syntetisk", 2).add("Virituel", 3);
+
+    static final Distribution<String> RACON_SECTORS = new Distribution<String>()
+            .add("360°", 10).add("20°-280°", 2).add("0°-180°", 2).add("135°", 1).add("090°-270°", 2).add(null, 1);
+
+    static final Distribution<String> RACON_PERIODS = new Distribution<String>()
+            .add("60 s", 6).add("30 s", 2).add("60s", 2).add("90 s", 1).add("60", 1);
+
+    static final Distribution<String> RACON_BANDS = new Distribution<String>()
+            .add("3 & 10 cm", 6).add("3 cm", 3).add("10 cm", 1);
+
+    static final Distribution<Double> DGPS_FREQUENCIES = new Distribution<Double>()
+            .add(287.5, 1).add(296.5, 1).add(298.0, 1).add(302.5, 1);
+
+    private final Random random;
+    private final Map<AfmSheet, Integer> rowCounts = new EnumMap<>(AfmSheet.class);
+    private final List<String> descriptions;
+
+
+    /**
+     * Constructor
+     * @param seed the random seed
+     */
+    public AfmSheetGenerator(long seed) throws IOException {
+        this.random = new Random(seed);
+        this.descriptions = new ArrayList<>(new TreeSet<>(DkAtonTagMapping.load().getDescriptions()));
+        atonRows(DEFAULT_ATON_ROWS);
+    }
+
+
+    /**
+     * Sets the AtoN row count, along with row counts of the other sheets proportional to the AtoN row count
+     * @param atonRows the AtoN row count
+     * @return this
+     */
+    public AfmSheetGenerator atonRows(int atonRows) {
+        return rowCount(AfmSheet.ATON, atonRows)
+                .rowCount(AfmSheet.LIGHT, Math.max(atonRows / 5, 1))
+                .rowCount(AfmSheet.AIS, Math.max(atonRows / 60, 1))
+                .rowCount(AfmSheet.DGPS, Math.max(atonRows / 1000, 1))
+                .rowCount(AfmSheet.RACON, Math.max(atonRows / 150, 1));
+    }
+
+
+    /**
+     * Sets the row count of the given sheet
+     * @param sheet the AFM sheet
+     * @param rows the row count
+     * @return this
+     */
+    public AfmSheetGenerator rowCount(AfmSheet sheet, int rows) {
+        if (rows < 0 || rows > MAX_ROWS) {
+            throw new IllegalArgumentException("Invalid row count " + rows + " for " + sheet);
+        }
+        rowCounts.put(sheet, rows);
+        return this;
+    }
+
+
+    /**
+     * Generates all AFM sheets in the given directory
+     * @param dir the directory
+     * @return the paths of the generated sheets
+     */
+    public Map<AfmSheet, Path> generateAll(Path dir) throws Exception {
+        Map<AfmSheet, Path> paths = new EnumMap<>(AfmSheet.class);
+        for (AfmSheet sheet : AfmSheet.values()) {
+            paths.put(sheet, generate(sheet, dir.resolve(sheet.getFileName())));
+        }
+        return paths;
+    }
+
+
+    /**
+     * Generates the given AFM sheet
+     * @param sheet the AFM sheet
+     * @param path the path of the Excel file to generate
+     * @return the path
+     */
+    public Path generate(AfmSheet sheet, Path path) throws Exception {
+        String[] fields = sheet.getFields();
+        try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+            Sheet excelSheet = workbook.createSheet();
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd-mm-yyyy"));
+
+            Row headerRow = excelSheet.createRow(0);
+            for (int col = 0; col < fields.length; col++) {
+                headerRow.createCell(col).setCellValue(fields[col]);
+            }
+
+            Map<String, Object> values = new HashMap<>();
+            int rows = rowCounts.get(sheet);
+            for (int x = 0; x < rows; x++) {
+                values.clear();
+                generateRow(sheet, x, values);
+
+                Row row = excelSheet.createRow(x + 1);
+                for (int col = 0; col < fields.length; col++) {
+                    Object value = values.get(fields[col]);
+                    if (value == null) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(col);
+                    if (value instanceof Number) {
+                        cell.setCellValue(((Number) value).doubleValue());
+                    } else if (value instanceof Date) {
+                        cell.setCellValue((Date) value);
+                        cell.setCellStyle(dateStyle);
+                    } else {
+                        cell.setCellValue(value.toString());
+                    }
+                }
+            }
+
+            try (OutputStream out = Files.newOutputStream(path)) {
+                workbook.write(out);
+            }
+        }
+        return path;
+    }
+
+
+    /** Generates the values of the given row of the AFM sheet **/
+    private void generateRow(AfmSheet sheet, int x, Map<String, Object> values) {
+        switch (sheet) {
+            case ATON:  generateAtonRow(x, values); break;
+            case LIGHT: generateLightRow(x, values); break;
+            case AIS:   generateAisRow(x, values); break;
+            case DGPS:  generateDgpsRow(x, values); break;
+            case RACON: generateRaconRow(x, values); break;
+        }
+    }
+
+
+    /** Generates an AtoN row **/
+    private void generateAtonRow(int x, Map<String, Object> values) {
+        values.put("AFMSTATION", atonUid(x));
+        values.put("FYRLBNR_DK", random.nextInt(10) < 3 ? String.valueOf(1000 + random.nextInt(9000)) : null);
+        values.put("AFM_NAVN", name());
+        values.put("PLADSNAVN", pick(NAMES));
+        values.put("AFUFORKORTELSE", SHORT_DESCS.next(random));
+        values.put("BESKRIVELSE", descriptions.get(random.nextInt(descriptions.size())));
+        values.put("LATTITUDE", latitude());
+        values.put("LONGITUDE", longitude());
+        values.put("KARAKNR", KARAKNR.next(random));
+        values.put("EJER", "Søfartsstyrelsen");
+        values.put("AJF_BRUGER", "sfs");
+        values.put("AJF_DATO", date());
+    }
+
+
+    /** Generates a light row **/
+    private void generateLightRow(int x, Map<String, Object> values) {
+        String lightChar = LIGHT_CHARACTERS.next(random);
+        String colours = lightColours(lightChar);
+        boolean sectored = colours.length() > 1;
+
+        values.put("Farvand", WATERS.next(random));
+        values.put("Farvandsafsnit", "Farvand " + (1 + random.nextInt(40)));
+        values.put("NR_DK", String.valueOf(1000 + x));
+        values.put("NR_INT", "C " + (1000 + random.nextInt(9000)));
+        values.put("AFM_navn", name());
+        values.put("Lokalitet", pick(NAMES));
+        values.put("Fyrkarakter", lightChar);
+        values.put("Taagesignal", FOG_SIGNALS.next(random));
+        values.put("Flammehoejde_1", round(2 + random.nextDouble() * 58));
+        values.put("Flammehoejde_2", sectored ? round(2 + random.nextDouble() * 58) : null);
+        for (int c = 0; c < Math.min(colours.length(), 3); c++) {
+            values.put("Lysstyrke_" + (c + 1), colours.charAt(c) + " " + (2 + random.nextInt(17)));
+        }
+        values.put("Fyrudseende", random.nextInt(10) < 3 ? "Hvid firkantet bygning" : null);
+        values.put("Fyrbygnings_hoejde", random.nextInt(10) < 6 ? round(3 + random.nextDouble() * 37) : null);
+        values.put("Lysvinkler", sectored || random.nextInt(100) < 15 ? lightSectors(colours) : null);
+        values.put("Braendetid", random.nextInt(10) < 2 ? "Brændetid: H24" : null);
+        values.put("Ajourfoert_dato", date());
+        values.put("STATUS", STATUS.next(random));
+        values.put("AFM_NR", randomAtonUid());
+        values.put("LATITUDE", latitude());
+        values.put("LONGITUDE", longitude());
+    }
+
+
+    /** Generates an AIS row **/
+    private void generateAisRow(int x, Map<String, Object> values) {
+        values.put("NR_DK", 1 + x);
+        values.put("AFM_NR", random.nextInt(10) < 9 ? randomAtonUid() : null);
+        values.put("AFM_navn", name());
+        values.put("MMSI_NR", 992191000 + x);
+        values.put("Identifikation", pick(NAMES).toUpperCase(Locale.ROOT));
+        values.put("Type", AIS_TYPES.next(random));
+        values.put("STATUS", STATUS.next(random));
+        values.put("LATITUDE", latitude());
+        values.put("LONGITUDE", longitude());
+        values.put("Ajourfoert_dato", date());
+    }
+
+
+    /** Generates a DGPS row **/
+    private void generateDgpsRow(int x, Map<String, Object> values) {
+        values.put("NR_DK", 1 + x);
+        values.put("AFM_NR", null);
+        values.put("AFM_navn", name());
+        values.put("Frekvens_kHz", DGPS_FREQUENCIES.next(random));
+        values.put("Hastighed_Baud", random.nextBoolean() ? 100 : 200);
+        values.put("Reference_station_nr", 690 + x);
+        values.put("Sendestation_nr", 450 + x);
+        values.put("Raekkevide_sm", random.nextBoolean() ? 100 : 150);
+        values.put("Monitering", "Ja");
+        values.put("Meddelelses_typer", "1,3,5,7,9,16");
+        values.put("STATUS", STATUS.next(random));
+        values.put("LATITUDE", latitude());
+        values.put("LONGITUDE", longitude());
+        values.put("Ajourfoert_dato", date());
+    }
+
+
+    /** Generates a RACON row **/
+    private void generateRaconRow(int x, Map<String, Object> values) {
+        values.put("NR_DK", 1 + x);
+        values.put("NR_INT", 1000 + x);
+        values.put("AFM_NR", random.nextInt(10) < 9 ? randomAtonUid() : null);
+        values.put("AFM_navn", name());
+        values.put("Radarbaand", RACON_BANDS.next(random));
+        values.put("Identifikation", String.valueOf("TKDMNBOGCX".charAt(random.nextInt(10))));
+        values.put("Tidsinterval", RACON_PERIODS.next(random));
+        values.put("STATUS", STATUS.next(random));
+        values.put("LATITUDE", latitude());
+        values.put("LONGITUDE", longitude());
+        values.put("Ajourfoert_dato", date());
+        values.put("Retning_mod_fyret", RACON_SECTORS.next(random));
+    }
+
+
+    /*************************/
+    /** Value generation    **/
+    /*************************/
+
+    /** Returns the AtoN UID of the given AtoN row **/
+    static String atonUid(int x) {
+        return String.format("%d-%05d", 1 + x % 9, x + 1);
+    }
+
+
+    /** Returns the AtoN UID of a random row of the AtoN sheet **/
+    private String randomAtonUid() {
+        return atonUid(random.nextInt(Math.max(rowCounts.get(AfmSheet.ATON), 1)));
+    }
+
+
+    /** Returns the light colours of the light characteristics, e.g. "WRG" for "Iso.WRG.4s" **/
+    static String lightColours(String lightChar) {
+        Matcher m = LIGHT_COLOURS.matcher(lightChar);
+        return m.find() ? m.group("colours") : "W";
+    }
+
+
+    /** Returns light sectors with the given colours, e.g. "G114,52°-116,52° W116,52°-117,52° R117,52°-119,52°." **/
+    private String lightSectors(String colours) {
+        StringBuilder sectors = new StringBuilder();
+        double angle = random.nextDouble() * 200;
+        int sectorNo = colours.length() > 1 ? colours.length() : 2 + random.nextInt(3);
+        for (int s = 0; s < sectorNo; s++) {
+            double end = angle + 0.5 + random.nextDouble() * 40;
+            if (s > 0) {
+                sectors.append(' ');
+            }
+            sectors.append(colours.charAt(s % colours.length()))
+                    .append(angle(angle)).append("°-").append(angle(end)).append('°');
+            angle = end;
+        }
+        return sectors.append('.').toString();
+    }
+
+
+    /** Formats the angle, modulo 360°, with a decimal comma **/
+    static String angle(double angle) {
+        double degrees = (Math.round(angle * 100) % 36000) / 100.0;
+        return String.format(Locale.ROOT, "%.2f", degrees).replace('.', ',');
+    }
+
+
+    private String name() {
+        String name = pick(NAMES);
+        return random.nextBoolean() ? name + " " + (1 + random.nextInt(20)) : name;
+    }
+
+    private double latitude() {
+        return 54.6 + random.nextDouble() * 3.1;
+    }
+
+    private double longitude() {
+        return 8.1 + random.nextDouble() * 7.1;
+    }
+
+    private Date date() {
+        return new Date(FIRST_DATE + TimeUnit.DAYS.toMillis(random.nextInt(DATE_RANGE_DAYS)));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+
+    /**
+     * A weighted distribution of values
+     */
+    static class Distribution<T> {
+
+        private final List<T> values = new ArrayList<>();
+        private final List<Integer> cumulativeWeights = new ArrayList<>();
+        private int totalWeight;
+
+        /** Adds a value with the given weight **/
+        Distribution<T> add(T value, int weight) {
+            totalWeight += weight;
+            values.add(value);
+            cumulativeWeights.add(totalWeight);
+            return this;
+        }
+
+        /** Returns the next random value **/
+        T next(Random random) {
+            int w = random.nextInt(totalWeight);
+            for (int x = 0; x < values.size(); x++) {
+                if (w < cumulativeWeights.get(x)) {
+                    return values.get(x);
+                }
+            }
+            throw new IllegalStateException("Invalid distribution");
+        }
+    }
+
+
+    /**
+     * Generates all AFM sheets.
+     * Usage: {@code AfmSheetGenerator <dir> [atonRows] [seed]}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: AfmSheetGenerator <dir> [atonRows] [seed]");
+            System.exit(1);
+        }
+
+        Path dir = Files.createDirectories(Paths.get(args[0]));
+        int atonRows = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ATON_ROWS;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        Map<AfmSheet, Path> paths = new AfmSheetGenerator(seed)
+                .atonRows(atonRows)
+                .generateAll(dir);
+        paths.forEach((sheet, path) -> System.out.println("Generated " + sheet + " sheet " + path));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Test the AFM sheets of a combined import
+ */
+public class AfmSheetTest {
+
+    @Test
+    public void testSheetOfFileName() {
+        Assert.assertEquals(AfmSheet.ATON, AfmSheet.of("AFMmyndighed_table_2016.xls"));
+        Assert.assertEquals(AfmSheet.LIGHT, AfmSheet.of("Fyr.xls"));
+        Assert.assertEquals(AfmSheet.RACON, AfmSheet.of("racon-export.XLS"));
+        Assert.assertNull(AfmSheet.of("Fyr.xlsx"));
+        Assert.assertNull(AfmSheet.of("navtex.xls"));
+    }
+
+
+    @Test
+    public void testSheetPath() {
+        Properties properties = new Properties();
+        properties.put(AfmSheet.ATON.getPathProperty(), "/data/afm-import-1/aton.xls");
+
+        // Sheets are optional in a combined import
+        Assert.assertEquals(Paths.get("/data/afm-import-1/aton.xls"), AfmSheet.ATON.path(properties));
+        Assert.assertNull(AfmSheet.LIGHT.path(properties));
+        Assert.assertNull(AfmSheet.ATON.path(null));
+    }
+}
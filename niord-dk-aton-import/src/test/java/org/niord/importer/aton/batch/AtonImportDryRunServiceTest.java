@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonTag;
+import org.niord.importer.aton.batch.AtonImportDiff.AtonChange;
+import org.niord.importer.aton.batch.AtonImportDiff.ChangeType;
+import org.niord.importer.aton.batch.AtonImportDiff.SheetResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Test classifying the AtoNs of a dry-run import against an in-memory snapshot
+ */
+public class AtonImportDryRunServiceTest {
+
+    @Test
+    public void testDiff() {
+        Map<String, AtonNode> snapshot = new HashMap<>();
+        for (AtonNode aton : Arrays.asList(
+                aton("1-0001", "red"), aton("1-0002", "red"), aton("1-0004", "white"), aton("dgps-4", null))) {
+            snapshot.put(aton.getAtonUid(), aton);
+        }
+
+        AtonImportDiff diff = new AtonImportDiff();
+        SheetResult result = new SheetResult(AfmSheet.ATON, "afmmyndighed_table.xls");
+        AbstractDkAtonImportProcessor processor = new BatchDkAtonImportProcessor();
+        for (AtonNode aton : Arrays.asList(aton("1-0001", "red"), aton("1-0002", "green"), aton("1-0003", "red"))) {
+            AtonImportDryRunService.apply(AfmSheet.ATON, processor, aton, snapshot, result, diff);
+        }
+        AtonImportDryRunService.addRemovals(
+                snapshot, new HashSet<>(Arrays.asList("1-0001", "1-0002", "1-0003")), result, diff);
+
+        Assert.assertEquals(1, result.getAddedCount());
+        Assert.assertEquals(1, result.getChangedCount());
+        Assert.assertEquals(1, result.getUnchangedCount());
+        Assert.assertEquals(1, result.getRemovedCount());
+        Assert.assertEquals(3, diff.getChanges().size());
+
+        AtonChange changed = diff.getChanges().get(0);
+        Assert.assertEquals("1-0002", changed.getAtonUid());
+        Assert.assertEquals(ChangeType.CHANGED, changed.getType());
+        Assert.assertEquals(Collections.singletonMap("seamark:light:colour", "red"), changed.getOldValues());
+        Assert.assertEquals(Collections.singletonMap("seamark:light:colour", "green"), changed.getNewValues());
+        Assert.assertEquals("green", snapshot.get("1-0002").getTagValue("seamark:light:colour"));
+
+        AtonChange added = diff.getChanges().get(1);
+        Assert.assertEquals("1-0003", added.getAtonUid());
+        Assert.assertEquals(ChangeType.ADDED, added.getType());
+        Assert.assertTrue(added.getOldValues().isEmpty());
+        Assert.assertEquals("red", added.getNewValues().get("seamark:light:colour"));
+
+        // DGPS stations are created by another sheet and are not removed
+        AtonChange removed = diff.getChanges().get(2);
+        Assert.assertEquals("1-0004", removed.getAtonUid());
+        Assert.assertEquals(ChangeType.REMOVED, removed.getType());
+        Assert.assertEquals("white", removed.getOldValues().get("seamark:light:colour"));
+        Assert.assertTrue(removed.getNewValues().isEmpty());
+    }
+
+    /** Creates a visible AtoN with the given UID and light colour **/
+    private AtonNode aton(String atonUid, String colour) {
+        AtonNode aton = new AtonNode();
+        aton.setVisible(true);
+        aton.setLat(56.0);
+        aton.setLon(11.0);
+        aton.updateTag(AtonTag.TAG_ATON_UID, atonUid);
+        if (colour != null) {
+            aton.updateTag("seamark:light:colour", colour);
+        }
+        return aton;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonTag;
+
+import java.util.Arrays;
+
+/**
+ * Test looking up existing AtoNs from the AtoN import index
+ */
+public class AtonImportIndexTest {
+
+    @Test
+    public void testIndexLookup() {
+        AtonNode buoy = aton("aton-buoy");
+        AtonNode light = aton("aton-light");
+        AtonImportIndex index = new AtonImportIndex(Arrays.asList(buoy, light, new AtonNode()));
+        Assert.assertEquals(2, index.size());
+
+        // The index holds copies of the AtoNs
+        AtonNode buoySnapshot = index.find("aton-buoy");
+        Assert.assertNotSame(buoy, buoySnapshot);
+        Assert.assertEquals("aton-buoy", buoySnapshot.getAtonUid());
+        Assert.assertEquals("aton-light", index.find("aton-light").getAtonUid());
+        Assert.assertNull(index.find("aton-new"));
+        Assert.assertNull(index.find(null));
+
+        // Modifying the original AtoN, e.g. in a rolled back chunk, does not affect the index
+        buoy.updateTag("seamark:name", "Modified");
+        Assert.assertNull(index.find("aton-buoy").getTagValue("seamark:name"));
+
+        // Written AtoNs must be looked up from the database
+        index.written("aton-light");
+        index.written("aton-new");
+        Assert.assertEquals(1, index.size());
+        Assert.assertTrue(index.isWritten("aton-light"));
+        Assert.assertTrue(index.isWritten("aton-new"));
+        Assert.assertFalse(index.isWritten("aton-buoy"));
+        Assert.assertNull(index.find("aton-light"));
+        Assert.assertNotNull(index.find("aton-buoy"));
+    }
+
+    private AtonNode aton(String atonUid) {
+        AtonNode aton = new AtonNode();
+        aton.updateTag(AtonTag.TAG_ATON_UID, atonUid);
+        return aton;
+    }
+}
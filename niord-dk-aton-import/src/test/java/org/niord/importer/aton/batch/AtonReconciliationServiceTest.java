@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test computing the AtoNs missing from the last AtoN import
+ */
+public class AtonReconciliationServiceTest {
+
+    @Test
+    public void testFindMissing() {
+        List<Object[]> persisted = Arrays.asList(
+                new Object[] { 1, "1-0001" },
+                new Object[] { 2, "1-0002" },
+                new Object[] { 3, "dgps-4" },
+                new Object[] { 4, "light-2003" },
+                new Object[] { 5, "2-0003" });
+        Set<String> importedUids = new HashSet<>(Arrays.asList("1-0001", "2-0003"));
+
+        List<String> missingUids = new ArrayList<>();
+        List<Integer> missingIds = AtonReconciliationService.findMissing(persisted, importedUids, missingUids);
+
+        // DGPS stations and lights without AFM_NR are created by other sheets and must survive
+        Assert.assertEquals(Arrays.asList(2), missingIds);
+        Assert.assertEquals(Arrays.asList("1-0002"), missingUids);
+    }
+}
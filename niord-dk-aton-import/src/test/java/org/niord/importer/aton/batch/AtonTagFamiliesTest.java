@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonTag;
+
+import java.util.stream.Collectors;
+
+/**
+ * Test merging AtoN tag families
+ */
+public class AtonTagFamiliesTest {
+
+    @Test
+    public void testTagFamilies() {
+        AtonTagFamilies families = new AtonTagFamilies("seamark:light", "seamark:fog_signal");
+        int light = families.mask("seamark:light");
+        int fogSignal = families.mask("seamark:fog_signal");
+
+        AtonNode original = new AtonNode();
+        original.updateTag("seamark:type", "light_minor");
+        original.updateTag("seamark:light:1:colour", "red");
+        original.updateTag("seamark:light:2:colour", "green");
+        original.updateTag("seamark:light_3", "Iso.W.2s");
+        original.updateTag("seamark:fog_signal:category", "horn");
+        original.updateTag("seamark:light_vessel:colour", "red");
+        original.updateTag("seamark:name", "Anholt");
+
+        AtonNode aton = new AtonNode();
+        aton.updateTag("seamark:type", "light");
+        aton.updateTag("seamark:light:colour", "white");
+
+        Assert.assertEquals(light | fogSignal, families.familiesOf(original));
+        Assert.assertEquals(light, families.familiesOf(aton));
+        Assert.assertEquals(0, families.familiesOf("seamark:light_vessel:colour"));
+        Assert.assertEquals(light, families.familiesOf("seamark:light"));
+
+        families.removeFamilies(original, families.familiesOf(aton));
+        Assert.assertEquals("seamark:type, seamark:fog_signal:category, seamark:light_vessel:colour, seamark:name",
+                original.getTags().stream().map(AtonTag::getK).collect(Collectors.joining(", ")));
+
+        AtonTagFamilies.removeTag(aton, "seamark:type");
+        Assert.assertNull(aton.getTagValue("seamark:type"));
+        Assert.assertEquals("white", aton.getTagValue("seamark:light:colour"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnregisteredFamily() {
+        new AtonTagFamilies("seamark:light").mask("seamark:radio_station");
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.importer.aton.batch.BatchDkAtonImportProcessor.AtonType;
+
+import static org.niord.importer.aton.batch.BatchDkAtonImportProcessor.masterType;
+import static org.niord.importer.aton.batch.BatchDkAtonImportProcessor.parseType;
+
+/**
+ * Test parsing the "KARAKNR" field into AtoN types
+ */
+public class AtonTypeParsingTest {
+
+    @Test
+    public void testSingleTypes() {
+        AtonType[] types = {
+                AtonType.AIS, AtonType.LIGHT, AtonType.LIGHT_MINOR, AtonType.BEACON, AtonType.RACON,
+                AtonType.LIGHT_BUOY, AtonType.BUOY, AtonType.STAKE, AtonType.RADIO_BEACON, AtonType.FOG_SIGNAL
+        };
+        for (int code = 0; code < 10; code++) {
+            Assert.assertEquals(types[code], AtonType.findByCode(code));
+            Assert.assertEquals(1 << code, parseType(code));
+            Assert.assertEquals(types[code], masterType(parseType(code)));
+            Assert.assertTrue(types[code].isIn(parseType(code)));
+        }
+        Assert.assertNull(AtonType.findByCode(10));
+        Assert.assertNull(AtonType.findByCode(-1));
+    }
+
+    @Test
+    public void testCombinedTypes() {
+        int types = parseType(714);
+        Assert.assertTrue(AtonType.STAKE.isIn(types));
+        Assert.assertTrue(AtonType.LIGHT.isIn(types));
+        Assert.assertTrue(AtonType.RACON.isIn(types));
+        Assert.assertFalse(AtonType.AIS.isIn(types));
+        Assert.assertEquals(3, Integer.bitCount(types));
+
+        // Repeated digits
+        Assert.assertEquals(parseType(5), parseType(55));
+
+        // Master type resolution
+        Assert.assertEquals(AtonType.STAKE, masterType(parseType(71)));
+        Assert.assertEquals(AtonType.BEACON, masterType(parseType(731)));
+        Assert.assertEquals(AtonType.BUOY, masterType(parseType(65)));
+        Assert.assertEquals(AtonType.LIGHT, masterType(parseType(12)));
+        Assert.assertEquals(AtonType.LIGHT_MINOR, masterType(parseType(29)));
+        Assert.assertEquals(AtonType.LIGHT_BUOY, masterType(parseType(540)));
+        Assert.assertEquals(AtonType.AIS, masterType(parseType(9840)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidType() {
+        parseType(-13);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Test assigning the rows of an AFM sheet to partitions
+ */
+public class BatchDkAtonPartitionMapperTest {
+
+    @Test
+    public void testAssignRows() throws Exception {
+        int nrDk = ExcelRowSchema.fieldHandle(AfmSheet.LIGHT.getFields(), "NR_DK");
+        int afmNr = ExcelRowSchema.fieldHandle(AfmSheet.LIGHT.getFields(), "AFM_NR");
+        Map<String, Integer> colIndex = new HashMap<>();
+        colIndex.put("NR_DK", nrDk);
+        colIndex.put("AFM_NR", afmNr);
+
+        // Lights 1-1000, where every fourth light overlays one of 50 AtoNs
+        HSSFSheet sheet = new HSSFWorkbook().createSheet("fyr");
+        for (int r = 1; r <= 1000; r++) {
+            Row row = sheet.createRow(r);
+            row.createCell(nrDk).setCellValue(r);
+            if (r % 4 == 0) {
+                row.createCell(afmNr).setCellValue(r % 50);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("partition-test");
+        Path sidecarFile = dir.resolve("fyr.xls" + ExcelRowSidecar.SIDECAR_SUFFIX);
+        Path partitionsFile = BatchDkAtonPartitionMapper.partitionsPath(sidecarFile, 4);
+        try {
+            ExcelRowSidecar.write(sidecarFile, colIndex, 1000, sheet.iterator());
+            try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(sidecarFile)) {
+                BatchDkAtonPartitionMapper.writePartitions(
+                        partitionsFile, BatchDkAtonPartitionMapper.assignRows(sidecar, AfmSheet.LIGHT, 4));
+
+                // Every row is read by exactly one partition, and all rows of an AtoN by the same partition
+                int[] rowPartitions = new int[1000];
+                Map<Double, Integer> atonPartitions = new HashMap<>();
+                for (int p = 0; p < 4; p++) {
+                    int[] rows = BatchDkAtonPartitionMapper.readPartition(partitionsFile, p);
+                    Assert.assertTrue(rows.length > 0);
+                    for (Iterator<Row> it = sidecar.rowIterator(rows, 0); it.hasNext(); ) {
+                        Row row = it.next();
+                        int r = row.getRowNum() - 1;
+                        Assert.assertEquals(0, rowPartitions[r]);
+                        rowPartitions[r] = p + 1;
+                        if (row.getCell(afmNr) != null) {
+                            Integer partition = atonPartitions.putIfAbsent(row.getCell(afmNr).getNumericCellValue(), p);
+                            Assert.assertTrue(partition == null || partition == p);
+                        }
+                    }
+                }
+                for (int partition : rowPartitions) {
+                    Assert.assertTrue(partition > 0);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(partitionsFile);
+            Files.deleteIfExists(sidecarFile);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
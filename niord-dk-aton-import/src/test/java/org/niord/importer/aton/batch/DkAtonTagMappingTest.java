@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.aton.AtonTag;
+import org.niord.importer.aton.batch.BatchDkAtonImportProcessor.AtonType;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test the AtoN tag mapping
+ */
+public class DkAtonTagMappingTest {
+
+    @Test
+    public void testDefaultMapping() throws Exception {
+        DkAtonTagMapping mapping = DkAtonTagMapping.load();
+
+        Assert.assertEquals(
+                "seamark:type=beacon_cardinal, seamark:beacon_cardinal:category=north, "
+                        + "seamark:beacon_cardinal:shape=pile, seamark:beacon_cardinal:colour=black;yellow, "
+                        + "seamark:beacon_cardinal:colour_pattern=horizontal, seamark:topmark:shape=2 cones up, "
+                        + "seamark:topmark:colour=black",
+                toString(mapping.getTags("Kompasafmærkning N for.", null, AtonType.STAKE)));
+        Assert.assertEquals(
+                "seamark:type=buoy_cardinal, seamark:buoy_cardinal:category=north, "
+                        + "seamark:buoy_cardinal:shape=pillar, seamark:buoy_cardinal:colour=black;yellow, "
+                        + "seamark:buoy_cardinal:colour_pattern=horizontal, seamark:topmark:shape=2 cones up, "
+                        + "seamark:topmark:colour=black",
+                toString(mapping.getTags("Kompasafmærkning N for.", null, AtonType.BUOY)));
+
+        // Stop rules and short descriptions
+        Assert.assertEquals(
+                "seamark:type=light_minor, seamark:light:colour=red",
+                toString(mapping.getTags("Bagbord sideafmærkning", "PORT m/top", AtonType.LIGHT)));
+        Assert.assertEquals(
+                "seamark:type=buoy_lateral, seamark:buoy_lateral:shape=can, seamark:buoy_lateral:category=port, "
+                        + "seamark:buoy_lateral:system=iala-a, seamark:buoy_lateral:colour=red, "
+                        + "seamark:topmark:shape=cylinder, seamark:topmark:colour=red",
+                toString(mapping.getTags("Bagbord sideafmærkning", "PORT m/top", AtonType.BUOY)));
+
+        // Blank values are skipped
+        Assert.assertEquals(
+                "seamark:type=beacon_special_purpose",
+                toString(mapping.getTags("Specialbåke", null, AtonType.BEACON)));
+        Assert.assertEquals(
+                "seamark:type=beacon_special_purpose, seamark:beacon_special_purpose:shape=stake",
+                toString(mapping.getTags("Specialbåke", null, AtonType.STAKE)));
+
+        // Aliases and unknown descriptions
+        Assert.assertEquals(
+                mapping.getTags("Grave-bagbåke", null, AtonType.BEACON),
+                mapping.getTags("Grave-forbåke", null, AtonType.BEACON));
+        Assert.assertTrue(mapping.getTags("Ukendt", null, AtonType.BEACON).isEmpty());
+        Assert.assertTrue(mapping.getTags("Vinkelfyr", null, AtonType.BUOY).isEmpty());
+    }
+
+    @Test
+    public void testInvalidMapping() throws Exception {
+        assertInvalid("{ \"A\": [ { \"tags\": { \"seamark:${type}:colour\": \"red\" } } ] }");
+        assertInvalid("{ \"A\": [ { \"master\": [ \"raft\" ], \"tags\": { \"seamark:type\": \"light\" } } ] }");
+        assertInvalid("{ \"A\": [ { \"colour\": \"red\", \"tags\": { \"seamark:type\": \"light\" } } ] }");
+        assertInvalid("{ \"A\": [ { \"tags\": { \"seamark:${shape}\": \"pile\" } } ] }");
+        assertInvalid("{ \"A\": \"B\" }");
+    }
+
+    private void assertInvalid(String json) throws Exception {
+        try {
+            DkAtonTagMapping.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("Expected invalid mapping " + json);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private String toString(List<AtonTag> tags) {
+        return tags.stream()
+                .map(t -> t.getK() + "=" + t.getV())
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.importer.aton.batch.FogSignalSeamark.Category;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+
+import static org.niord.importer.aton.batch.DkFogSignalParser.FOG_SIGNAL_FORMAT;
+import static org.niord.importer.aton.batch.DkFogSignalParser.GROUP_FORMAT;
+import static org.niord.importer.aton.batch.DkFogSignalParser.MORSE_FORMAT;
+
+/**
+ * Compares the fog signal tokenizer with the regular expression based parser
+ */
+public class DkFogSignalParserTest {
+
+    /** Taagesignal values in the format of the light register **/
+    static final String[] FOG_SIGNALS = {
+            "HORN(3)30s   (2+2+2+2+2+20)", "SIREN(1)30s   (5+25)", "BELL.15s   (2,5+12,5)",
+            "HORN   MO(U)30s   (0,75+1+0,75+1+2,5+24)", "HORN", "Horn(2)60s (5+5+5+45)", "TYFON(2)60s",
+            "NAUTOPHONE(1)20s", "DIAPHONE(2)60s   (3,5+1,5+3,5+51,5)", "WHISTLE", "GONG", "REED(4)60s",
+            "EXPLOSIVE(1)5m", "Horn Mo(N)30s", "HORN Mo(U) (3) 20S", "HORN (2)", "Sirene(2)", "Fløjte",
+            "HORN\n", "HORN(2)30s\r\n", "HORN\n(2)30s", "", " HORN", "HORN(2,5)", "HORN 12,5s", "HORN 12,s",
+            "HORNMO()30s", "ſiren", "sıren",
+    };
+
+    @Test
+    public void testFogSignalCorpus() {
+        for (String fogSignal : FOG_SIGNALS) {
+            assertSameResult(fogSignal);
+        }
+    }
+
+    @Test
+    public void testGeneratedFogSignals() {
+        String[] categories = { "HORN", "horn", "Siren", "wHiStLe", "BELL", "HOR", "gongs" };
+        String[] separators = { "", " ", ".", "   ", ". " };
+        String[] morse = { "", "Mo(U)", "MO(AB)", "mo(u)", "Mo()", "Mo(1)", "Mo(U" };
+        String[] groups = { "", "(3)", "(12)", "()", "(2+1)", "(3" };
+        String[] periods = { "", "30s", "2,5S", "1m", "10", "3,s", "1,25s" };
+        String[] tails = { "", "   (2+2+2+20)", "\n", "\r\n", "x\ny" };
+
+        Set<String> corpus = new LinkedHashSet<>();
+        Random random = new Random(20161017L);
+        for (String category : categories) {
+            for (String m : morse) {
+                for (String group : groups) {
+                    for (String period : periods) {
+                        corpus.add(category + pick(random, separators) + m + pick(random, separators) + group
+                                + pick(random, separators) + period + pick(random, tails));
+                    }
+                }
+            }
+        }
+
+        // Random strings over the fog signal alphabet
+        String alphabet = "HORNSIEBLWTGhornsieblwtgMmUu0123456789 .,()+\n";
+        for (int x = 0; x < 100000; x++) {
+            StringBuilder str = new StringBuilder(pick(random, categories));
+            int len = random.nextInt(12);
+            for (int c = 0; c < len; c++) {
+                str.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            corpus.add(str.toString());
+        }
+
+        corpus.forEach(this::assertSameResult);
+    }
+
+    @Test
+    public void testGroupFormat() {
+        Matcher m = GROUP_FORMAT.matcher("(12)");
+        Assert.assertTrue(m.matches());
+        Assert.assertEquals("12", m.group("group"));
+    }
+
+
+    /** Asserts that the tokenizer and the regular expression based parser yield the same fog signal **/
+    private void assertSameResult(String fogSignalSpec) {
+        String expected = parse(fogSignalSpec, DkFogSignalParserTest::parseWithRegex);
+        String actual = parse(fogSignalSpec, DkFogSignalParser::parseFogSignal);
+        Assert.assertEquals("Fog signal '" + fogSignalSpec + "'", expected, actual);
+    }
+
+
+    /** Parses the fog signal and returns a textual representation of the result **/
+    private String parse(String fogSignalSpec, BiFunction<FogSignalSeamark, String, FogSignalSeamark> parser) {
+        FogSignalSeamark fogSignal = DkFogSignalParser.newInstance();
+        parser.apply(fogSignal, fogSignalSpec);
+        return fogSignal.toOsm().toString();
+    }
+
+
+    private String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+
+    /** The original regular expression based fog signal parser **/
+    static FogSignalSeamark parseWithRegex(FogSignalSeamark fogSignal, String fogSignalSpec) {
+
+        Matcher m = FOG_SIGNAL_FORMAT.matcher(fogSignalSpec);
+
+        if (m.find()) {
+            String categorySpec = m.group("category");
+            String morseSpec = m.group("morse");
+            String groupSpec = m.group("group");
+            String periodSpec = m.group("period");
+
+            if (StringUtils.isBlank(categorySpec)) {
+                return fogSignal;
+            }
+            fogSignal.setCategory(Category.valueOf(categorySpec.toLowerCase()));
+
+            if (StringUtils.isNotBlank(morseSpec)) {
+                Matcher mm = MORSE_FORMAT.matcher(morseSpec);
+                if (mm.find()) {
+                    fogSignal.setGroup(mm.group("morse"));
+                }
+            }
+            if (StringUtils.isNotBlank(groupSpec)) {
+                fogSignal.setGroup(groupSpec.substring(1, groupSpec.length() - 1).trim());
+            }
+            if (StringUtils.isNotBlank(periodSpec)) {
+                fogSignal.setPeriod(Double.valueOf(periodSpec.substring(0, periodSpec.length() - 1).replace(',', '.')));
+            }
+        }
+        return fogSignal;
+    }
+}
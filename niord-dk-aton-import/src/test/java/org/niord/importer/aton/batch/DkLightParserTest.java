@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.importer.aton.batch.LightSeamark.Colour;
+import org.niord.importer.aton.batch.LightSeamark.LightSector;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+
+import static org.niord.importer.aton.batch.DkLightParser.LIGHT_CHARACTER_FORMAT;
+import static org.niord.importer.aton.batch.DkLightParser.LIGHT_FORMAT;
+import static org.niord.importer.aton.batch.DkLightParser.PHASE_FORMAT;
+import static org.niord.importer.aton.batch.LightSeamark.Character.*;
+
+/**
+ * Compares the light characteristics tokenizer with the regular expression based parser
+ */
+public class DkLightParserTest {
+
+    static final String[] LIGHT_CHARACTERISTICS = {
+            "Mo(U)15s", "Fl(2+1)W.10s", "Iso.WRG.4s", "Al Fl.WR.4s", "Fl.G.3s", "F.R", "VQ+LFl.R",
+            "Oc.WRG.5s", "2 Oc.W.R G.1,5s", "LFl.W.10s", "Q(6)+LFl.W.15s", "FFl.Y", "IVQ.R.", "Gr.W",
+            "Fl(3)WRG.10s. Dir.", "3 F.R", "Fl.Bu.1,5m", "Mo(A)Am.8s", "Oc(2)W 6s", "F.WR\n", "F.W\r\n", "F.W\nR",
+    };
+
+    static final String[] MULTIPLES = { "", "2 ", "12  ", "3", "99999999999 " };
+    static final String[] PHASES = { "F", "Fl", "FFl", "LFl", "Q", "VQ", "IQ", "IUQ", "UQ", "Iso", "Oc", "Al", "Mo", "Gr", "FF", "X" };
+    static final String[] SEPARATORS = { "", ".", " ", "+", ".." };
+    static final String[] GROUPS = { "", "(2)", "(2+1)", "(U)", "(2+)", "(", "()" };
+    static final String[] COLOURS = { "", "W", "WRG", "W.R G", "Bu", "Am.Y", "B", "WR." };
+    static final String[] PERIODS = { "", "4s", "1,5s", "2,5m", "10", "3,s", "1,25s", "0,3s", "12345678901234567s" };
+    static final String[] TAILS = { "", " ", ". Dir.", "\n", "\r\n", "x\ny", " " };
+
+
+    @Test
+    public void testKnownCharacteristics() {
+        for (String lightChar : LIGHT_CHARACTERISTICS) {
+            assertSameResult(lightChar);
+        }
+    }
+
+
+    @Test
+    public void testGeneratedCharacteristics() {
+        Set<String> corpus = new LinkedHashSet<>();
+        Random random = new Random(20161017L);
+
+        // Combine the light characteristic parts
+        for (String phase : PHASES) {
+            for (String group : GROUPS) {
+                for (String colours : COLOURS) {
+                    for (String period : PERIODS) {
+                        corpus.add(pick(random, MULTIPLES) + phase + pick(random, SEPARATORS) + group
+                                + pick(random, SEPARATORS) + colours + pick(random, SEPARATORS)
+                                + period + pick(random, TAILS));
+                    }
+                }
+            }
+        }
+        for (String phase1 : PHASES) {
+            for (String phase2 : PHASES) {
+                for (String separator : SEPARATORS) {
+                    corpus.add(phase1 + separator + phase2 + pick(random, SEPARATORS) + pick(random, COLOURS));
+                    for (String group : GROUPS) {
+                        for (String colours : COLOURS) {
+                            corpus.add(pick(random, MULTIPLES) + phase1 + separator + phase2 + group
+                                    + pick(random, SEPARATORS) + colours + pick(random, SEPARATORS)
+                                    + pick(random, PERIODS) + pick(random, TAILS));
+                        }
+                    }
+                }
+            }
+        }
+
+        // Random strings over the light characteristics alphabet
+        String alphabet = "FlLQVIUsoOcAMGrWRBuYm0123456789 .+(),_\n";
+        for (int x = 0; x < 100000; x++) {
+            StringBuilder str = new StringBuilder();
+            int len = random.nextInt(16);
+            for (int c = 0; c < len; c++) {
+                str.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            corpus.add(str.toString());
+        }
+
+        int valid = 0;
+        for (String lightChar : corpus) {
+            valid += assertSameResult(lightChar) ? 1 : 0;
+        }
+        // The corpus must also exercise valid light characteristics
+        Assert.assertTrue(valid > 0);
+    }
+
+
+    @Test
+    public void testSpecCache() {
+        String[] sectorAngles = {
+                "G020,9°-025,5° W025,5°-030° R030°-19,2° G119,2°-207,5° W207,5°-209,8° R209,8°-220,8°. ",
+                "G114,52°-116,52° W116,52°-117,52° R117,52°-119,52°.", "", "Ingen", null
+        };
+        DkLightSpecCache cache = new DkLightSpecCache(1000);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (String lightChar : LIGHT_CHARACTERISTICS) {
+                for (String sectors : sectorAngles) {
+                    LightSeamark expected = DkLightParser.newInstance();
+                    DkLightParser.parseLightCharacteristics(expected, lightChar);
+                    DkLightParser.parseHeight(expected, 12.0);
+                    DkLightParser.parseLightSectorAngles(expected, sectors);
+
+                    LightSeamark light = DkLightParser.newInstance();
+                    cache.parseLightCharacteristics(light, lightChar);
+                    DkLightParser.parseHeight(light, 12.0);
+                    cache.parseLightSectorAngles(light, sectors);
+                    Assert.assertEquals(expected.toOsm().toString(), light.toOsm().toString());
+
+                    // Modifying the parsed light must not affect the cached templates
+                    light.getSectors().forEach(s -> s.getColours().clear());
+                }
+            }
+        }
+
+        // Blank sector angles are not looked up
+        int lookupNo = 2 * LIGHT_CHARACTERISTICS.length * (sectorAngles.length + 3);
+        int missNo = LIGHT_CHARACTERISTICS.length + 3;
+        Assert.assertEquals(missNo, cache.getMisses());
+        Assert.assertEquals(lookupNo - missNo, cache.getHits());
+    }
+
+
+    /** Asserts that the tokenizer and the regular expression based parser yield the same light **/
+    private boolean assertSameResult(String lightChar) {
+        String expected = parse(lightChar, DkLightParserTest::parseWithRegex);
+        String actual = parse(lightChar, DkLightParser::parseLightCharacteristics);
+        Assert.assertEquals("Light characteristics '" + lightChar + "'", expected, actual);
+        return actual.contains(":character=");
+    }
+
+
+    /** Parses the light characteristics and returns a textual representation of the result **/
+    private String parse(String lightChar, BiFunction<LightSeamark, String, LightSeamark> parser) {
+        LightSeamark light = DkLightParser.newInstance();
+        try {
+            parser.apply(light, lightChar);
+        } catch (Exception e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+        return light.toOsm().stream()
+                .map(t -> t.getK() + "=" + t.getV())
+                .collect(Collectors.joining(", "));
+    }
+
+
+    private String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+
+    /** The original regular expression based light characteristics parser **/
+    static LightSeamark parseWithRegex(LightSeamark light, String lightChar) {
+
+        Matcher m = LIGHT_CHARACTER_FORMAT.matcher(lightChar);
+
+        if (m.find()) {
+            String multipleSpec = m.group("multiple");
+            String phaseSpec = m.group("phase");
+            String groupSpec = m.group("group");
+            String colorsSpec = m.group("colors");
+            String periodSpec = m.group("period");
+
+            if (StringUtils.isBlank(phaseSpec) || (!"Mo".equals(phaseSpec) && StringUtils.isBlank(colorsSpec))) {
+                return light;
+            }
+
+            LightSector sector = light.getSectors().get(0);
+
+            Matcher pm = PHASE_FORMAT.matcher(phaseSpec);
+            List<LightSeamark.Character> phases = new ArrayList<>();
+            while (pm.find()) {
+                phases.add(LightSeamark.Character.valueOfLc(pm.group("phase")));
+            }
+            if (phases.isEmpty() || phases.size() > 2) {
+                return light;
+            } else if (phases.size() == 1) {
+                sector.setCharacter(phases.get(0));
+            } else {
+                LightSeamark.Character p1 = phases.get(0);
+                LightSeamark.Character p2 = phases.get(1);
+                if (p1 == Fl && p2 == LFl) {
+                    sector.setCharacter(FlLFl);
+                } else if (p1 == Oc && p2 == Fl) {
+                    sector.setCharacter(OcFl);
+                } else if (p1 == F && p2 == LFl) {
+                    sector.setCharacter(FLFl);
+                } else if (p1 == Al && p2 == Oc) {
+                    sector.setCharacter(Al_Oc);
+                } else if (p1 == Al && p2 == LFl) {
+                    sector.setCharacter(Al_LFl);
+                } else if (p1 == Al && p2 == Fl) {
+                    sector.setCharacter(Al_Fl);
+                } else if (p1 == Al && p2 == Gr) {
+                    sector.setCharacter(Al_Gr);
+                } else if (p1 == Q && p2 == LFl) {
+                    sector.setCharacter(Q_LFl);
+                } else if (p1 == VQ && p2 == LFl) {
+                    sector.setCharacter(VQ_LFl);
+                } else if (p1 == UQ && p2 == LFl) {
+                    sector.setCharacter(UQ_LFl);
+                } else if (p1 == Al && p2 == FFl) {
+                    sector.setCharacter(Al_FFl);
+                }
+            }
+
+            if (StringUtils.isNotBlank(colorsSpec)) {
+                Matcher cm = LIGHT_FORMAT.matcher(colorsSpec);
+                while (cm.find()) {
+                    sector.getColours().add(Colour.valueOfLc(cm.group("color")));
+                }
+            }
+            if (StringUtils.isNotBlank(multipleSpec)) {
+                sector.setMultiple(Integer.valueOf(multipleSpec.trim()));
+            }
+            if (StringUtils.isNotBlank(groupSpec)) {
+                sector.setGroup(groupSpec.substring(1, groupSpec.length() - 1).trim());
+            }
+            if (StringUtils.isNotBlank(periodSpec)) {
+                sector.setPeriod(Double.valueOf(periodSpec.substring(0, periodSpec.length() - 1).replace(',', '.')));
+            }
+        }
+        return light;
+    }
+}
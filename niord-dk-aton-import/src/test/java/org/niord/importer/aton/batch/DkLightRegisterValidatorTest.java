@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test validating a light register Excel sheet
+ */
+public class DkLightRegisterValidatorTest {
+
+    static final String[] HEADER = { "NR_DK", "STATUS", "Fyrkarakter", "Lysvinkler", "Taagesignal" };
+
+    static final String[][] ROWS = {
+            { "1", "DRIFT", "Fl(2+1)W.10s", "", "" },
+            { "2", "DRIFT", "Iso.WRG.4s", "G114,52°-116,52° W116,52°-117,52° R117,52°-119,52°.", "HORN(3)30s" },
+            { "3", "DRIFT", "Xyz", "", "HORN" },
+            { "4", "DRIFT", "Xyz", "Ingen", "" },
+            { "5", "NEDLAGT", "Xyz", "", "" },
+            { "6", "drift", "Fl.G.3s", "", "Trompet" },
+            { "7", "DRIFT", "Fl.R.5s", "Ukendt", "" },
+    };
+
+    @Test
+    public void testValidateLightRegister() throws Exception {
+        Path xlsFile = Files.createTempFile("light-register-test", ".xls");
+        try {
+            HSSFWorkbook workbook = new HSSFWorkbook();
+            HSSFSheet sheet = workbook.createSheet("Fyr");
+            Row header = sheet.createRow(0);
+            for (int c = 0; c < HEADER.length; c++) {
+                header.createCell(c).setCellValue(HEADER[c]);
+            }
+            for (int r = 0; r < ROWS.length; r++) {
+                Row row = sheet.createRow(r + 1);
+                for (int c = 0; c < HEADER.length; c++) {
+                    row.createCell(c).setCellValue(ROWS[r][c]);
+                }
+            }
+            try (OutputStream out = new FileOutputStream(xlsFile.toFile())) {
+                workbook.write(out);
+            }
+
+            LightRegisterReport report = DkLightRegisterValidator.validate(xlsFile);
+
+            Assert.assertEquals(7, report.getRowCount());
+            Assert.assertEquals(6, report.getActiveRowCount());
+            Assert.assertEquals(4, report.getValidLightCount());
+            Assert.assertEquals(1, report.getSectoredLightCount());
+            Assert.assertEquals(2, report.getValidFogSignalCount());
+            Assert.assertEquals(1, report.getInvalidRowCount());
+            Assert.assertEquals(Integer.valueOf(3), report.getLightCharacters().get("Fl"));
+            Assert.assertEquals(Integer.valueOf(2), report.getFogSignalCategories().get("horn"));
+
+            // Rows 3 and 4 have invalid light characteristics, row 4 is neither a valid light nor fog signal,
+            // row 6 has an invalid fog signal and row 7 has invalid sector angles.
+            // The "Ingen" sector angles of row 4 denote a light without sectors, and are valid.
+            Assert.assertEquals(5, report.getFailures().size());
+            Assert.assertEquals("4", report.getFailures().get(2).getLightNumber());
+            Assert.assertNull(report.getFailures().get(2).getField());
+            Assert.assertEquals("7", report.getFailures().get(4).getLightNumber());
+            Assert.assertEquals("Lysvinkler", report.getFailures().get(4).getField());
+        } finally {
+            Files.deleteIfExists(xlsFile);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test detecting row changes between imports
+ */
+public class ExcelRowHashesTest {
+
+    static final String[] FIELDS = { "NR_DK", "AFM_navn", "LATITUDE" };
+
+    @Test
+    public void testRowHashes() throws Exception {
+        Map<String, Integer> colIndex = new HashMap<>();
+        colIndex.put("NR_DK", 0);
+        colIndex.put("AFM_navn", 1);
+        colIndex.put("LATITUDE", 2);
+        ExcelRowSchema schema = new ExcelRowSchema(FIELDS, colIndex);
+
+        HSSFSheet sheet = new HSSFWorkbook().createSheet();
+        Row row1 = createRow(sheet, 0, 1001, "Skagen", 57.7);
+        Row row2 = createRow(sheet, 1, 1002, "Hirtshals", 57.6);
+        Row row3 = createRow(sheet, 2, 1002, "Hirtshals", 57.6);
+        Row row4 = createRow(sheet, 3, 1002, "Hirtshals", 57.60001);
+        Row row5 = createRow(sheet, 4, 1002, "Hirtshals", null);
+
+        Assert.assertEquals("1001", ExcelRowHashes.key(schema, row1, 0));
+        Assert.assertEquals(ExcelRowHashes.hash(schema, row2), ExcelRowHashes.hash(schema, row3));
+        Assert.assertNotEquals(ExcelRowHashes.hash(schema, row2), ExcelRowHashes.hash(schema, row4));
+        Assert.assertNotEquals(ExcelRowHashes.hash(schema, row2), ExcelRowHashes.hash(schema, row5));
+
+        Path file = Files.createTempDirectory("row-hashes-test").resolve("dk-light-import.hashes");
+        try {
+            // First import
+            ExcelRowHashes hashes = ExcelRowHashes.open(file);
+            hashes.setRowCount(2);
+            hashes.rowRead();
+            hashes.rowRead();
+            Assert.assertFalse(hashes.isUnchanged("1001", ExcelRowHashes.hash(schema, row1)));
+            Assert.assertFalse(hashes.isUnchanged("1002", ExcelRowHashes.hash(schema, row2)));
+            hashes.record("1001", ExcelRowHashes.hash(schema, row1));
+            hashes.record("1002", ExcelRowHashes.hash(schema, row2));
+            Assert.assertTrue(hashes.isComplete());
+            Assert.assertEquals(2, hashes.getAddedNo());
+            hashes.save();
+
+            // Second import, where row 1001 is removed, 1002 is unchanged and 1003 is added
+            hashes = ExcelRowHashes.open(file);
+            Assert.assertTrue(hashes.isUnchanged("1002", ExcelRowHashes.hash(schema, row3)));
+            Assert.assertFalse(hashes.isUnchanged("1003", ExcelRowHashes.hash(schema, row1)));
+            Assert.assertEquals(0, hashes.getUnchangedNo());
+            hashes.record("1002", ExcelRowHashes.hash(schema, row3));
+            hashes.record("1003", ExcelRowHashes.hash(schema, row1));
+            Assert.assertEquals(1, hashes.getAddedNo());
+            Assert.assertEquals(1, hashes.getUnchangedNo());
+            Assert.assertEquals(Collections.singletonList("1001"), hashes.getRemovedKeys());
+            Assert.assertTrue(hashes.isPreviousComplete());
+            Assert.assertFalse(hashes.isComplete());
+            hashes.save();
+
+            // Third import, where row 1002 is changed and the hash of row 1003 is discarded
+            hashes = ExcelRowHashes.open(file);
+            hashes.setRowCount(2);
+            hashes.rowRead();
+            hashes.rowRead();
+            Assert.assertFalse(hashes.isUnchanged("1002", ExcelRowHashes.hash(schema, row4)));
+            hashes.record("1002", ExcelRowHashes.hash(schema, row4));
+            hashes.discard();
+            Assert.assertEquals(1, hashes.getChangedNo());
+            Assert.assertFalse(hashes.isComplete());
+
+            // The second import was not complete, so it must not be used for reconciliation
+            Assert.assertFalse(hashes.isPreviousComplete());
+            Assert.assertEquals(2, hashes.getPreviousKeys().size());
+
+            // A changed parent row changes the combined hash of an overlay row
+            long hash = ExcelRowHashes.hash(schema, row2);
+            Assert.assertEquals(ExcelRowHashes.combine(hash, 1L), ExcelRowHashes.combine(hash, 1L));
+            Assert.assertNotEquals(ExcelRowHashes.combine(hash, 1L), ExcelRowHashes.combine(hash, 2L));
+            Assert.assertNotEquals(ExcelRowHashes.combine(hash, 1L), ExcelRowHashes.combine(hash, null));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.getParent());
+        }
+    }
+
+
+    private Row createRow(HSSFSheet sheet, int index, int nr, String name, Double lat) {
+        Row row = sheet.createRow(index);
+        row.createCell(0).setCellValue(nr);
+        row.createCell(1).setCellValue(name);
+        if (lat != null) {
+            row.createCell(2).setCellValue(lat);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.aton.AtonNode;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Test streaming AtoNs to an OSM XML document
+ */
+public class OsmXmlWriterTest {
+
+    @Test
+    public void testWriteOsm() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OsmXmlWriter osm = new OsmXmlWriter(out)) {
+            for (int x = 0; x < 3; x++) {
+                osm.write(new AtonNode().toVo());
+            }
+            Assert.assertEquals(3, osm.getNodeNo());
+        }
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals("osm", doc.getDocumentElement().getTagName());
+        Assert.assertEquals(OsmXmlWriter.OSM_VERSION, doc.getDocumentElement().getAttribute("version"));
+        Assert.assertEquals(3, doc.getDocumentElement().getElementsByTagName("node").getLength());
+
+        // The JAXB context is shared
+        Assert.assertSame(OsmXmlWriter.getJaxbContext(), OsmXmlWriter.getJaxbContext());
+    }
+}
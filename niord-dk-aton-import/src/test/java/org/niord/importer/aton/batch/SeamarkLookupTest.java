@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.importer.aton.batch.FogSignalSeamark.Category;
+import org.niord.importer.aton.batch.LightSeamark.Colour;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.niord.importer.aton.batch.LightSeamark.Character.*;
+
+/**
+ * Test the light and fog signal enum lookup tables
+ */
+public class SeamarkLookupTest {
+
+    @Test
+    public void testColourLookup() {
+        for (Colour colour : Colour.values()) {
+            Assert.assertSame(colour, Colour.valueOfLc(colour.toLc()));
+        }
+        Assert.assertNull(Colour.valueOfLc("B"));
+        Assert.assertNull(Colour.valueOfLc("w"));
+        Assert.assertNull(Colour.valueOfLc(null));
+    }
+
+    @Test
+    public void testCharacterLookup() {
+        for (LightSeamark.Character character : LightSeamark.Character.values()) {
+            Assert.assertSame(character, LightSeamark.Character.valueOfLc(character.toLc()));
+        }
+        Assert.assertNull(LightSeamark.Character.valueOfLc("FF"));
+        Assert.assertNull(LightSeamark.Character.valueOfLc(null));
+    }
+
+    @Test
+    public void testCompositeLookup() {
+        Map<String, LightSeamark.Character> composites = new HashMap<>();
+        composites.put("Fl+LFl", FlLFl);
+        composites.put("Oc+Fl", OcFl);
+        composites.put("F+LFl", FLFl);
+        composites.put("Al+Oc", Al_Oc);
+        composites.put("Al+LFl", Al_LFl);
+        composites.put("Al+Fl", Al_Fl);
+        composites.put("Al+Gr", Al_Gr);
+        composites.put("Q+LFl", Q_LFl);
+        composites.put("VQ+LFl", VQ_LFl);
+        composites.put("UQ+LFl", UQ_LFl);
+        composites.put("Al+FFl", Al_FFl);
+
+        for (LightSeamark.Character p1 : LightSeamark.Character.values()) {
+            for (LightSeamark.Character p2 : LightSeamark.Character.values()) {
+                Assert.assertSame(p1 + "+" + p2,
+                        composites.get(p1.toLc() + "+" + p2.toLc()),
+                        LightSeamark.Character.valueOfComposite(p1, p2));
+            }
+        }
+    }
+
+    @Test
+    public void testFogSignalCategoryLookup() {
+        for (Category category : Category.values()) {
+            String name = category.name();
+            Assert.assertSame(category, Category.valueOfIgnoreCase(name));
+            Assert.assertSame(category, Category.valueOfIgnoreCase(name.toUpperCase(Locale.ENGLISH)));
+            Assert.assertSame(category, Category.valueOfIgnoreCase(name.substring(0, 1).toUpperCase() + name.substring(1)));
+            Assert.assertSame(category, Category.valueOfIgnoreCase(name.substring(0, 2) + name.substring(2).toUpperCase()));
+        }
+        Assert.assertNull(Category.valueOfIgnoreCase("trumpet"));
+        Assert.assertNull(Category.valueOfIgnoreCase(null));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonTag;
+import org.niord.importer.aton.batch.LightSeamark.LightSector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Test emitting the OSM tags of lights and fog signals
+ */
+public class SeamarkOsmTest {
+
+    @Test
+    public void testLightOsm() {
+        LightSeamark light = DkLightParser.newInstance();
+        DkLightParser.parseLightCharacteristics(light, "2 Oc(2)WRG.1,5s");
+        DkLightParser.parseHeight(light, 12.0);
+        DkLightParser.parseRange(light, "W 12", "R 9", "G 9");
+        Assert.assertEquals(
+                "[seamark:type=light, seamark:light:colour=white;red;green, seamark:light:character=Oc, "
+                        + "seamark:light:height=12.0, seamark:light:multiple=2, seamark:light:group=2, "
+                        + "seamark:light:period=1.5]",
+                light.toOsm().toString());
+        assertSameOsm(light.toOsm(), light::toOsm);
+
+        // Multi-sectored light
+        DkLightParser.parseLightSectorAngles(light, "G020,9°-025,5° W025,5°-030° R030°-19,2°");
+        DkLightParser.parseRange(light, "W 12", "R 9", "G 9");
+        List<AtonTag> tags = light.toOsm();
+        Assert.assertEquals(1 + 3 * 9, tags.size());
+        Assert.assertEquals("seamark:light:1:colour=green", tags.get(1).toString());
+        Assert.assertEquals("seamark:light:3:sector_end=19.2", tags.get(tags.size() - 1).toString());
+        assertSameOsm(tags, light::toOsm);
+
+        // Sector indexes beyond the pre-built keys
+        List<LightSector> sectors = new ArrayList<>();
+        for (int x = 0; x < 40; x++) {
+            LightSector sector = light.getSectors().get(0).copy();
+            sector.setSectorStart((double) x);
+            sectors.add(sector);
+        }
+        light.setSectors(sectors);
+        Assert.assertSame(LightSector.sectorKeys(7), LightSector.sectorKeys(7));
+        Assert.assertEquals("seamark:light:40:colour", LightSector.sectorKeys(40)[LightSector.COLOUR]);
+        assertSameOsm(light.toOsm(), light::toOsm);
+    }
+
+    @Test
+    public void testFogSignalOsm() {
+        FogSignalSeamark fogSignal = DkFogSignalParser.newInstance();
+        DkFogSignalParser.parseFogSignal(fogSignal, "HORN(3)30s   (2+2+2+2+2+20)");
+        assertSameOsm(fogSignal.toOsm(), fogSignal::toOsm);
+    }
+
+    /** Asserts that emitting the tags directly yields the same AtoN as copying the tag list **/
+    private void assertSameOsm(List<AtonTag> tags, Consumer<AtonNode> emitter) {
+        AtonNode expected = new AtonNode();
+        expected.updateTag("seamark:name", "Anholt");
+        tags.forEach(t -> expected.updateTag(t.getK(), t.getV()));
+
+        AtonNode aton = new AtonNode();
+        aton.updateTag("seamark:name", "Anholt");
+        emitter.accept(aton);
+
+        Assert.assertEquals(expected.getTags().toString(), aton.getTags().toString());
+    }
+}
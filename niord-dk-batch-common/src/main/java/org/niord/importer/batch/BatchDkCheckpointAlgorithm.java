@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.settings.Setting;
+import org.niord.core.settings.SettingsService;
+import org.slf4j.Logger;
+
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.AbstractCheckpointAlgorithm;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.niord.core.settings.Setting.Type.json;
+
+/**
+ * Custom checkpoint algorithm used by the chunk steps of the DK import batch jobs.
+ * <p>
+ * The chunk size and commit interval of each batch job are defined by the "dkImportChunkSettings" setting,
+ * which maps a batch job name to either a fixed chunk size, or an object with the fields:
+ * <ul>
+ *     <li>chunkSize: The (initial) number of items per chunk.</li>
+ *     <li>commitInterval: The max number of seconds spent reading and processing the items of a chunk.</li>
+ *     <li>adaptive: Whether to adjust the chunk size to the measured write latency of each chunk.</li>
+ *     <li>minChunkSize, maxChunkSize: The bounds of the adaptive chunk size.</li>
+ *     <li>targetLatency: The target write latency of a chunk in milliseconds.</li>
+ * </ul>
+ * Partitioned variants of a batch job, i.e. with a "-partitioned" suffix, fall back to the settings of the
+ * non-partitioned batch job. Steps of a combined batch job may use the settings of another batch job,
+ * named by the "chunkSettings" batch property.
+ * <p>
+ * The measured throughput and the {@linkplain BatchImportMetrics} of the job are stored as the persistent
+ * user data of the step execution.
+ */
+@Named
+public class BatchDkCheckpointAlgorithm extends AbstractCheckpointAlgorithm {
+
+    public static final int DEFAULT_CHUNK_SIZE = 10;
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 5;
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 500;
+    public static final long DEFAULT_TARGET_LATENCY = 2000L;
+
+    static final String PARTITIONED_SUFFIX = "-partitioned";
+
+    static final Setting CHUNK_SETTINGS =
+            new Setting("dkImportChunkSettings")
+                    .type(json)
+                    .description("Chunk sizes and commit intervals of the DK import batch jobs")
+                    .editable(true);
+
+    @Inject
+    Logger log;
+
+    @Inject
+    SettingsService settingsService;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    StepContext stepContext;
+
+    /** The name of the batch job whose chunk settings to use. Defaults to the current batch job **/
+    @Inject
+    @BatchProperty
+    String chunkSettings;
+
+    ChunkSettings settings;
+    int chunkSize;
+
+    // State of the current chunk
+    int itemNo;
+    long chunkStart;
+    long writeStart;
+
+    // Throughput statistics of the step
+    long stepStart;
+    long totalItemNo;
+    long totalChunkNo;
+    long totalWriteTime;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public boolean isReadyToCheckpoint() throws Exception {
+        long now = System.currentTimeMillis();
+        if (settings == null) {
+            settings = loadSettings(StringUtils.isNotBlank(chunkSettings) ? chunkSettings : jobContext.getJobName());
+            chunkSize = settings.chunkSize;
+            stepStart = now;
+        }
+        if (itemNo == 0) {
+            chunkStart = now;
+        }
+        itemNo++;
+
+        boolean ready = itemNo >= chunkSize
+                || (settings.commitInterval > 0 && now - chunkStart >= settings.commitInterval * 1000L);
+        if (ready) {
+            writeStart = now;
+        }
+        return ready;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void beginCheckpoint() throws Exception {
+        // The final chunk of a step is checkpointed without calling isReadyToCheckpoint()
+        if (writeStart == 0) {
+            writeStart = System.currentTimeMillis();
+        }
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void endCheckpoint() throws Exception {
+        long now = System.currentTimeMillis();
+        long latency = now - writeStart;
+
+        totalItemNo += itemNo;
+        totalChunkNo++;
+        totalWriteTime += latency;
+
+        if (settings != null && settings.adaptive) {
+            adjustChunkSize(latency);
+        }
+        recordThroughput(now);
+
+        itemNo = 0;
+        writeStart = 0;
+    }
+
+
+    /**
+     * Halves the chunk size if the write latency exceeds the target latency, and doubles it
+     * if a full chunk was written in less than half the target latency
+     * @param latency the write latency of the last chunk in milliseconds
+     */
+    private void adjustChunkSize(long latency) {
+        int newChunkSize = chunkSize;
+        if (latency > settings.targetLatency) {
+            newChunkSize = Math.max(settings.minChunkSize, chunkSize / 2);
+        } else if (latency < settings.targetLatency / 2 && itemNo >= chunkSize) {
+            newChunkSize = Math.min(settings.maxChunkSize, chunkSize * 2);
+        }
+
+        if (newChunkSize != chunkSize) {
+            log.info(String.format("Adjusting chunk size of %s from %d to %d (write latency %d ms)",
+                    stepContext.getStepName(), chunkSize, newChunkSize, latency));
+            chunkSize = newChunkSize;
+        }
+    }
+
+
+    /** Stores the throughput statistics and import metrics as the persistent user data of the step execution */
+    private void recordThroughput(long now) {
+        double seconds = Math.max(1L, now - stepStart) / 1000.0;
+        Properties stats = BatchImportMetrics.forJob(jobContext).toProperties();
+        stats.setProperty("chunkSize", String.valueOf(chunkSize));
+        stats.setProperty("chunks", String.valueOf(totalChunkNo));
+        stats.setProperty("items", String.valueOf(totalItemNo));
+        stats.setProperty("itemsPerSecond", String.format("%.1f", totalItemNo / seconds));
+        stats.setProperty("avgWriteLatency", String.valueOf(totalWriteTime / totalChunkNo));
+        stepContext.setPersistentUserData(stats);
+    }
+
+
+    /**
+     * Loads the chunk settings of the given batch job
+     * @param jobName the batch job name
+     * @return the chunk settings of the batch job
+     */
+    private ChunkSettings loadSettings(String jobName) {
+        ChunkSettings result = new ChunkSettings();
+        try {
+            Object value = settingsService.get(CHUNK_SETTINGS);
+            if (value instanceof Map) {
+                Map<?, ?> jobSettings = (Map<?, ?>) value;
+                Object setting = jobSettings.get(jobName);
+                if (setting == null && jobName.endsWith(PARTITIONED_SUFFIX)) {
+                    setting = jobSettings.get(jobName.substring(0, jobName.length() - PARTITIONED_SUFFIX.length()));
+                }
+                result.update(setting);
+            }
+        } catch (Exception e) {
+            log.warn("Error reading chunk settings of batch job " + jobName + ": " + e);
+        }
+        log.info("Using chunk settings for batch job " + jobName + ": " + result);
+        return result;
+    }
+
+
+    /*************************/
+    /** Helper classes      **/
+    /*************************/
+
+    /**
+     * The chunk settings of a batch job
+     */
+    static class ChunkSettings {
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        int commitInterval = 0;
+        boolean adaptive = false;
+        int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+        int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+        long targetLatency = DEFAULT_TARGET_LATENCY;
+
+        /** Updates the chunk settings from a setting value, i.e. either a chunk size or a map of fields */
+        void update(Object setting) {
+            if (setting instanceof Number) {
+                chunkSize = ((Number) setting).intValue();
+            } else if (setting instanceof Map) {
+                Map<?, ?> fields = (Map<?, ?>) setting;
+                chunkSize = intValue(fields.get("chunkSize"), chunkSize);
+                commitInterval = intValue(fields.get("commitInterval"), commitInterval);
+                adaptive = Boolean.TRUE.equals(fields.get("adaptive"));
+                minChunkSize = intValue(fields.get("minChunkSize"), minChunkSize);
+                maxChunkSize = intValue(fields.get("maxChunkSize"), maxChunkSize);
+                targetLatency = intValue(fields.get("targetLatency"), (int) targetLatency);
+            }
+            chunkSize = Math.max(1, chunkSize);
+            minChunkSize = Math.max(1, Math.min(minChunkSize, chunkSize));
+            maxChunkSize = Math.max(maxChunkSize, chunkSize);
+        }
+
+        private static int intValue(Object value, int defaultValue) {
+            return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public String toString() {
+            return "{chunkSize=" + chunkSize + ", commitInterval=" + commitInterval + ", adaptive=" + adaptive
+                    + ", minChunkSize=" + minChunkSize + ", maxChunkSize=" + maxChunkSize
+                    + ", targetLatency=" + targetLatency + "}";
+        }
+    }
+}
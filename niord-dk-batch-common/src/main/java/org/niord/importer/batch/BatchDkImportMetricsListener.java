@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.batch;
+
+import org.slf4j.Logger;
+
+import javax.batch.api.listener.AbstractStepListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Logs the final {@linkplain BatchImportMetrics} of a DK import step and releases the metrics.
+ * <p>
+ * For partitioned steps, this is called once all partitions have completed.
+ */
+@Named
+public class BatchDkImportMetricsListener extends AbstractStepListener {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    StepContext stepContext;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void afterStep() throws Exception {
+        BatchImportMetrics metrics = BatchImportMetrics.release(jobContext);
+        if (metrics != null) {
+            log.info("Completed step " + stepContext.getStepName() + " of batch job " + jobContext.getJobName()
+                    + ": " + metrics);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.batch;
+
+import javax.batch.runtime.context.JobContext;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Progress metrics of a DK import batch job execution.
+ * <p>
+ * The metrics are shared by the readers and processors of all partitions of a job execution, and replace
+ * per-item logging. Readers periodically log a one-line summary, see {@linkplain #isReportDue()}, and the
+ * metrics are stored with the step execution by {@linkplain BatchDkCheckpointAlgorithm}.
+ * The metrics of a job execution are released by {@linkplain BatchDkImportMetricsListener}.
+ */
+public class BatchImportMetrics {
+
+    /** The interval in milliseconds between progress reports */
+    public static final long REPORT_INTERVAL = 10000L;
+
+    private static final Map<Long, BatchImportMetrics> METRICS = new ConcurrentHashMap<>();
+
+    final long startTime = System.currentTimeMillis();
+    final AtomicLong lastReport = new AtomicLong(startTime);
+    final AtomicLong totalItemNo = new AtomicLong();
+    final LongAdder itemNo = new LongAdder();
+    final LongAdder failureNo = new LongAdder();
+    final Map<String, LongAdder> skipped = new ConcurrentHashMap<>();
+    final Map<String, Supplier<?>> gauges = new ConcurrentHashMap<>();
+
+
+    /**
+     * Returns the metrics of the job execution of the given job context
+     * @param jobContext the job context
+     * @return the metrics of the job execution
+     */
+    public static BatchImportMetrics forJob(JobContext jobContext) {
+        return METRICS.computeIfAbsent(jobContext.getExecutionId(), id -> new BatchImportMetrics());
+    }
+
+
+    /**
+     * Releases and returns the metrics of the job execution of the given job context
+     * @param jobContext the job context
+     * @return the released metrics of the job execution, or null if undefined
+     */
+    public static BatchImportMetrics release(JobContext jobContext) {
+        return METRICS.remove(jobContext.getExecutionId());
+    }
+
+
+    /**
+     * Adds to the total number of items to read by the job execution
+     * @param itemNo the number of items to add
+     */
+    public void addTotalItemNo(long itemNo) {
+        totalItemNo.addAndGet(itemNo);
+    }
+
+
+    /** Registers that an item has been read */
+    public void itemRead() {
+        itemNo.increment();
+    }
+
+
+    /**
+     * Registers that an item has been skipped
+     * @param reason the reason for skipping the item
+     */
+    public void itemSkipped(String reason) {
+        skipped.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+
+    /** Registers that an item could not be parsed */
+    public void parseFailure() {
+        failureNo.increment();
+    }
+
+
+    /**
+     * Registers a gauge, i.e. a named value reported along with the metrics, such as cache statistics.
+     * If a gauge with the given name is already registered, the call is ignored.
+     * @param name the name of the gauge
+     * @param value supplies the current value of the gauge
+     */
+    public void gauge(String name, Supplier<?> value) {
+        gauges.putIfAbsent(name, value);
+    }
+
+
+    /**
+     * Returns if a progress report is due. Only one of any concurrent callers will get a true result.
+     * @return if a progress report is due
+     */
+    public boolean isReportDue() {
+        long now = System.currentTimeMillis();
+        long last = lastReport.get();
+        return now - last >= REPORT_INTERVAL && lastReport.compareAndSet(last, now);
+    }
+
+
+    /**
+     * Returns the number of items read per second
+     * @return the number of items read per second
+     */
+    public double getItemsPerSecond() {
+        return itemNo.sum() * 1000.0 / Math.max(1L, System.currentTimeMillis() - startTime);
+    }
+
+
+    /**
+     * Returns the estimated number of seconds until all items have been read, or -1 if unknown
+     * @return the estimated number of seconds until all items have been read
+     */
+    public long getEta() {
+        double itemsPerSecond = getItemsPerSecond();
+        long remaining = totalItemNo.get() - itemNo.sum();
+        return itemsPerSecond > 0 && remaining >= 0 ? Math.round(remaining / itemsPerSecond) : -1;
+    }
+
+
+    /**
+     * Returns the number of items that could not be parsed
+     * @return the number of items that could not be parsed
+     */
+    public long getParseFailureNo() {
+        return failureNo.sum();
+    }
+
+
+    /**
+     * Returns the number of skipped items by reason
+     * @return the number of skipped items by reason
+     */
+    public Map<String, Long> getSkippedNo() {
+        Map<String, Long> skippedNo = new TreeMap<>();
+        skipped.forEach((reason, count) -> skippedNo.put(reason, count.sum()));
+        return skippedNo;
+    }
+
+
+    /**
+     * Returns the metrics as properties
+     * @return the metrics as properties
+     */
+    public Properties toProperties() {
+        Properties props = new Properties();
+        props.setProperty("itemsRead", String.valueOf(itemNo.sum()));
+        props.setProperty("totalItems", String.valueOf(totalItemNo.get()));
+        props.setProperty("itemsReadPerSecond", String.format("%.1f", getItemsPerSecond()));
+        props.setProperty("parseFailures", String.valueOf(failureNo.sum()));
+        skipped.forEach((reason, count) -> props.setProperty("skipped." + reason, String.valueOf(count.sum())));
+        props.setProperty("eta", String.valueOf(getEta()));
+        gauges.forEach((name, value) -> props.setProperty(name, String.valueOf(value.get())));
+        return props;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder(String.format(
+                "read %d of %d items (%.1f/s), skipped %s, parse failures %d, ETA %d s",
+                itemNo.sum(), totalItemNo.get(), getItemsPerSecond(), getSkippedNo(), failureNo.sum(), getEta()));
+        new TreeMap<>(gauges).forEach((name, value) -> str.append(", ").append(name).append(": ").append(value.get()));
+        return str.toString();
+    }
+}
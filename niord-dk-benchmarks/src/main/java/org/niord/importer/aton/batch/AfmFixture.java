@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A synthetic AFM sheet fixture, checked in as a tab-separated file under /fixtures.
+ * <p>
+ * The first line contains the column names. Numeric and date columns are suffixed with ":n" and ":d"
+ * respectively, and are written as numeric and date cells when the fixture is converted to an Excel sheet.
+ */
+public class AfmFixture {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    private final String[] header;
+    private final List<String[]> rows = new ArrayList<>();
+
+
+    /** Constructor **/
+    private AfmFixture(String[] header) {
+        this.header = header;
+    }
+
+
+    /**
+     * Loads the fixture with the given name, e.g. "light"
+     * @param name the name of the fixture
+     * @return the fixture
+     */
+    public static AfmFixture load(String name) throws IOException {
+        String resource = "/fixtures/" + name + ".tsv";
+        InputStream in = AfmFixture.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Unknown fixture " + resource);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            AfmFixture fixture = new AfmFixture(reader.readLine().split("\t", -1));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isNotEmpty(line)) {
+                    fixture.rows.add(line.split("\t", -1));
+                }
+            }
+            return fixture;
+        }
+    }
+
+
+    /**
+     * Returns the values of the given column, with null for empty values
+     * @param field the column name
+     * @return the values of the column
+     */
+    public String[] column(String field) {
+        int col = columnIndex(field);
+        return rows.stream()
+                .map(row -> StringUtils.isEmpty(row[col]) ? null : row[col])
+                .toArray(String[]::new);
+    }
+
+
+    /**
+     * Returns the non-blank values of the given column
+     * @param field the column name
+     * @return the non-blank values of the column
+     */
+    public String[] nonBlankColumn(String field) {
+        return Arrays.stream(column(field))
+                .filter(StringUtils::isNotBlank)
+                .toArray(String[]::new);
+    }
+
+
+    /** Returns the index of the given column **/
+    private int columnIndex(String field) {
+        for (int col = 0; col < header.length; col++) {
+            if (columnName(col).equals(field)) {
+                return col;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + field);
+    }
+
+
+    /** Returns the name of the given column without type suffix **/
+    private String columnName(int col) {
+        return StringUtils.substringBefore(header[col], ":");
+    }
+
+
+    /**
+     * Writes the fixture as an Excel (.xls) sheet to the given path
+     * @param path the path to write the Excel sheet to
+     * @param repeat the number of times to repeat the rows of the fixture
+     * @return the path
+     */
+    public Path writeXls(Path path, int repeat) throws Exception {
+        try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet();
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat(DATE_FORMAT));
+            SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+
+            Row headerRow = sheet.createRow(0);
+            for (int col = 0; col < header.length; col++) {
+                headerRow.createCell(col).setCellValue(columnName(col));
+            }
+
+            int rowNo = 1;
+            for (int x = 0; x < repeat; x++) {
+                for (String[] values : rows) {
+                    Row row = sheet.createRow(rowNo++);
+                    for (int col = 0; col < header.length; col++) {
+                        if (StringUtils.isEmpty(values[col])) {
+                            continue;
+                        }
+                        Cell cell = row.createCell(col);
+                        if (header[col].endsWith(":n")) {
+                            cell.setCellValue(Double.parseDouble(values[col]));
+                        } else if (header[col].endsWith(":d")) {
+                            cell.setCellValue(dateFormat.parse(values[col]));
+                            cell.setCellStyle(dateStyle);
+                        } else {
+                            cell.setCellValue(values[col]);
+                        }
+                    }
+                }
+            }
+
+            try (OutputStream out = Files.newOutputStream(path)) {
+                workbook.write(out);
+            }
+        }
+        return path;
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String[] getHeader() {
+        return header;
+    }
+
+    public List<String[]> getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.core.aton.AtonNode;
+import org.niord.importer.aton.batch.BatchDkAtonImportProcessor.AtonType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks generating the OSM tags of the AtoN fixture, i.e. decoding the "KARAKNR" field
+ * and applying the {@linkplain DkAtonTagMapping}.
+ * <p>
+ * Each invocation handles the next row of the fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchDkAtonImportProcessorBenchmark {
+
+    String[] shortDescs;
+    String[] descriptions;
+    int[] types;
+    BatchDkAtonImportProcessor processor;
+    int row;
+
+
+    @Setup
+    public void setUp() throws Exception {
+        AfmFixture fixture = AfmFixture.load("aton");
+        shortDescs = fixture.column("AFUFORKORTELSE");
+        descriptions = fixture.column("BESKRIVELSE");
+        String[] karakNr = fixture.column("KARAKNR");
+        types = new int[karakNr.length];
+        for (int x = 0; x < types.length; x++) {
+            types[x] = Double.valueOf(karakNr[x]).intValue();
+        }
+
+        processor = new BatchDkAtonImportProcessor();
+        processor.tagMappingService = new DkAtonTagMappingService();
+        processor.tagMappingService.mapping = DkAtonTagMapping.load();
+    }
+
+
+    /** Returns the index of the next fixture row **/
+    private int nextRow() {
+        row = (row + 1) % types.length;
+        return row;
+    }
+
+
+    @Benchmark
+    public AtonNode generateAton() {
+        int x = nextRow();
+        AtonNode aton = new AtonNode();
+        processor.generateAton(aton, shortDescs[x], descriptions[x], types[x]);
+        return aton;
+    }
+
+
+    /**
+     * Decoding the "KARAKNR" field should not allocate. Run with "-prof gc" and check
+     * that the normalized allocation rate, gc.alloc.rate.norm, is approximately 0 bytes per operation.
+     */
+    @Benchmark
+    public AtonType parseType() {
+        return BatchDkAtonImportProcessor.masterType(BatchDkAtonImportProcessor.parseType(types[nextRow()]));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing the fog signals of the light fixture.
+ * <p>
+ * Each invocation parses the next non-blank fog signal of the fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DkFogSignalParserBenchmark {
+
+    String[] fogSignals;
+    int row;
+
+
+    @Setup
+    public void setUp() throws Exception {
+        fogSignals = AfmFixture.load("light").nonBlankColumn("Taagesignal");
+    }
+
+
+    @Benchmark
+    public FogSignalSeamark parseFogSignal() {
+        row = (row + 1) % fogSignals.length;
+        return DkFogSignalParser.parseFogSignal(DkFogSignalParser.newInstance(), fogSignals[row]);
+    }
+
+
+    @Benchmark
+    public Object parseFogSignalToOsm() {
+        row = (row + 1) % fogSignals.length;
+        FogSignalSeamark fogSignal = DkFogSignalParser.parseFogSignal(DkFogSignalParser.newInstance(), fogSignals[row]);
+        return fogSignal.isValid() ? fogSignal.toOsm() : null;
+    }
+}
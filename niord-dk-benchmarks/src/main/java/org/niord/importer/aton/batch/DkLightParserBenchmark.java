@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing the light characteristics, sector angles and ranges of the light fixture.
+ * <p>
+ * Each invocation parses the next row of the fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DkLightParserBenchmark {
+
+    String[] lightChars;
+    String[] sectorAngles;
+    String[][] ranges;
+    Double[] heights;
+    DkLightSpecCache specCache;
+    int row;
+
+
+    @Setup
+    public void setUp() throws Exception {
+        AfmFixture fixture = AfmFixture.load("light");
+        lightChars = fixture.column("Fyrkarakter");
+        sectorAngles = fixture.column("Lysvinkler");
+        ranges = new String[][] {
+                fixture.column("Lysstyrke_1"), fixture.column("Lysstyrke_2"), fixture.column("Lysstyrke_3") };
+        String[] buildingHeights = fixture.column("Fyrbygnings_hoejde");
+        heights = new Double[buildingHeights.length];
+        for (int x = 0; x < heights.length; x++) {
+            heights[x] = buildingHeights[x] == null ? null : Double.valueOf(buildingHeights[x]);
+        }
+        specCache = new DkLightSpecCache(10000);
+    }
+
+
+    /** Returns the index of the next fixture row **/
+    private int nextRow() {
+        row = (row + 1) % lightChars.length;
+        return row;
+    }
+
+
+    @Benchmark
+    public LightSeamark parseLightCharacteristics() {
+        return DkLightParser.parseLightCharacteristics(DkLightParser.newInstance(), lightChars[nextRow()]);
+    }
+
+
+    @Benchmark
+    public LightSeamark parseLightSectorAngles() {
+        return DkLightParser.parseLightSectorAngles(DkLightParser.newInstance(), sectorAngles[nextRow()]);
+    }
+
+
+    @Benchmark
+    public Object parseLight() {
+        int x = nextRow();
+        LightSeamark light = DkLightParser.newInstance();
+        DkLightParser.parseLightCharacteristics(light, lightChars[x]);
+        DkLightParser.parseHeight(light, heights[x]);
+        DkLightParser.parseLightSectorAngles(light, sectorAngles[x]);
+        DkLightParser.parseRange(light, ranges[0][x], ranges[1][x], ranges[2][x]);
+        return light.isValid() ? light.toOsm() : null;
+    }
+
+
+    @Benchmark
+    public Object parseLightCached() {
+        int x = nextRow();
+        LightSeamark light = DkLightParser.newInstance();
+        specCache.parseLightCharacteristics(light, lightChars[x]);
+        DkLightParser.parseHeight(light, heights[x]);
+        specCache.parseLightSectorAngles(light, sectorAngles[x]);
+        DkLightParser.parseRange(light, ranges[0][x], ranges[1][x], ranges[2][x]);
+        return light.isValid() ? light.toOsm() : null;
+    }
+}
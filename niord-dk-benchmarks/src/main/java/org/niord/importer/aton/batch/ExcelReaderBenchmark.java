@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.niord.importer.aton.batch.AbstractDkAtonImportReader.createSidecar;
+
+/**
+ * Benchmarks reading an AFM Excel sheet, i.e. parsing the sheet into the sidecar file,
+ * and reading all fields of the rows from the sidecar file.
+ * <p>
+ * The time to the first data row compares loading the entire workbook with streaming the sheet.
+ * Run with "-prof gc" to also compare the allocations.
+ * <p>
+ * The Excel sheet is written from the fixture, with the fixture rows repeated "repeat" times, or,
+ * if "generatedRows" is positive, generated by the {@linkplain AfmSheetGenerator} with the given row count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcelReaderBenchmark {
+
+    @Param({ "aton", "light", "racon" })
+    String fixture;
+
+    @Param({ "10" })
+    int repeat;
+
+    @Param({ "0" })
+    int generatedRows;
+
+    Path dir;
+    Path xlsPath;
+    Path readSidecarPath;
+    String[] fields;
+    int[] handles;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        AfmSheet sheet = AfmSheet.valueOf(fixture.toUpperCase());
+        fields = sheet.getFields();
+        handles = new int[fields.length];
+        for (int x = 0; x < fields.length; x++) {
+            handles[x] = ExcelRowSchema.fieldHandle(fields, fields[x]);
+        }
+
+        dir = Files.createTempDirectory("afm-benchmark");
+        xlsPath = generatedRows > 0
+                ? new AfmSheetGenerator(AfmSheetGenerator.DEFAULT_SEED)
+                        .rowCount(sheet, generatedRows)
+                        .generate(sheet, dir.resolve(sheet.getFileName()))
+                : AfmFixture.load(fixture).writeXls(dir.resolve(sheet.getFileName()), repeat);
+
+        // Sidecar file used by the read benchmark, which is not deleted between invocations
+        readSidecarPath = Files.move(createSidecar(xlsPath, fields, true), dir.resolve("read" + ExcelRowSidecar.SIDECAR_SUFFIX));
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+
+    /** The sidecar file is deleted before each invocation, since it is otherwise re-used **/
+    @Setup(Level.Invocation)
+    public void deleteSidecar() throws Exception {
+        Files.deleteIfExists(ExcelRowSidecar.sidecarPath(xlsPath));
+    }
+
+
+    @Benchmark
+    public Path createSidecarWorkbook() throws Exception {
+        return createSidecar(xlsPath, fields, false);
+    }
+
+
+    @Benchmark
+    public Path createSidecarStreaming() throws Exception {
+        return createSidecar(xlsPath, fields, true);
+    }
+
+
+    @Benchmark
+    public Row firstRowWorkbook() throws Exception {
+        try (InputStream in = Files.newInputStream(xlsPath)) {
+            Iterator<Row> rows = new HSSFWorkbook(in).getSheetAt(0).iterator();
+            rows.next();
+            return rows.next();
+        }
+    }
+
+
+    @Benchmark
+    public Row firstRowStreaming() throws Exception {
+        try (StreamingExcelRowIterator rows = new StreamingExcelRowIterator(xlsPath)) {
+            rows.next();
+            return rows.next();
+        }
+    }
+
+
+    @Benchmark
+    public int readAllFields(Blackhole blackhole) throws Exception {
+        int rowNo = 0;
+        try (ExcelRowSidecar sidecar = ExcelRowSidecar.open(readSidecarPath)) {
+            ExcelRowSchema schema = new ExcelRowSchema(fields, sidecar.getColIndex());
+            Iterator<Row> rows = sidecar.rowIterator(0);
+            while (rows.hasNext()) {
+                Row row = rows.next();
+                for (int handle : handles) {
+                    Cell cell = schema.getCell(row, handle);
+                    if (cell != null) {
+                        blackhole.consume(cell.getCellType() == Cell.CELL_TYPE_NUMERIC
+                                ? cell.getNumericCellValue()
+                                : cell.getStringCellValue());
+                    }
+                }
+                rowNo++;
+            }
+        }
+        return rowNo;
+    }
+}
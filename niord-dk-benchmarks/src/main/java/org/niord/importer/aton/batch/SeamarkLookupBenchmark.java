@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.importer.aton.batch;
+
+import org.niord.importer.aton.batch.FogSignalSeamark.Category;
+import org.niord.importer.aton.batch.LightSeamark.Colour;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the light and fog signal enum lookup tables.
+ * <p>
+ * The lookups should not allocate. Run with "-prof gc" and check that the normalized
+ * allocation rate, gc.alloc.rate.norm, is approximately 0 bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeamarkLookupBenchmark {
+
+    static final String[] COLOURS = { "W", "R", "G", "Bu", "Y", "Am" };
+    static final String[] PHASES = { "F", "Fl", "LFl", "Q", "VQ", "Iso", "Oc", "Al", "Mo", "Gr" };
+    static final String[] CATEGORIES = { "horn", "Horn", "HORN", "siren", "whistle", "bell", "explosive" };
+
+    int x;
+
+
+    @Benchmark
+    public LightSeamark.Character lookupCharacter() {
+        x++;
+        LightSeamark.Character p1 = LightSeamark.Character.valueOfLc(PHASES[x % PHASES.length]);
+        LightSeamark.Character p2 = LightSeamark.Character.valueOfLc(PHASES[(x / PHASES.length) % PHASES.length]);
+        LightSeamark.Character composite = LightSeamark.Character.valueOfComposite(p1, p2);
+        return composite != null ? composite : p1;
+    }
+
+
+    @Benchmark
+    public Colour lookupColour() {
+        x++;
+        return Colour.valueOfLc(COLOURS[x % COLOURS.length]);
+    }
+
+
+    @Benchmark
+    public Category lookupFogSignalCategory() {
+        x++;
+        return Category.valueOfIgnoreCase(CATEGORIES[x % CATEGORIES.length]);
+    }
+}
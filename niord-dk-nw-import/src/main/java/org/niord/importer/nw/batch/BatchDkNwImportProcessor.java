@@ -17,6 +17,7 @@ package org.niord.importer.nw.batch;
 
 import org.niord.core.message.Message;
 import org.niord.core.message.batch.BatchMessageImportProcessor;
+import org.niord.importer.batch.BatchImportMetrics;
 
 import javax.inject.Named;
 
@@ -38,7 +39,8 @@ public class BatchDkNwImportProcessor extends BatchMessageImportProcessor {
 
         if (original != null) {
             if (original.getStatus() == message.getStatus()) {
-                getLog().info("Skipping unchanged legacy NW: " + message.getLegacyId());
+                BatchImportMetrics.forJob(jobContext).itemSkipped("unchanged");
+                getLog().debug("Skipping unchanged legacy NW: {}", message.getLegacyId());
                 return null;
             }
 
@@ -49,14 +51,14 @@ public class BatchDkNwImportProcessor extends BatchMessageImportProcessor {
             original.setAutoTitle(message.isAutoTitle());
             // TODO ... determine which other fields to copy
 
-            getLog().info("Processed existing legacy NW: " + message.getLegacyId());
+            getLog().debug("Processed existing legacy NW: {}", message.getLegacyId());
             return original;
 
         } else {
             // We have a new message
             // Process related message base data
             message = processMessage(message);
-            getLog().info("Processed new legacy NW: " + message.getLegacyId());
+            getLog().debug("Processed new legacy NW: {}", message.getLegacyId());
 
             return message;
         }
@@ -18,6 +18,7 @@ package org.niord.importer.nw.batch;
 import org.niord.core.batch.AbstractItemHandler;
 import org.niord.core.message.Message;
 import org.niord.core.util.JsonUtils;
+import org.niord.importer.batch.BatchImportMetrics;
 import org.niord.importer.nw.LegacyNwImportRestService.ImportLegacyNwData;
 import org.niord.importer.nw.LegacyNwImportService;
 
@@ -49,6 +50,7 @@ public class BatchDkNwImportReader extends AbstractItemHandler {
     LegacyNwImportService importService;
 
     ImportLegacyNwData importParams;
+    BatchImportMetrics metrics;
     int nwNo = 0;
 
     /** {@inheritDoc} **/
@@ -64,6 +66,9 @@ public class BatchDkNwImportReader extends AbstractItemHandler {
             nwNo = (Integer) prevCheckpointInfo;
         }
 
+        metrics = BatchImportMetrics.forJob(jobContext);
+        metrics.addTotalItemNo(Math.max(0, importParams.getIds().size() - nwNo));
+
         getLog().info("Start processing " + importParams.getIds().size() + " legacy NWs from index " + nwNo);
     }
 
@@ -80,7 +85,12 @@ public class BatchDkNwImportReader extends AbstractItemHandler {
                 updateProgress((int)(100.0 * nwNo / importParams.getIds().size()));
             }
 
-            getLog().info("Reading legacy NW no " + nwNo);
+            // Every now and then, report the metrics
+            metrics.itemRead();
+            if (metrics.isReportDue()) {
+                getLog().info("Import progress: " + metrics);
+            }
+
             return message;
         }
         return null;